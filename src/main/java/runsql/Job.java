@@ -44,4 +44,12 @@ public interface Job {
     default Processor getProcessor() {
         return null;
     }
+
+    /**
+     * Called once the job's sql has executed and its result, if any, was processed, including
+     * when executing failed.
+     */
+    default void finish() {
+        //
+    }
 }
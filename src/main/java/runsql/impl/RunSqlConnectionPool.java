@@ -41,6 +41,17 @@ public class RunSqlConnectionPool implements ConnectionPool {
         basicDataSource.setPassword(connectionProperties.getPassword());
     }
 
+    /**
+     * @param maximumConnections The most connections open at once. Jobs hold their connection
+     *                           for as long as they run, so this must cover every job that may
+     *                           run at the same time.
+     */
+    public RunSqlConnectionPool(final ConnectionProperties connectionProperties,
+                                final int maximumConnections) {
+        this(connectionProperties);
+        basicDataSource.setMaxTotal(maximumConnections);
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         Connection connection = basicDataSource.getConnection();
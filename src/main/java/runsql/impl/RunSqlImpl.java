@@ -33,39 +33,64 @@ import runsql.SqlStatementExecutionHook;
 import runsql.impl.arguments.Parameter;
 import runsql.impl.arguments.RunSqlArguments;
 import runsql.impl.exceptions.RequiredArgumentException;
+import runsql.impl.exceptions.RunSqlParseException;
+import runsql.impl.output.RunSqlAsyncOutputStream;
+import runsql.impl.output.RunSqlOutputSequencer;
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.impl.output.RunSqlParallelGzipOutputStream;
+import runsql.impl.output.RunSqlSplittingOutputSink;
+import runsql.impl.processor.RunSqlImportTarget;
 import runsql.impl.processor.RunSqlProcessorFactory;
+import runsql.util.CompressionMode;
 import runsql.util.TransactionMode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 import java.util.stream.IntStream;
 
 import static runsql.impl.arguments.Parameter.BATCH_SIZE;
+import static runsql.impl.arguments.Parameter.COMPRESS;
+import static runsql.impl.arguments.Parameter.COMPRESS_BLOCK_SIZE;
+import static runsql.impl.arguments.Parameter.COMPRESS_THREADS;
 import static runsql.impl.arguments.Parameter.DRIVER;
 import static runsql.impl.arguments.Parameter.ECHO_SQL;
 import static runsql.impl.arguments.Parameter.HELP;
+import static runsql.impl.arguments.Parameter.IMPORT_PARTITIONS;
+import static runsql.impl.arguments.Parameter.IMPORT_SOURCE_JOBS;
+import static runsql.impl.arguments.Parameter.IMPORT_SPLIT_COLUMN;
 import static runsql.impl.arguments.Parameter.IMPORT_TABLE;
 import static runsql.impl.arguments.Parameter.INPUT_FILE_PATH;
 import static runsql.impl.arguments.Parameter.NUMBER_OF_JOBS;
+import static runsql.impl.arguments.Parameter.OUTPUT_BUFFER_SIZE;
 import static runsql.impl.arguments.Parameter.OUTPUT_FILE_PATH;
 import static runsql.impl.arguments.Parameter.PASSWORD;
 import static runsql.impl.arguments.Parameter.RESULT_SET_FETCH_SIZE;
+import static runsql.impl.arguments.Parameter.SPILL_THRESHOLD;
+import static runsql.impl.arguments.Parameter.SPLIT_BYTES;
+import static runsql.impl.arguments.Parameter.SPLIT_ROWS;
 import static runsql.impl.arguments.Parameter.SPLIT_SQL_STATEMENTS;
 import static runsql.impl.arguments.Parameter.SQL;
 import static runsql.impl.arguments.Parameter.STATEMENT_SEPARATOR;
@@ -74,6 +99,9 @@ import static runsql.impl.arguments.Parameter.TABLE_NAME;
 import static runsql.impl.arguments.Parameter.TRANSACTION_MODE;
 import static runsql.impl.arguments.Parameter.URL;
 import static runsql.impl.arguments.Parameter.USER;
+import static runsql.impl.arguments.Parameter.WRITER_BUFFERS;
+import static runsql.impl.arguments.Parameter.WRITER_BUFFER_SIZE;
+import static runsql.impl.arguments.Parameter.WRITER_STATISTICS;
 
 /**
  * The class responsible for core orchestration of RunSql.
@@ -88,14 +116,22 @@ import static runsql.impl.arguments.Parameter.USER;
  */
 public class RunSqlImpl implements RunSql {
     private static final Logger LOGGER = LogManager.getLogger();
+    private static final Logger STATISTICS_LOGGER = LogManager.getLogger("runsql.statistics");
     private static final List<Parameter> REQUIRED_ARGUMENTS = Arrays.asList(DRIVER, URL, SQL);
+    private static final String STATEMENT_NUMBER_PLACEHOLDER = "{n}";
     protected Arguments arguments;
     protected ConnectionProperties connectionProperties;
     protected SqlParser sqlParser;
     protected JobQueue jobQueue;
     protected PrintStream printStream;
+    protected RunSqlParallelGzipOutputStream compressedOutputStream;
+    protected RunSqlOutputSink outputSink;
+    protected RunSqlOutputSequencer outputSequencer;
+    protected final Queue<RunSqlAsyncOutputStream> asyncOutputStreams =
+            new ConcurrentLinkedQueue<>();
     protected PrintStream echoSqlPrintStream;
     protected Processor processor;
+    protected RunSqlImportTarget importTarget;
     protected ConnectionPool connectionPool;
     protected ExecutorService executorService;
     protected JobProducer jobProducer;
@@ -114,15 +150,18 @@ public class RunSqlImpl implements RunSql {
         numberOfJobConsumers =
                 Arguments.parsePositiveInteger(arguments.getValue(NUMBER_OF_JOBS.getEitherName()))
                          .intValue();
-        // When using import functionality, limit the number of jobs reading the source data to one.
+        // When using import functionality, the import options choose the number of jobs reading
+        // the source data, one by default.
         if (arguments.hasOption(IMPORT_TABLE.getEitherName())) {
-            numberOfJobConsumers = 1;
+            numberOfJobConsumers = getImportSourceJobs();
         }
         connectionProperties = createConnectionProperties();
         sqlParser = createSqlParser();
         jobQueue = createJobQueue();
         printStream = openPrintStream();
+        outputSink = openOutputSink();
         echoSqlPrintStream = openEchoSqlStream();
+        importTarget = createImportTarget();
         processor = createProcessor();
         connectionPool = createConnectionPool();
         executorService = createExecutorService();
@@ -133,7 +172,13 @@ public class RunSqlImpl implements RunSql {
         List<Future<?>> futures = new ArrayList<>(numberOfJobConsumers);
         IntStream.range(0, numberOfJobConsumers)
                  .forEach($ -> futures.add(executorService.submit(createJobConsumer())));
-        jobProducer.produceJobs();
+        try {
+            jobProducer.produceJobs();
+        } catch (final RuntimeException e) {
+            // Stop the consumers waiting for jobs that will never come.
+            executorService.shutdownNow();
+            throw e;
+        }
         try {
             for (Future<?> future : futures) {
                 try {
@@ -144,6 +189,8 @@ public class RunSqlImpl implements RunSql {
                     returnStatus = 1;
                 }
             }
+            finishOutput();
+            closeImportTarget();
             LOGGER.trace("shutdown");
             executorService.shutdown();
             LOGGER.trace("awaitTermination");
@@ -250,7 +297,40 @@ public class RunSqlImpl implements RunSql {
     @SuppressWarnings("UseOfSystemOutOrSystemErr")
     protected PrintStream openPrintStream() {
         String outputFilePath = arguments.getValue(OUTPUT_FILE_PATH.getEitherName());
-        if (outputFilePath == null || "-".equalsIgnoreCase(outputFilePath)) {
+        boolean isStandardOutput = outputFilePath == null || "-".equalsIgnoreCase(outputFilePath);
+        if (isOutputPerStatement()) {
+            // Each statement opens its own file.
+            return null;
+        }
+        if (isSplittingOutput()) {
+            if (isStandardOutput) {
+                throw new RunSqlParseException(
+                        "Splitting output requires --" + OUTPUT_FILE_PATH.getLongName() + ".", null);
+            }
+            // The output sink opens each part file itself.
+            return null;
+        }
+        if (getCompressionMode() == CompressionMode.GZIP) {
+            OutputStream outputStream;
+            try {
+                outputStream =
+                        isStandardOutput ? System.out : new FileOutputStream(outputFilePath);
+            } catch (final FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            compressedOutputStream =
+                    openCompressedOutputStream(openAsyncOutputStream(outputStream));
+            return new PrintStream(compressedOutputStream);
+        }
+        if (isWritingAsynchronously()) {
+            try {
+                return new PrintStream(openAsyncOutputStream(
+                        isStandardOutput ? System.out : new FileOutputStream(outputFilePath)));
+            } catch (final FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (isStandardOutput) {
             return System.out;
         } else {
             try {
@@ -261,11 +341,147 @@ public class RunSqlImpl implements RunSql {
         }
     }
 
+    protected boolean isWritingAsynchronously() {
+        return arguments.hasOption(WRITER_BUFFERS.getEitherName());
+    }
+
+    /**
+     * Wraps the stream so a separate writer thread writes to it, when --writerbuffers is set.
+     */
+    protected OutputStream openAsyncOutputStream(final OutputStream outputStream) {
+        if (!isWritingAsynchronously()) {
+            return outputStream;
+        }
+        int buffers = Arguments.parsePositiveInteger(
+                arguments.getValue(WRITER_BUFFERS.getEitherName())).intValue();
+        if (buffers < 2) {
+            throw new RunSqlParseException(
+                    "--" + WRITER_BUFFERS.getLongName() + " must be at least 2.", null);
+        }
+        int bufferSize = Arguments.parsePositiveInteger(
+                arguments.getValue(WRITER_BUFFER_SIZE.getEitherName())).intValue();
+        RunSqlAsyncOutputStream asyncOutputStream =
+                new RunSqlAsyncOutputStream(outputStream, buffers, bufferSize);
+        asyncOutputStreams.add(asyncOutputStream);
+        return asyncOutputStream;
+    }
+
+    protected CompressionMode getCompressionMode() {
+        return CompressionMode.getCompressionMode(arguments.getValue(COMPRESS.getEitherName()));
+    }
+
+    protected boolean isSplittingOutput() {
+        return arguments.hasOption(SPLIT_ROWS.getEitherName()) || arguments
+                .hasOption(SPLIT_BYTES.getEitherName());
+    }
+
+    protected RunSqlParallelGzipOutputStream openCompressedOutputStream(
+            final OutputStream outputStream) {
+        int blockSize = Arguments.parsePositiveInteger(
+                arguments.getValue(COMPRESS_BLOCK_SIZE.getEitherName())).intValue();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (arguments.hasOption(COMPRESS_THREADS.getEitherName())) {
+            threads = Arguments.parsePositiveInteger(
+                    arguments.getValue(COMPRESS_THREADS.getEitherName())).intValue();
+        }
+        return new RunSqlParallelGzipOutputStream(outputStream, blockSize, threads);
+    }
+
+    protected RunSqlOutputSink openOutputSink() {
+        if (isOutputPerStatement()) {
+            // Each statement opens its own sink.
+            return null;
+        }
+        if (isSplittingOutput()) {
+            return createSplittingOutputSink(this::openOutputPart);
+        }
+        return new RunSqlOutputSink(printStream, getOutputBufferSize(), Charset.defaultCharset());
+    }
+
+    protected int getOutputBufferSize() {
+        return Arguments.parsePositiveInteger(
+                arguments.getValue(OUTPUT_BUFFER_SIZE.getEitherName())).intValue();
+    }
+
+    protected RunSqlSplittingOutputSink createSplittingOutputSink(
+            final IntFunction<OutputStream> partOpener) {
+        long maximumRows = 0;
+        long maximumBytes = 0;
+        if (arguments.hasOption(SPLIT_ROWS.getEitherName())) {
+            maximumRows = Arguments.parsePositiveInteger(
+                    arguments.getValue(SPLIT_ROWS.getEitherName())).longValue();
+        }
+        if (arguments.hasOption(SPLIT_BYTES.getEitherName())) {
+            maximumBytes = Arguments.parsePositiveInteger(
+                    arguments.getValue(SPLIT_BYTES.getEitherName())).longValue();
+        }
+        return new RunSqlSplittingOutputSink(partOpener, maximumRows, maximumBytes,
+                                             getOutputBufferSize(), Charset.defaultCharset());
+    }
+
+    protected OutputStream openOutputPart(final int partNumber) {
+        return openOutputFile(RunSqlSplittingOutputSink
+                .partFilePath(arguments.getValue(OUTPUT_FILE_PATH.getEitherName()), partNumber));
+    }
+
+    /**
+     * Opens a file that a sink writes to and closes on its own, compressing it if requested.
+     */
+    protected OutputStream openOutputFile(final String filePath) {
+        OutputStream outputStream;
+        try {
+            outputStream = openAsyncOutputStream(new FileOutputStream(filePath));
+        } catch (final FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        if (getCompressionMode() == CompressionMode.GZIP) {
+            return openCompressedOutputStream(outputStream);
+        }
+        return outputStream;
+    }
+
+    /**
+     * When the output file path contains {n}, every statement with a result set writes to its
+     * own file with {n} replaced by the statement's number in the script.
+     */
+    protected boolean isOutputPerStatement() {
+        String outputFilePath = arguments.getValue(OUTPUT_FILE_PATH.getEitherName());
+        return outputFilePath != null && outputFilePath
+                .contains(STATEMENT_NUMBER_PLACEHOLDER) && !arguments
+                .hasOption(IMPORT_TABLE.getEitherName());
+    }
+
+    /**
+     * Opens the sink for one statement's result set. When splitting, the statement's file is
+     * split into parts in turn.
+     */
+    protected RunSqlOutputSink openStatementOutputSink(final int statementNumber) {
+        String filePath = arguments.getValue(OUTPUT_FILE_PATH.getEitherName())
+                                   .replace(STATEMENT_NUMBER_PLACEHOLDER,
+                                            Integer.toString(statementNumber));
+        if (isSplittingOutput()) {
+            return createSplittingOutputSink(partNumber -> openOutputFile(
+                    RunSqlSplittingOutputSink.partFilePath(filePath, partNumber)));
+        }
+        return new RunSqlOutputSink(openOutputFile(filePath), getOutputBufferSize(),
+                                    Charset.defaultCharset());
+    }
+
     @SuppressWarnings("UseOfSystemOutOrSystemErr")
     protected PrintStream openEchoSqlStream() {
         String sqlPrintStreamPath = arguments.getValue(ECHO_SQL.getEitherName());
         String outputFilePath = arguments.getValue(OUTPUT_FILE_PATH.getEitherName());
         if (outputFilePath != null && outputFilePath.equals(sqlPrintStreamPath)) {
+            if (isSplittingOutput() || isOutputPerStatement()) {
+                throw new RunSqlParseException(
+                        "Cannot echo sql to the output file when splitting output or writing a "
+                                + "file per statement.", null);
+            }
+            return printStream;
+        }
+        // Keep echoed sql inside the compressed stream rather than mixing it into the raw bytes.
+        if (compressedOutputStream != null && "-".equalsIgnoreCase(sqlPrintStreamPath) && (
+                outputFilePath == null || "-".equalsIgnoreCase(outputFilePath))) {
             return printStream;
         }
         PrintStream sqlPrintStream = null;
@@ -281,11 +497,35 @@ public class RunSqlImpl implements RunSql {
     }
 
     protected Processor createProcessor() {
-        return RunSqlProcessorFactory.createProcessor(arguments, printStream);
+        // Without a shared sink each job creates its own processors.
+        return outputSink == null ? null : createProcessor(outputSink);
+    }
+
+    protected Processor createProcessor(final RunSqlOutputSink outputSink) {
+        return RunSqlProcessorFactory.createProcessor(arguments, outputSink, importTarget);
+    }
+
+    /**
+     * When the import is split into several jobs, they share a target, see {@link
+     * RunSqlImportTarget}.
+     */
+    protected RunSqlImportTarget createImportTarget() {
+        if (!isImportingConcurrently()) {
+            return null;
+        }
+        return RunSqlProcessorFactory.createImportTarget(arguments, numberOfJobConsumers);
+    }
+
+    protected void closeImportTarget() {
+        if (importTarget != null) {
+            importTarget.close();
+        }
     }
 
     protected ConnectionPool createConnectionPool() {
-        return new RunSqlConnectionPool(connectionProperties);
+        // One connection for each job consumer, and one for partitioned imports to find the key
+        // ranges.
+        return new RunSqlConnectionPool(connectionProperties, numberOfJobConsumers + 1);
     }
 
     protected ExecutorService createExecutorService() {
@@ -293,9 +533,68 @@ public class RunSqlImpl implements RunSql {
     }
 
     protected JobProducer createJobProducer() {
+        if (isImportingConcurrently()) {
+            return new RunSqlPartitionedJobProducer(
+                    sqlParser, connectionPool,
+                    arguments.getValue(IMPORT_SPLIT_COLUMN.getEitherName()),
+                    arguments.getValue(TABLE_NAME.getEitherName()), getImportPartitions(),
+                    () -> createProcessor(outputSink), jobQueue, numberOfJobConsumers);
+        }
+        if (isOutputPerStatement()) {
+            return new RunSqlPerStatementJobProducer(sqlParser, this::openStatementOutputSink,
+                                                     this::createProcessor, jobQueue,
+                                                     numberOfJobConsumers);
+        }
+        if (isOrderingOutput()) {
+            outputSequencer = createOutputSequencer();
+            return new RunSqlOrderedJobProducer(sqlParser, outputSequencer, this::createProcessor,
+                                                jobQueue, numberOfJobConsumers);
+        }
         return new RunSqlJobProducer(sqlParser, processor, jobQueue, numberOfJobConsumers);
     }
 
+    protected int getImportPartitions() {
+        return Arguments.parsePositiveInteger(
+                arguments.getValue(IMPORT_PARTITIONS.getEitherName())).intValue();
+    }
+
+    protected int getImportSourceJobs() {
+        if (arguments.hasOption(IMPORT_SOURCE_JOBS.getEitherName())) {
+            return Arguments.parsePositiveInteger(
+                    arguments.getValue(IMPORT_SOURCE_JOBS.getEitherName())).intValue();
+        }
+        return getImportPartitions();
+    }
+
+    /**
+     * With several jobs reading the source, each statement, or each key range with
+     * --importpartitions, is imported by a job and processor of its own, see {@link
+     * RunSqlPartitionedJobProducer}. Without, all statements share one processor and run in
+     * turn.
+     */
+    protected boolean isImportingConcurrently() {
+        return arguments.hasOption(IMPORT_TABLE.getEitherName()) && (numberOfJobConsumers > 1
+                || getImportPartitions() > 1);
+    }
+
+    /**
+     * With several jobs, each job formats its own result sets and the output is written in
+     * script order. The splitting sink needs to see row boundaries as they are written, so the
+     * jobs share the processor when splitting.
+     */
+    protected boolean isOrderingOutput() {
+        return numberOfJobConsumers > 1 && !connectionProperties.isBatchMode() && !arguments
+                .hasOption(IMPORT_TABLE.getEitherName()) && !isSplittingOutput()
+                && !isOutputPerStatement();
+    }
+
+    protected RunSqlOutputSequencer createOutputSequencer() {
+        int bufferSize = getOutputBufferSize();
+        long spillThreshold = Arguments.parsePositiveInteger(
+                arguments.getValue(SPILL_THRESHOLD.getEitherName())).longValue();
+        return new RunSqlOutputSequencer(outputSink, bufferSize, spillThreshold);
+    }
+
     protected JobConsumer createJobConsumer() {
         return new RunSqlJobConsumer(jobQueue, connectionPool, connectionProperties,
                                      createSqlStatementExecutionHook(), echoSqlPrintStream);
@@ -305,6 +604,59 @@ public class RunSqlImpl implements RunSql {
         return new RunSqlStatementExecutionHook(connectionProperties);
     }
 
+    /**
+     * Writes out everything still buffered once all jobs are done. When compressing, this
+     * compresses the last block and closes the output file so the result is a complete gzip file.
+     * When splitting, this closes the last part. When writing on a separate thread, this waits
+     * for the writer to finish.
+     */
+    protected void finishOutput() {
+        if (outputSequencer != null) {
+            outputSequencer.finish();
+        }
+        // When writing a file per statement there is no shared sink; each job closed its own.
+        if (outputSink != null && isSplittingOutput()) {
+            outputSink.close();
+        } else if (outputSink != null) {
+            outputSink.flush();
+            if (compressedOutputStream != null) {
+                try {
+                    compressedOutputStream.finish();
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+                closePrintStream(arguments, printStream);
+            }
+        }
+        finishAsyncOutputStreams();
+    }
+
+    protected void finishAsyncOutputStreams() {
+        long bytesWritten = 0;
+        long writerBusyNanos = 0;
+        long writerIdleNanos = 0;
+        long stallNanos = 0;
+        for (RunSqlAsyncOutputStream asyncOutputStream : asyncOutputStreams) {
+            try {
+                asyncOutputStream.finish();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+            bytesWritten += asyncOutputStream.getBytesWritten();
+            writerBusyNanos += asyncOutputStream.getWriterBusyNanos();
+            writerIdleNanos += asyncOutputStream.getWriterIdleNanos();
+            stallNanos += asyncOutputStream.getStallNanos();
+        }
+        if (!asyncOutputStreams.isEmpty() && Arguments
+                .parseBoolean(arguments.getValue(WRITER_STATISTICS.getEitherName()))) {
+            STATISTICS_LOGGER.info("Writer wrote {} bytes in {} ms and was idle for {} ms. "
+                                           + "Fetching stalled for {} ms waiting for the writer.",
+                                   bytesWritten, TimeUnit.NANOSECONDS.toMillis(writerBusyNanos),
+                                   TimeUnit.NANOSECONDS.toMillis(writerIdleNanos),
+                                   TimeUnit.NANOSECONDS.toMillis(stallNanos));
+        }
+    }
+
     protected void closePrintStream(final Arguments arguments, final PrintStream printStream) {
         try {
             String outputFilePath = arguments.getValue(OUTPUT_FILE_PATH.getEitherName());
@@ -95,14 +95,18 @@ public class RunSqlJobConsumer implements JobConsumer {
     private void processJob(final Job job, final Connection connection,
                             final Statement statement) throws SQLException {
         LOGGER.trace("Process job: " + job.getSql());
-        maybeEchoSql(job);
-        sqlStatementExecutionHook.beforeStatement(connection, statement);
-        if (connectionProperties.isBatchMode()) {
-            processJobBatch(job, connection, statement);
-        } else {
-            processJobNonBatch(job, connection, statement);
+        try {
+            maybeEchoSql(job);
+            sqlStatementExecutionHook.beforeStatement(connection, statement);
+            if (connectionProperties.isBatchMode()) {
+                processJobBatch(job, connection, statement);
+            } else {
+                processJobNonBatch(job, connection, statement);
+            }
+            sqlStatementExecutionHook.afterStatement(connection, statement);
+        } finally {
+            job.finish();
         }
-        sqlStatementExecutionHook.afterStatement(connection, statement);
     }
 
     private void maybeEchoSql(final Job job) {
@@ -29,6 +29,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.IntStream;
 
 public class RunSqlJobProducer implements JobProducer {
@@ -59,7 +61,7 @@ public class RunSqlJobProducer implements JobProducer {
             int i = 0;
             while (sql != null) {
                 LOGGER.trace("Add sql statement number " + ++i + ", " + sql);
-                jobQueue.addJob(new RunSqlJob(processor, sql));
+                createJobs(sql, i).forEach(jobQueue::addJob);
                 sql = sqlParser.nextSqlStatement();
             }
             sqlParser.close();
@@ -68,4 +70,26 @@ public class RunSqlJobProducer implements JobProducer {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Creates the jobs for a sql statement, by default a single job.
+     *
+     * @param sql             The sql statement.
+     * @param statementNumber The statement's position in the script, starting at one.
+     * @return The jobs to add to the queue.
+     */
+    protected List<Job> createJobs(final String sql, final int statementNumber) {
+        return Collections.singletonList(createJob(sql, statementNumber));
+    }
+
+    /**
+     * Creates the job for a sql statement.
+     *
+     * @param sql             The sql statement.
+     * @param statementNumber The statement's position in the script, starting at one.
+     * @return The job to add to the queue.
+     */
+    protected Job createJob(final String sql, final int statementNumber) {
+        return new RunSqlJob(processor, sql);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl;
+
+import runsql.Job;
+import runsql.Processor;
+import runsql.impl.output.RunSqlOutputSequencer;
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.impl.output.RunSqlSpillOutputStream;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * A job that renders its result set into its own buffer with its own processor, then hands the
+ * buffer to a {@link RunSqlOutputSequencer} which writes it out in script order. This lets
+ * several job consumers format result sets at the same time.
+ */
+public class RunSqlOrderedJob implements Job {
+    private final String sql;
+    private final long sequenceNumber;
+    private final RunSqlOutputSequencer outputSequencer;
+    private final Function<RunSqlOutputSink, Processor> processorFactory;
+    private RunSqlSpillOutputStream spillOutputStream;
+
+    public RunSqlOrderedJob(final String sql, final long sequenceNumber,
+                            final RunSqlOutputSequencer outputSequencer,
+                            final Function<RunSqlOutputSink, Processor> processorFactory) {
+        this.sql = sql;
+        this.sequenceNumber = sequenceNumber;
+        this.outputSequencer = outputSequencer;
+        this.processorFactory = processorFactory;
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public Processor getProcessor() {
+        return this::process;
+    }
+
+    @Override
+    public void finish() {
+        outputSequencer.complete(sequenceNumber, spillOutputStream);
+    }
+
+    private void process(final ResultSet resultSet) throws SQLException, ClassNotFoundException {
+        spillOutputStream = outputSequencer.createSpillOutputStream();
+        RunSqlOutputSink outputSink = outputSequencer.createOutputSink(spillOutputStream);
+        try {
+            processorFactory.apply(outputSink).process(resultSet);
+        } finally {
+            outputSink.flush();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl;
+
+import runsql.Job;
+import runsql.JobQueue;
+import runsql.Processor;
+import runsql.SqlParser;
+import runsql.impl.output.RunSqlOutputSequencer;
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.util.function.Function;
+
+/**
+ * Creates {@link RunSqlOrderedJob}s so that concurrently executed statements write their output
+ * in script order.
+ */
+public class RunSqlOrderedJobProducer extends RunSqlJobProducer {
+    private final RunSqlOutputSequencer outputSequencer;
+    private final Function<RunSqlOutputSink, Processor> processorFactory;
+
+    public RunSqlOrderedJobProducer(final SqlParser sqlParser,
+                                    final RunSqlOutputSequencer outputSequencer,
+                                    final Function<RunSqlOutputSink, Processor> processorFactory,
+                                    final JobQueue jobQueue, final int numberOfJobConsumers) {
+        super(sqlParser, null, jobQueue, numberOfJobConsumers);
+        this.outputSequencer = outputSequencer;
+        this.processorFactory = processorFactory;
+    }
+
+    @Override
+    protected Job createJob(final String sql, final int statementNumber) {
+        return new RunSqlOrderedJob(sql, statementNumber, outputSequencer, processorFactory);
+    }
+}
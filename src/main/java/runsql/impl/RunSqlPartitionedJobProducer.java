@@ -0,0 +1,265 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl;
+
+import runsql.ConnectionPool;
+import runsql.Job;
+import runsql.JobQueue;
+import runsql.Processor;
+import runsql.SqlParser;
+import runsql.impl.exceptions.RunSqlParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Creates the jobs of imports that run at the same time. Each source statement is imported by a
+ * processor of its own, so that several job consumers read and import statements at once, each
+ * through its own source connection and cursor.
+ * <p>
+ * With more than one partition, each statement is also split into key ranges of a split column,
+ * each imported by a job and processor of its own.
+ * <p>
+ * The ranges divide the span between the minimum and maximum of the split column equally, so
+ * skewed keys give partitions of unequal size. The split column must be numeric, a date or a
+ * timestamp. Without a split column, the single column primary key of the table given by
+ * --tablename is used.
+ * <p>
+ * Each statement is wrapped in a derived table with a range predicate:
+ * <pre>
+ * select * from (statement) runsql_partition where column &gt;= lower and column &lt; upper
+ * </pre>
+ * The first range also takes the rows whose split column is null, and the first and last ranges
+ * are open ended. Each partition ends its transactions on its own.
+ */
+public class RunSqlPartitionedJobProducer extends RunSqlJobProducer {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int MAXIMUM_BOUND_SCALE = 18;
+    private final ConnectionPool connectionPool;
+    private final String splitColumn;
+    private final String tableName;
+    private final int partitions;
+    private final Supplier<Processor> processorFactory;
+
+    public RunSqlPartitionedJobProducer(final SqlParser sqlParser,
+                                        final ConnectionPool connectionPool,
+                                        final String splitColumn, final String tableName,
+                                        final int partitions,
+                                        final Supplier<Processor> processorFactory,
+                                        final JobQueue jobQueue, final int numberOfJobConsumers) {
+        super(sqlParser, null, jobQueue, numberOfJobConsumers);
+        this.connectionPool = connectionPool;
+        this.splitColumn = splitColumn;
+        this.tableName = tableName;
+        this.partitions = partitions;
+        this.processorFactory = processorFactory;
+    }
+
+    @Override
+    protected List<Job> createJobs(final String sql, final int statementNumber) {
+        if (partitions == 1) {
+            return Collections.singletonList(new RunSqlJob(processorFactory.get(), sql));
+        }
+        List<String> predicates;
+        try (Connection connection = connectionPool.getConnection()) {
+            predicates = discoverPredicates(connection, sql, getSplitColumn(connection));
+        } catch (final SQLException e) {
+            LOGGER.error("Error occurred when finding the key ranges of the source data.");
+            throw new RuntimeException(e);
+        }
+        if (predicates.isEmpty()) {
+            return Collections.singletonList(new RunSqlJob(processorFactory.get(), sql));
+        }
+        List<Job> jobs = new ArrayList<>(predicates.size());
+        for (String predicate : predicates) {
+            LOGGER.trace("Add partition of statement number " + statementNumber + ", "
+                                 + predicate);
+            jobs.add(new RunSqlJob(processorFactory.get(),
+                                   "select * from (" + sql + ") runsql_partition where "
+                                           + predicate));
+        }
+        return jobs;
+    }
+
+    private String getSplitColumn(final Connection connection) throws SQLException {
+        if (splitColumn != null) {
+            return splitColumn;
+        }
+        if (tableName != null) {
+            DatabaseMetaData databaseMetaData = connection.getMetaData();
+            int dot = tableName.lastIndexOf('.');
+            String[] schemas = getCaseVariants(dot < 0 ? null : tableName.substring(0, dot));
+            String[] tables = getCaseVariants(tableName.substring(dot + 1));
+            // Databases differ in the case they store unquoted names in.
+            for (int i = 0; i < tables.length; i++) {
+                List<String> columns = new ArrayList<>();
+                try (ResultSet resultSet = databaseMetaData
+                        .getPrimaryKeys(null, schemas[i], tables[i])) {
+                    while (resultSet.next()) {
+                        columns.add(resultSet.getString("COLUMN_NAME"));
+                    }
+                }
+                if (columns.size() == 1) {
+                    return columns.get(0);
+                }
+                if (columns.size() > 1) {
+                    break;
+                }
+            }
+        }
+        throw new RunSqlParseException(
+                "Partitioning an import requires --importsplitcolumn, unless --tablename names a "
+                        + "table with a single column primary key.", null);
+    }
+
+    private static String[] getCaseVariants(final String name) {
+        if (name == null) {
+            return new String[3];
+        }
+        return new String[] {name, name.toUpperCase(Locale.ROOT), name.toLowerCase(Locale.ROOT)};
+    }
+
+    private List<String> discoverPredicates(final Connection connection, final String sql,
+                                            final String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "select min(" + column + "), max(" + column + ") from (" + sql
+                             + ") runsql_partition")) {
+            resultSet.next();
+            List<String> bounds;
+            switch (resultSet.getMetaData().getColumnType(1)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    BigDecimal minimum = resultSet.getBigDecimal(1);
+                    BigDecimal maximum = resultSet.getBigDecimal(2);
+                    bounds = minimum == null || maximum == null
+                            ? Collections.emptyList()
+                            : getNumericBounds(minimum, maximum, partitions);
+                    break;
+                case Types.DATE:
+                    bounds = getTemporalBounds(resultSet.getDate(1), resultSet.getDate(2),
+                                               TimeUnit.DAYS.toMillis(1), partitions,
+                                               bound -> "{d '" + new Date(bound) + "'}");
+                    break;
+                case Types.TIMESTAMP:
+                    bounds = getTemporalBounds(resultSet.getTimestamp(1),
+                                               resultSet.getTimestamp(2), 1, partitions,
+                                               bound -> "{ts '" + new Timestamp(bound) + "'}");
+                    break;
+                default:
+                    throw new RunSqlParseException(
+                            "The split column " + column + " must be numeric, a date or a "
+                                    + "timestamp.", null);
+            }
+            return createPredicates(column, bounds);
+        }
+    }
+
+    /**
+     * @return The literals of the inner bounds that split the span from minimum to maximum into
+     * equally wide ranges. The span includes the maximum, one unit of the keys' scale wide.
+     * Bounds that would give empty ranges are left out.
+     */
+    static List<String> getNumericBounds(final BigDecimal minimum, final BigDecimal maximum,
+                                         final int partitions) {
+        int scale = Math.min(MAXIMUM_BOUND_SCALE,
+                             Math.max(0, Math.max(minimum.scale(), maximum.scale())));
+        BigDecimal width = maximum.subtract(minimum).add(BigDecimal.ONE.movePointLeft(scale));
+        List<String> bounds = new ArrayList<>(partitions - 1);
+        BigDecimal previous = minimum;
+        for (int i = 1; i < partitions; i++) {
+            BigDecimal bound = minimum.add(width.multiply(BigDecimal.valueOf(i))
+                                                .divide(BigDecimal.valueOf(partitions), scale,
+                                                        RoundingMode.FLOOR));
+            if (bound.compareTo(previous) > 0) {
+                bounds.add(bound.toPlainString());
+                previous = bound;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * @return The literals of the inner bounds that split the span from minimum to maximum into
+     * equally wide ranges, or none if either is null. The span includes the maximum, one unit
+     * wide. Bounds whose literal repeats the minimum's or the previous bound's are left out.
+     */
+    static List<String> getTemporalBounds(final java.util.Date minimum,
+                                          final java.util.Date maximum, final long unitMillis,
+                                          final int partitions,
+                                          final LongFunction<String> literal) {
+        List<String> bounds = new ArrayList<>();
+        if (minimum == null || maximum == null) {
+            return bounds;
+        }
+        long minimumTime = minimum.getTime();
+        double width = (double) maximum.getTime() - minimumTime + unitMillis;
+        String previous = literal.apply(minimumTime);
+        for (int i = 1; i < partitions; i++) {
+            String bound = literal.apply(minimumTime + (long) (width * i / partitions));
+            if (!bound.equals(previous)) {
+                bounds.add(bound);
+                previous = bound;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * @return One predicate per range between the bounds, or none when there are no bounds.
+     */
+    static List<String> createPredicates(final String column, final List<String> bounds) {
+        List<String> predicates = new ArrayList<>(bounds.size() + 1);
+        if (bounds.isEmpty()) {
+            return predicates;
+        }
+        predicates.add("(" + column + " < " + bounds.get(0) + " or " + column + " is null)");
+        for (int i = 1; i < bounds.size(); i++) {
+            predicates.add(column + " >= " + bounds.get(i - 1) + " and " + column + " < "
+                                   + bounds.get(i));
+        }
+        predicates.add(column + " >= " + bounds.get(bounds.size() - 1));
+        return predicates;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl;
+
+import runsql.Job;
+import runsql.Processor;
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * A job that writes its result set to a sink of its own, such as a file per statement, using
+ * its own processor. Jobs share no output state, so job consumers never wait on each other.
+ */
+public class RunSqlPerStatementJob implements Job {
+    private final String sql;
+    private final int statementNumber;
+    private final IntFunction<RunSqlOutputSink> outputSinkOpener;
+    private final Function<RunSqlOutputSink, Processor> processorFactory;
+
+    public RunSqlPerStatementJob(final String sql, final int statementNumber,
+                                 final IntFunction<RunSqlOutputSink> outputSinkOpener,
+                                 final Function<RunSqlOutputSink, Processor> processorFactory) {
+        this.sql = sql;
+        this.statementNumber = statementNumber;
+        this.outputSinkOpener = outputSinkOpener;
+        this.processorFactory = processorFactory;
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public Processor getProcessor() {
+        return this::process;
+    }
+
+    private void process(final ResultSet resultSet) throws SQLException, ClassNotFoundException {
+        RunSqlOutputSink outputSink = outputSinkOpener.apply(statementNumber);
+        try {
+            processorFactory.apply(outputSink).process(resultSet);
+        } finally {
+            outputSink.close();
+        }
+    }
+}
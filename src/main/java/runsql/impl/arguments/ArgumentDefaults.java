@@ -40,4 +40,22 @@ public class ArgumentDefaults {
     public static final String DEFAULT_BOOLEAN_FALSE_VALUE = "false";
     public static final String DEFAULT_RESULT_SET_FETCH_SIZE = "0";
     public static final String DEFAULT_NUMBER_OF_JOBS = "1";
+    public static final String DEFAULT_OUTPUT_BUFFER_SIZE = "65536";
+    public static final String DEFAULT_FORMAT_THREADS = "1";
+    public static final String DEFAULT_COMPRESS = "none";
+    public static final String DEFAULT_COMPRESS_BLOCK_SIZE = "1048576";
+    public static final String DEFAULT_WRITER_BUFFER_SIZE = "1048576";
+    public static final String DEFAULT_WRITER_STATISTICS = "f";
+    public static final String DEFAULT_SPILL_THRESHOLD = "16777216";
+    public static final String DEFAULT_ARROW_BATCH_SIZE = "65536";
+    public static final String DEFAULT_PARQUET_ROW_GROUP_SIZE = "131072";
+    public static final String DEFAULT_PARQUET_CODEC = "gzip";
+    public static final String DEFAULT_ROWS_PER_INSERT = "1";
+    public static final String DEFAULT_IMPORT_MAX_PARAMETERS = "2000";
+    public static final String DEFAULT_IMPORT_QUEUE_BYTES = "268435456";
+    public static final String DEFAULT_IMPORT_STATISTICS = "f";
+    public static final String DEFAULT_IMPORT_DIRECT_BUFFERS = "f";
+    public static final String DEFAULT_IMPORT_PARTITIONS = "1";
+    public static final String DEFAULT_BINARY_FORMAT = "array";
+    public static final String DEFAULT_DECIMAL_NOTATION = "default";
 }
@@ -60,7 +60,34 @@ public enum Parameter {
     RESULT_SET_FETCH_SIZE(null, "resultsetfetchsize", null),
     IMPORT_PROPERTIES_FILE_PATH(null, "importpropertiesfilepath", "file"),
     IMPORT_PROPERTIES_PREFIX(null, "importpropertiesprefix", null),
-    NUMBER_OF_JOBS(null, "numberofjobs", "N");
+    NUMBER_OF_JOBS(null, "numberofjobs", "N"),
+    OUTPUT_BUFFER_SIZE(null, "outputbuffersize", "N"),
+    FORMAT_THREADS(null, "formatthreads", "N"),
+    COMPRESS(null, "compress", "none|gzip"),
+    COMPRESS_BLOCK_SIZE(null, "compressblocksize", "N"),
+    COMPRESS_THREADS(null, "compressthreads", "N"),
+    SPLIT_ROWS(null, "splitrows", "N"),
+    SPLIT_BYTES(null, "splitbytes", "N"),
+    WRITER_BUFFERS(null, "writerbuffers", "N"),
+    WRITER_BUFFER_SIZE(null, "writerbuffersize", "N"),
+    WRITER_STATISTICS(null, "writerstatistics", "t|f"),
+    SPILL_THRESHOLD(null, "spillthreshold", "N"),
+    ARROW_BATCH_SIZE(null, "arrowbatchsize", "N"),
+    PARQUET_ROW_GROUP_SIZE(null, "parquetrowgroupsize", "N"),
+    PARQUET_CODEC(null, "parquetcodec", "none|gzip"),
+    ROWS_PER_INSERT(null, "rowsperinsert", "N"),
+    BINARY_FORMAT(null, "binaryformat", "array|hex|base64"),
+    DATE_FORMAT(null, "dateformat", "pattern"),
+    TIME_FORMAT(null, "timeformat", "pattern"),
+    TIMESTAMP_FORMAT(null, "timestampformat", "pattern"),
+    DECIMAL_NOTATION(null, "decimalnotation", "default|plain|scientific"),
+    IMPORT_MAX_PARAMETERS(null, "importmaxparameters", "N"),
+    IMPORT_QUEUE_BYTES(null, "importqueuebytes", "N"),
+    IMPORT_STATISTICS(null, "importstatistics", "t|f"),
+    IMPORT_DIRECT_BUFFERS(null, "importdirectbuffers", "t|f"),
+    IMPORT_PARTITIONS(null, "importpartitions", "N"),
+    IMPORT_SPLIT_COLUMN(null, "importsplitcolumn", "column"),
+    IMPORT_SOURCE_JOBS(null, "importsourcejobs", "N");
     private final String name;
     private final String longName;
     private final String argName;
@@ -38,43 +38,70 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import static runsql.impl.arguments.Parameter.ARROW_BATCH_SIZE;
 import static runsql.impl.arguments.Parameter.BATCH_SIZE;
+import static runsql.impl.arguments.Parameter.BINARY_FORMAT;
 import static runsql.impl.arguments.Parameter.BOOLEAN_FALSE_VALUE;
 import static runsql.impl.arguments.Parameter.BOOLEAN_TRUE_VALUE;
 import static runsql.impl.arguments.Parameter.COLUMN_SEPARATOR;
+import static runsql.impl.arguments.Parameter.COMPRESS;
+import static runsql.impl.arguments.Parameter.COMPRESS_BLOCK_SIZE;
+import static runsql.impl.arguments.Parameter.COMPRESS_THREADS;
+import static runsql.impl.arguments.Parameter.DATE_FORMAT;
+import static runsql.impl.arguments.Parameter.DECIMAL_NOTATION;
 import static runsql.impl.arguments.Parameter.DRIVER;
 import static runsql.impl.arguments.Parameter.ECHO_SQL;
 import static runsql.impl.arguments.Parameter.ESCAPE_CHARACTER;
 import static runsql.impl.arguments.Parameter.FILE_FORMAT;
+import static runsql.impl.arguments.Parameter.FORMAT_THREADS;
 import static runsql.impl.arguments.Parameter.HELP;
 import static runsql.impl.arguments.Parameter.IMPORT_COLUMNS;
+import static runsql.impl.arguments.Parameter.IMPORT_DIRECT_BUFFERS;
 import static runsql.impl.arguments.Parameter.IMPORT_DRIVER;
+import static runsql.impl.arguments.Parameter.IMPORT_MAX_PARAMETERS;
+import static runsql.impl.arguments.Parameter.IMPORT_PARTITIONS;
 import static runsql.impl.arguments.Parameter.IMPORT_PASSWORD;
 import static runsql.impl.arguments.Parameter.IMPORT_PROPERTIES_FILE_PATH;
 import static runsql.impl.arguments.Parameter.IMPORT_PROPERTIES_PREFIX;
+import static runsql.impl.arguments.Parameter.IMPORT_QUEUE_BYTES;
+import static runsql.impl.arguments.Parameter.IMPORT_SOURCE_JOBS;
+import static runsql.impl.arguments.Parameter.IMPORT_SPLIT_COLUMN;
+import static runsql.impl.arguments.Parameter.IMPORT_STATISTICS;
 import static runsql.impl.arguments.Parameter.IMPORT_TABLE;
 import static runsql.impl.arguments.Parameter.IMPORT_URL;
 import static runsql.impl.arguments.Parameter.IMPORT_USER;
 import static runsql.impl.arguments.Parameter.INCLUDE_HEADERS;
 import static runsql.impl.arguments.Parameter.INPUT_FILE_PATH;
 import static runsql.impl.arguments.Parameter.NUMBER_OF_JOBS;
+import static runsql.impl.arguments.Parameter.OUTPUT_BUFFER_SIZE;
 import static runsql.impl.arguments.Parameter.OUTPUT_FILE_PATH;
+import static runsql.impl.arguments.Parameter.PARQUET_CODEC;
+import static runsql.impl.arguments.Parameter.PARQUET_ROW_GROUP_SIZE;
 import static runsql.impl.arguments.Parameter.PASSWORD;
 import static runsql.impl.arguments.Parameter.PROPERTIES_FILE_PATH;
 import static runsql.impl.arguments.Parameter.PROPERTIES_PREFIX;
 import static runsql.impl.arguments.Parameter.QUOTE_MODE;
 import static runsql.impl.arguments.Parameter.QUOTE_VALUE;
 import static runsql.impl.arguments.Parameter.RESULT_SET_FETCH_SIZE;
+import static runsql.impl.arguments.Parameter.ROWS_PER_INSERT;
 import static runsql.impl.arguments.Parameter.ROW_SEPARATOR;
 import static runsql.impl.arguments.Parameter.SPLIT_SQL_STATEMENTS;
+import static runsql.impl.arguments.Parameter.SPILL_THRESHOLD;
+import static runsql.impl.arguments.Parameter.SPLIT_BYTES;
+import static runsql.impl.arguments.Parameter.SPLIT_ROWS;
 import static runsql.impl.arguments.Parameter.SQL;
 import static runsql.impl.arguments.Parameter.STATEMENT_SEPARATOR;
 import static runsql.impl.arguments.Parameter.STRIP_COMMENTS;
 import static runsql.impl.arguments.Parameter.TABLE_NAME;
+import static runsql.impl.arguments.Parameter.TIMESTAMP_FORMAT;
+import static runsql.impl.arguments.Parameter.TIME_FORMAT;
 import static runsql.impl.arguments.Parameter.TRANSACTION_MODE;
 import static runsql.impl.arguments.Parameter.URL;
 import static runsql.impl.arguments.Parameter.USER;
 import static runsql.impl.arguments.Parameter.VALUE_WHEN_NULL;
+import static runsql.impl.arguments.Parameter.WRITER_BUFFERS;
+import static runsql.impl.arguments.Parameter.WRITER_BUFFER_SIZE;
+import static runsql.impl.arguments.Parameter.WRITER_STATISTICS;
 
 public class RunSqlArguments implements Arguments {
     public static final int HELP_WIDTH = 160;
@@ -133,7 +160,27 @@ public class RunSqlArguments implements Arguments {
                         .getProperty("options.numberOfJobs")));
         outputOptions
                 .addOption(createArgumentOption(OUTPUT_FILE_PATH, helpProperties
-                        .getProperty("options.outputFilePath")));
+                        .getProperty("options.outputFilePath")))
+                .addOption(createArgumentOption(OUTPUT_BUFFER_SIZE, helpProperties
+                        .getProperty("options.outputBufferSize")))
+                .addOption(createArgumentOption(COMPRESS,
+                                                helpProperties.getProperty("options.compress")))
+                .addOption(createArgumentOption(COMPRESS_BLOCK_SIZE, helpProperties
+                        .getProperty("options.compressBlockSize")))
+                .addOption(createArgumentOption(COMPRESS_THREADS, helpProperties
+                        .getProperty("options.compressThreads")))
+                .addOption(createArgumentOption(SPLIT_ROWS,
+                                                helpProperties.getProperty("options.splitRows")))
+                .addOption(createArgumentOption(SPLIT_BYTES,
+                                                helpProperties.getProperty("options.splitBytes")))
+                .addOption(createArgumentOption(WRITER_BUFFERS, helpProperties
+                        .getProperty("options.writerBuffers")))
+                .addOption(createArgumentOption(WRITER_BUFFER_SIZE, helpProperties
+                        .getProperty("options.writerBufferSize")))
+                .addOption(createArgumentOption(WRITER_STATISTICS, helpProperties
+                        .getProperty("options.writerStatistics")))
+                .addOption(createArgumentOption(SPILL_THRESHOLD, helpProperties
+                        .getProperty("options.spillThreshold")));
         importOptions
                 .addOption(createArgumentOption(IMPORT_TABLE,
                                                 helpProperties.getProperty("options.importTable")))
@@ -150,7 +197,21 @@ public class RunSqlArguments implements Arguments {
                 .addOption(createArgumentOption(IMPORT_PROPERTIES_FILE_PATH, helpProperties
                         .getProperty("options.importPropertiesFilePath")))
                 .addOption(createArgumentOption(IMPORT_PROPERTIES_PREFIX, helpProperties
-                        .getProperty("options.importPropertiesPrefix")));
+                        .getProperty("options.importPropertiesPrefix")))
+                .addOption(createArgumentOption(IMPORT_MAX_PARAMETERS, helpProperties
+                        .getProperty("options.importMaxParameters")))
+                .addOption(createArgumentOption(IMPORT_QUEUE_BYTES, helpProperties
+                        .getProperty("options.importQueueBytes")))
+                .addOption(createArgumentOption(IMPORT_STATISTICS, helpProperties
+                        .getProperty("options.importStatistics")))
+                .addOption(createArgumentOption(IMPORT_DIRECT_BUFFERS, helpProperties
+                        .getProperty("options.importDirectBuffers")))
+                .addOption(createArgumentOption(IMPORT_PARTITIONS, helpProperties
+                        .getProperty("options.importPartitions")))
+                .addOption(createArgumentOption(IMPORT_SPLIT_COLUMN, helpProperties
+                        .getProperty("options.importSplitColumn")))
+                .addOption(createArgumentOption(IMPORT_SOURCE_JOBS, helpProperties
+                        .getProperty("options.importSourceJobs")));
         formatOptions
                 .addOption(createArgumentOption(ROW_SEPARATOR,
                                                 helpProperties.getProperty("options.rowSeparator")))
@@ -170,10 +231,30 @@ public class RunSqlArguments implements Arguments {
                                                 helpProperties.getProperty("options.fileFormat")))
                 .addOption(createArgumentOption(TABLE_NAME,
                                                 helpProperties.getProperty("options.tableName")))
+                .addOption(createArgumentOption(ROWS_PER_INSERT, helpProperties
+                        .getProperty("options.rowsPerInsert")))
                 .addOption(createArgumentOption(BOOLEAN_TRUE_VALUE, helpProperties
                         .getProperty("options.booleanTrueValue")))
                 .addOption(createArgumentOption(BOOLEAN_FALSE_VALUE, helpProperties
-                        .getProperty("options.booleanFalseValue")));
+                        .getProperty("options.booleanFalseValue")))
+                .addOption(createArgumentOption(BINARY_FORMAT, helpProperties
+                        .getProperty("options.binaryFormat")))
+                .addOption(createArgumentOption(DATE_FORMAT,
+                                                helpProperties.getProperty("options.dateFormat")))
+                .addOption(createArgumentOption(TIME_FORMAT,
+                                                helpProperties.getProperty("options.timeFormat")))
+                .addOption(createArgumentOption(TIMESTAMP_FORMAT, helpProperties
+                        .getProperty("options.timestampFormat")))
+                .addOption(createArgumentOption(DECIMAL_NOTATION, helpProperties
+                        .getProperty("options.decimalNotation")))
+                .addOption(createArgumentOption(FORMAT_THREADS,
+                                                helpProperties.getProperty("options.formatThreads")))
+                .addOption(createArgumentOption(ARROW_BATCH_SIZE, helpProperties
+                        .getProperty("options.arrowBatchSize")))
+                .addOption(createArgumentOption(PARQUET_ROW_GROUP_SIZE, helpProperties
+                        .getProperty("options.parquetRowGroupSize")))
+                .addOption(createArgumentOption(PARQUET_CODEC, helpProperties
+                        .getProperty("options.parquetCodec")));
         otherOptions
                 .addOption(Option.builder(HELP.getName()).longOpt(HELP.getLongName())
                                  .desc(helpProperties.getProperty("options.help")).build());
@@ -211,6 +292,41 @@ public class RunSqlArguments implements Arguments {
                              ArgumentDefaults.DEFAULT_RESULT_SET_FETCH_SIZE);
         defaultValuesMap
                 .put(NUMBER_OF_JOBS.getEitherName(), ArgumentDefaults.DEFAULT_NUMBER_OF_JOBS);
+        defaultValuesMap.put(OUTPUT_BUFFER_SIZE.getEitherName(),
+                             ArgumentDefaults.DEFAULT_OUTPUT_BUFFER_SIZE);
+        defaultValuesMap
+                .put(FORMAT_THREADS.getEitherName(), ArgumentDefaults.DEFAULT_FORMAT_THREADS);
+        defaultValuesMap.put(COMPRESS.getEitherName(), ArgumentDefaults.DEFAULT_COMPRESS);
+        defaultValuesMap
+                .put(ARROW_BATCH_SIZE.getEitherName(), ArgumentDefaults.DEFAULT_ARROW_BATCH_SIZE);
+        defaultValuesMap.put(PARQUET_ROW_GROUP_SIZE.getEitherName(),
+                             ArgumentDefaults.DEFAULT_PARQUET_ROW_GROUP_SIZE);
+        defaultValuesMap
+                .put(PARQUET_CODEC.getEitherName(), ArgumentDefaults.DEFAULT_PARQUET_CODEC);
+        defaultValuesMap
+                .put(ROWS_PER_INSERT.getEitherName(), ArgumentDefaults.DEFAULT_ROWS_PER_INSERT);
+        defaultValuesMap.put(IMPORT_MAX_PARAMETERS.getEitherName(),
+                             ArgumentDefaults.DEFAULT_IMPORT_MAX_PARAMETERS);
+        defaultValuesMap.put(IMPORT_QUEUE_BYTES.getEitherName(),
+                             ArgumentDefaults.DEFAULT_IMPORT_QUEUE_BYTES);
+        defaultValuesMap.put(IMPORT_STATISTICS.getEitherName(),
+                             ArgumentDefaults.DEFAULT_IMPORT_STATISTICS);
+        defaultValuesMap.put(IMPORT_DIRECT_BUFFERS.getEitherName(),
+                             ArgumentDefaults.DEFAULT_IMPORT_DIRECT_BUFFERS);
+        defaultValuesMap.put(IMPORT_PARTITIONS.getEitherName(),
+                             ArgumentDefaults.DEFAULT_IMPORT_PARTITIONS);
+        defaultValuesMap
+                .put(BINARY_FORMAT.getEitherName(), ArgumentDefaults.DEFAULT_BINARY_FORMAT);
+        defaultValuesMap
+                .put(DECIMAL_NOTATION.getEitherName(), ArgumentDefaults.DEFAULT_DECIMAL_NOTATION);
+        defaultValuesMap.put(COMPRESS_BLOCK_SIZE.getEitherName(),
+                             ArgumentDefaults.DEFAULT_COMPRESS_BLOCK_SIZE);
+        defaultValuesMap.put(WRITER_BUFFER_SIZE.getEitherName(),
+                             ArgumentDefaults.DEFAULT_WRITER_BUFFER_SIZE);
+        defaultValuesMap.put(WRITER_STATISTICS.getEitherName(),
+                             ArgumentDefaults.DEFAULT_WRITER_STATISTICS);
+        defaultValuesMap
+                .put(SPILL_THRESHOLD.getEitherName(), ArgumentDefaults.DEFAULT_SPILL_THRESHOLD);
     }
 
     private static Option createArgumentOption(final Parameter name, final String description) {
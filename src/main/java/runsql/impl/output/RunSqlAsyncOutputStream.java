@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An output stream that hands its data to a dedicated writer thread.
+ * <p>
+ * Bytes are collected into one of a fixed number of buffers. When a buffer fills up it is queued
+ * for the writer thread, which writes it to the underlying stream and then returns it for reuse,
+ * while the calling thread carries on filling the next buffer. This lets the thread fetching rows
+ * from the database keep working while the output file or pipe is slow. When every buffer is
+ * waiting to be written, the calling thread blocks until the writer returns one.
+ * <p>
+ * {@link #flush()} waits until the writer has written everything and flushed the underlying
+ * stream. An error from the underlying stream is rethrown by the next call to write, flush or
+ * close. The time both threads spent waiting on each other is recorded so that callers can tell
+ * which side of the pipeline is the bottleneck.
+ * <p>
+ * This class is not thread safe.
+ */
+public class RunSqlAsyncOutputStream extends OutputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 1048576;
+    private static final int FLUSH = -1;
+    private static final int STOP = -2;
+    private final OutputStream outputStream;
+    private final int bufferCount;
+    private final BlockingQueue<Block> filledBlocks;
+    private final BlockingQueue<Block> freeBlocks;
+    private final Thread writerThread;
+    private Block block;
+    private long stallNanos;
+    private volatile IOException writerException;
+    private volatile long writerIdleNanos;
+    private volatile long writerBusyNanos;
+    private volatile long bytesWritten;
+    private boolean finished;
+    private boolean closed;
+
+    public RunSqlAsyncOutputStream(final OutputStream outputStream, final int bufferCount,
+                                   final int bufferSize) {
+        if (bufferCount < 2 || bufferSize < 1) {
+            throw new IllegalArgumentException(
+                    "Buffer count must be at least two and buffer size positive.");
+        }
+        this.outputStream = outputStream;
+        this.bufferCount = bufferCount;
+        filledBlocks = new ArrayBlockingQueue<>(bufferCount);
+        freeBlocks = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 1; i < bufferCount; i++) {
+            freeBlocks.add(new Block(bufferSize));
+        }
+        block = new Block(bufferSize);
+        writerThread = new Thread(this::runWriter, "runsql-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (block.length == block.bytes.length) {
+            submitBlock();
+        }
+        block.bytes[block.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (block.length == block.bytes.length) {
+                submitBlock();
+            }
+            int count = Math.min(length - written, block.bytes.length - block.length);
+            System.arraycopy(bytes, offset + written, block.bytes, block.length, count);
+            block.length += count;
+            written += count;
+        }
+    }
+
+    /**
+     * Queues the buffered bytes, waits until the writer thread has written them, and flushes the
+     * underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (block.length > 0) {
+            submitBlock();
+        }
+        block.length = FLUSH;
+        submitBlock();
+        awaitWriter();
+    }
+
+    /**
+     * Writes everything buffered and stops the writer thread without closing the underlying
+     * stream. Calling this more than once has no effect.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flush();
+        block.length = STOP;
+        filledBlocks.add(block);
+        try {
+            writerThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping the writer thread.");
+        }
+        finished = true;
+        // Callers keep finished streams around for their statistics, so let the buffers go.
+        freeBlocks.clear();
+        block = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finish();
+        outputStream.close();
+    }
+
+    /**
+     * @return The time in nanoseconds the calling thread spent blocked because every buffer was
+     * waiting to be written, including the time spent waiting in {@link #flush()}.
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * @return The time in nanoseconds the writer thread spent waiting for a buffer to write.
+     */
+    public long getWriterIdleNanos() {
+        return writerIdleNanos;
+    }
+
+    /**
+     * @return The time in nanoseconds the writer thread spent writing to and flushing the
+     * underlying stream.
+     */
+    public long getWriterBusyNanos() {
+        return writerBusyNanos;
+    }
+
+    /**
+     * @return The number of bytes the writer thread has written to the underlying stream.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void submitBlock() throws IOException {
+        checkWriterException();
+        filledBlocks.add(block);
+        block = takeFreeBlock();
+        checkWriterException();
+    }
+
+    /**
+     * Waits until the writer thread has returned every buffer, and so has nothing left to write.
+     */
+    private void awaitWriter() throws IOException {
+        List<Block> blocks = new ArrayList<>(bufferCount);
+        blocks.add(block);
+        while (blocks.size() < bufferCount) {
+            blocks.add(takeFreeBlock());
+        }
+        block = blocks.remove(blocks.size() - 1);
+        freeBlocks.addAll(blocks);
+        checkWriterException();
+    }
+
+    private Block takeFreeBlock() throws IOException {
+        long start = System.nanoTime();
+        Block freeBlock;
+        try {
+            freeBlock = freeBlocks.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer thread.");
+        }
+        stallNanos += System.nanoTime() - start;
+        freeBlock.length = 0;
+        return freeBlock;
+    }
+
+    private void checkWriterException() throws IOException {
+        if (writerException != null) {
+            throw writerException;
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            long start = System.nanoTime();
+            Block filledBlock;
+            try {
+                filledBlock = filledBlocks.take();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            long taken = System.nanoTime();
+            writerIdleNanos += taken - start;
+            if (filledBlock.length == STOP) {
+                return;
+            }
+            // After an error keep returning buffers, unwritten, so the calling thread never
+            // waits forever and sees the error instead.
+            if (writerException == null) {
+                try {
+                    if (filledBlock.length == FLUSH) {
+                        outputStream.flush();
+                    } else {
+                        outputStream.write(filledBlock.bytes, 0, filledBlock.length);
+                        bytesWritten += filledBlock.length;
+                    }
+                } catch (final IOException e) {
+                    writerException = e;
+                } catch (final RuntimeException e) {
+                    writerException = new IOException(e);
+                }
+            }
+            writerBusyNanos += System.nanoTime() - taken;
+            freeBlocks.add(filledBlock);
+        }
+    }
+
+    private static class Block {
+        private final byte[] bytes;
+        private int length;
+
+        private Block(final int size) {
+            bytes = new byte[size];
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the output of concurrently executed sql statements in the order the statements appear
+ * in the script.
+ * <p>
+ * Each job renders its result set into its own {@link RunSqlSpillOutputStream} and hands it to
+ * {@link #complete(long, RunSqlSpillOutputStream)} when done, along with the statement's sequence
+ * number. Sequence numbers start at one and every statement must be completed, with a null
+ * buffer when it produced no output, so that the statements after it can be written. Completed
+ * buffers are written to the sink as soon as every earlier statement has been written. The job
+ * that completes the next statement in line does the writing, outside of the lock, so other jobs
+ * never wait on it and carry on with their next statement.
+ * <p>
+ * This class is thread safe.
+ */
+public class RunSqlOutputSequencer {
+    private final RunSqlOutputSink outputSink;
+    private final int bufferSize;
+    private final long spillThreshold;
+    private final Map<Long, RunSqlSpillOutputStream> completed = new TreeMap<>();
+    private long nextSequenceNumber = 1;
+    private boolean writing;
+
+    /**
+     * @param outputSink     The sink to write the output to.
+     * @param bufferSize     The buffer size of the sinks jobs render into.
+     * @param spillThreshold The number of bytes of a statement's output kept in memory before
+     *                       moving it to a temporary file.
+     */
+    public RunSqlOutputSequencer(final RunSqlOutputSink outputSink, final int bufferSize,
+                                 final long spillThreshold) {
+        this.outputSink = outputSink;
+        this.bufferSize = bufferSize;
+        this.spillThreshold = spillThreshold;
+    }
+
+    public RunSqlSpillOutputStream createSpillOutputStream() {
+        return new RunSqlSpillOutputStream(spillThreshold);
+    }
+
+    /**
+     * Creates a sink for a job to render into, using the same charset as the final sink.
+     */
+    public RunSqlOutputSink createOutputSink(final OutputStream outputStream) {
+        return new RunSqlOutputSink(outputStream, bufferSize, outputSink.getCharset());
+    }
+
+    /**
+     * Marks the statement as done and writes every completed statement whose turn has come.
+     *
+     * @param sequenceNumber The statement's position in the script, starting at one.
+     * @param buffer         The statement's output, or null if it has none.
+     */
+    public void complete(final long sequenceNumber, final RunSqlSpillOutputStream buffer) {
+        synchronized (this) {
+            completed.put(sequenceNumber, buffer);
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        boolean done = false;
+        try {
+            while (!done) {
+                RunSqlSpillOutputStream next = null;
+                synchronized (this) {
+                    if (completed.containsKey(nextSequenceNumber)) {
+                        next = completed.remove(nextSequenceNumber++);
+                    } else {
+                        writing = false;
+                        done = true;
+                    }
+                }
+                if (next != null) {
+                    write(next);
+                }
+            }
+        } finally {
+            if (!done) {
+                synchronized (this) {
+                    writing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining completed statements in order, skipping any that never completed.
+     * Call once all jobs are done.
+     */
+    public synchronized void finish() {
+        for (RunSqlSpillOutputStream buffer : completed.values()) {
+            if (buffer != null) {
+                write(buffer);
+            }
+        }
+        completed.clear();
+    }
+
+    private void write(final RunSqlSpillOutputStream buffer) {
+        try {
+            try {
+                buffer.writeTo(outputSink);
+            } finally {
+                buffer.close();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        outputSink.flush();
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A buffered byte sink that the print processors write their output through.
+ * <p>
+ * Characters are encoded directly into a single reusable byte buffer. ASCII characters, and
+ * every character when the charset is UTF-8, are encoded by hand without going through a {@link
+ * CharsetEncoder}. The buffer is only handed to the underlying stream when it fills up or when
+ * {@link #flush()} is called, which processors do at the end of each result set.
+ * <p>
+ * This class is not thread safe.
+ */
+public class RunSqlOutputSink implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+    // Enough room for the longest long value, or a single encoded character.
+    private static final int MINIMUM_BUFFER_SIZE = 32;
+    private static final byte[] LONG_MIN_VALUE_BYTES =
+            Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS =
+            "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_DIGITS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+                    .getBytes(StandardCharsets.US_ASCII);
+    protected final OutputStream outputStream;
+    protected final byte[] buffer;
+    protected int position;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean asciiCompatible;
+    private final CharsetEncoder charsetEncoder;
+
+    public RunSqlOutputSink(final OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+    }
+
+    public RunSqlOutputSink(final OutputStream outputStream, final int bufferSize,
+                            final Charset charset) {
+        this.outputStream = outputStream;
+        buffer = new byte[Math.max(bufferSize, MINIMUM_BUFFER_SIZE)];
+        this.charset = charset;
+        utf8 = StandardCharsets.UTF_8.equals(charset);
+        asciiCompatible = utf8 || isAsciiCompatible(charset);
+        charsetEncoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static boolean isAsciiCompatible(final Charset charset) {
+        byte[] ascii = new byte[128];
+        char[] chars = new char[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+            chars[i] = (char) i;
+        }
+        return Arrays.equals(ascii, new String(chars).getBytes(charset));
+    }
+
+    private static int stringSize(final long value) {
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < p) {
+                return i;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public void writeByte(final int b) {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    public void write(final byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    public void write(final byte[] bytes, final int offset, final int length) {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                writeToOutputStream(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    public void write(final char c) {
+        if (c < 0x80 && asciiCompatible) {
+            writeByte(c);
+        } else {
+            write(String.valueOf(c), 0, 1);
+        }
+    }
+
+    public void write(final String string) {
+        write(string, 0, string.length());
+    }
+
+    /**
+     * Writes the characters of the string from start, inclusive, to end, exclusive.
+     *
+     * @param string The string to write.
+     * @param start  Index of the first character to write.
+     * @param end    Index after the last character to write.
+     */
+    public void write(final String string, final int start, final int end) {
+        if (!asciiCompatible) {
+            encode(string, start, end);
+            return;
+        }
+        int i = start;
+        while (i < end) {
+            if (position == buffer.length) {
+                drain();
+            }
+            // Copy as many ASCII characters as fit in the buffer in a tight loop.
+            int limit = Math.min(end, i + buffer.length - position);
+            char c;
+            while (i < limit && (c = string.charAt(i)) < 0x80) {
+                buffer[position++] = (byte) c;
+                i++;
+            }
+            if (i < limit) {
+                if (utf8) {
+                    i = writeUtf8(string, i, end);
+                } else {
+                    int j = i + 1;
+                    while (j < end && string.charAt(j) >= 0x80) {
+                        j++;
+                    }
+                    encode(string, i, j);
+                    i = j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the decimal digits of the value without creating an intermediate String.
+     *
+     * @param value The value to write.
+     */
+    public void write(final long value) {
+        if (!asciiCompatible) {
+            write(Long.toString(value));
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            write(LONG_MIN_VALUE_BYTES);
+            return;
+        }
+        if (buffer.length - position < 20) {
+            drain();
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[position++] = '-';
+            remaining = -remaining;
+        }
+        int digits = stringSize(remaining);
+        int p = position + digits;
+        do {
+            buffer[--p] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        position += digits;
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative value, padded with leading zeros to at least
+     * the given number of digits, without creating an intermediate String.
+     *
+     * @param value  The value to write, which must not be negative.
+     * @param digits The minimum number of digits to write.
+     */
+    public void writePadded(final long value, final int digits) {
+        int size = stringSize(value);
+        if (!asciiCompatible) {
+            StringBuilder padded = new StringBuilder(Math.max(size, digits));
+            for (int i = size; i < digits; i++) {
+                padded.append('0');
+            }
+            write(padded.append(value).toString());
+            return;
+        }
+        for (int i = size; i < digits; i++) {
+            writeByte('0');
+        }
+        if (buffer.length - position < size) {
+            drain();
+        }
+        long remaining = value;
+        int p = position + size;
+        do {
+            buffer[--p] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        position += size;
+    }
+
+    /**
+     * Writes two lowercase hexadecimal digits for each byte, encoding straight into the buffer.
+     * Assumes an ASCII compatible charset.
+     *
+     * @param bytes  The bytes to encode.
+     * @param offset Index of the first byte to encode.
+     * @param length The number of bytes to encode.
+     */
+    public void writeHex(final byte[] bytes, final int offset, final int length) {
+        if (!asciiCompatible) {
+            StringBuilder hex = new StringBuilder(2 * length);
+            for (int i = offset; i < offset + length; i++) {
+                hex.append((char) HEX_DIGITS[bytes[i] >> 4 & 0xf])
+                   .append((char) HEX_DIGITS[bytes[i] & 0xf]);
+            }
+            write(hex.toString());
+            return;
+        }
+        int i = offset;
+        int end = offset + length;
+        while (i < end) {
+            if (buffer.length - position < 2) {
+                drain();
+            }
+            int limit = Math.min(end, i + (buffer.length - position) / 2);
+            for (; i < limit; i++) {
+                buffer[position++] = HEX_DIGITS[bytes[i] >> 4 & 0xf];
+                buffer[position++] = HEX_DIGITS[bytes[i] & 0xf];
+            }
+        }
+    }
+
+    /**
+     * Writes the bytes in base64, encoding straight into the buffer. A trailing group of fewer
+     * than three bytes is padded, so when encoding a value in several calls every call but the
+     * last must pass a multiple of three bytes. Assumes an ASCII compatible charset.
+     *
+     * @param bytes  The bytes to encode.
+     * @param offset Index of the first byte to encode.
+     * @param length The number of bytes to encode.
+     */
+    public void writeBase64(final byte[] bytes, final int offset, final int length) {
+        if (!asciiCompatible) {
+            write(Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytes, offset,
+                                                                        offset + length)));
+            return;
+        }
+        int i = offset;
+        int end = offset + length;
+        while (end - i >= 3) {
+            if (buffer.length - position < 4) {
+                drain();
+            }
+            int limit = i + Math.min((end - i) / 3, (buffer.length - position) / 4) * 3;
+            for (; i < limit; i += 3) {
+                int group = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8
+                        | bytes[i + 2] & 0xff;
+                buffer[position++] = BASE64_DIGITS[group >> 18];
+                buffer[position++] = BASE64_DIGITS[group >> 12 & 0x3f];
+                buffer[position++] = BASE64_DIGITS[group >> 6 & 0x3f];
+                buffer[position++] = BASE64_DIGITS[group & 0x3f];
+            }
+        }
+        if (i < end) {
+            if (buffer.length - position < 4) {
+                drain();
+            }
+            int group = (bytes[i] & 0xff) << 16 | (i + 1 < end ? (bytes[i + 1] & 0xff) << 8 : 0);
+            buffer[position++] = BASE64_DIGITS[group >> 18];
+            buffer[position++] = BASE64_DIGITS[group >> 12 & 0x3f];
+            buffer[position++] = i + 1 < end ? BASE64_DIGITS[group >> 6 & 0x3f] : (byte) '=';
+            buffer[position++] = '=';
+        }
+    }
+
+    /**
+     * Marks the end of a row. Processors call this after writing each row separator so that sinks
+     * which care about row boundaries, such as {@link RunSqlSplittingOutputSink}, only act between
+     * rows. This sink ignores it.
+     */
+    public void endRow() {
+    }
+
+    /**
+     * Marks the start of a new result set's header. Everything written until {@link #endHeader()}
+     * is the header, which may be empty. This sink ignores it.
+     */
+    public void startHeader() {
+    }
+
+    /**
+     * Marks the end of the header started by {@link #startHeader()}. This sink ignores it.
+     */
+    public void endHeader() {
+    }
+
+    /**
+     * Writes any buffered bytes to the underlying stream and flushes it.
+     */
+    @Override
+    public void flush() {
+        drain();
+        try {
+            outputStream.flush();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            outputStream.close();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hands the buffered bytes to the underlying stream and empties the buffer.
+     */
+    protected void drain() {
+        if (position > 0) {
+            writeToOutputStream(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    protected void writeToOutputStream(final byte[] bytes, final int offset, final int length) {
+        try {
+            outputStream.write(bytes, offset, length);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int writeUtf8(final String string, final int index, final int end) {
+        if (buffer.length - position < 4) {
+            drain();
+        }
+        char c = string.charAt(index);
+        if (c < 0x800) {
+            buffer[position++] = (byte) (0xc0 | c >> 6);
+            buffer[position++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isHighSurrogate(c) && index + 1 < end && Character
+                .isLowSurrogate(string.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, string.charAt(index + 1));
+            buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+            buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+            buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            return index + 2;
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogate, mirror the replacement the JDK encoder uses.
+            buffer[position++] = '?';
+        } else {
+            buffer[position++] = (byte) (0xe0 | c >> 12);
+            buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buffer[position++] = (byte) (0x80 | c & 0x3f);
+        }
+        return index + 1;
+    }
+
+    private void encode(final String string, final int start, final int end) {
+        CharBuffer charBuffer = CharBuffer.wrap(string, start, end);
+        while (true) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, position, buffer.length - position);
+            CoderResult coderResult = charsetEncoder.encode(charBuffer, byteBuffer, true);
+            position = byteBuffer.position();
+            if (coderResult.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        charsetEncoder.reset();
+    }
+}
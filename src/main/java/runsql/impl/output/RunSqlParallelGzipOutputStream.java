@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream that gzip compresses its data on a pool of threads.
+ * <p>
+ * Bytes are collected into fixed size blocks. Each full block is compressed by a worker thread
+ * into a complete gzip member, and the members are written to the underlying stream in the order
+ * the blocks were filled. A gzip file may consist of several concatenated members (RFC 1952), so
+ * the result is a standard .gz file that gunzip and {@link java.util.zip.GZIPInputStream} read
+ * back as a whole. Only the JDK {@link Deflater} is used.
+ * <p>
+ * At most two blocks per thread are in flight at any time, so writers block rather than buffer an
+ * unbounded amount of data when the compressors fall behind. {@link #flush()} writes every block
+ * that was handed to the compressors but leaves the current, partially filled block in memory;
+ * {@link #finish()} compresses that last block as well.
+ * <p>
+ * This class is not thread safe.
+ */
+public class RunSqlParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 1048576;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int OS_UNKNOWN = 255;
+    private final OutputStream outputStream;
+    private final int blockSize;
+    private final int compressionLevel;
+    private final int maximumPendingBlocks;
+    private final ExecutorService executorService;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final BlockingQueue<Deflater> deflaters;
+    private byte[] buffer;
+    private int position;
+    private boolean wroteMember;
+    private boolean finished;
+
+    public RunSqlParallelGzipOutputStream(final OutputStream outputStream, final int blockSize,
+                                          final int threads) {
+        this(outputStream, blockSize, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public RunSqlParallelGzipOutputStream(final OutputStream outputStream, final int blockSize,
+                                          final int threads, final int compressionLevel) {
+        if (blockSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Block size and threads must be positive.");
+        }
+        this.outputStream = outputStream;
+        this.blockSize = blockSize;
+        this.compressionLevel = compressionLevel;
+        maximumPendingBlocks = 2 * threads;
+        executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "runsql-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One extra buffer for the block currently being filled.
+        freeBuffers = new ArrayBlockingQueue<>(maximumPendingBlocks + 1);
+        deflaters = new ArrayBlockingQueue<>(threads);
+        buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (position == blockSize) {
+            submitBlock();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (position == blockSize) {
+                submitBlock();
+            }
+            int count = Math.min(length - written, blockSize - position);
+            System.arraycopy(bytes, offset + written, buffer, position, count);
+            position += count;
+            written += count;
+        }
+    }
+
+    /**
+     * Writes every compressed block handed to the compressors so far and flushes the underlying
+     * stream. Bytes in the block currently being filled stay buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingBlocks.isEmpty()) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Compresses any remaining bytes, writes all blocks and stops the compression threads without
+     * closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            // An empty input still needs one member to be a valid gzip file.
+            if (position > 0 || !wroteMember) {
+                submitBlock();
+            }
+            flush();
+        } finally {
+            finished = true;
+            executorService.shutdownNow();
+            Deflater deflater;
+            while ((deflater = deflaters.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished.");
+        }
+        if (pendingBlocks.size() >= maximumPendingBlocks) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        final byte[] block = buffer;
+        final int length = position;
+        pendingBlocks.addLast(executorService.submit(() -> compressBlock(block, length)));
+        wroteMember = true;
+        byte[] nextBuffer = freeBuffers.poll();
+        buffer = nextBuffer != null ? nextBuffer : new byte[blockSize];
+        position = 0;
+    }
+
+    private void writeBlock(final Future<byte[]> future) throws IOException {
+        try {
+            outputStream.write(future.get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing output.");
+        } catch (final ExecutionException e) {
+            throw new IOException("Unable to compress output.", e.getCause());
+        }
+    }
+
+    private byte[] compressBlock(final byte[] block, final int length) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(compressionLevel, true);
+        }
+        try {
+            // Deflate never expands data by more than a few bytes per 16K stored block.
+            byte[] member = new byte[length + (length >> 12) + 64];
+            writeHeader(member);
+            int memberLength = 10;
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (memberLength == member.length - 8) {
+                    byte[] grown = new byte[member.length * 2];
+                    System.arraycopy(member, 0, grown, 0, memberLength);
+                    member = grown;
+                }
+                memberLength += deflater
+                        .deflate(member, memberLength, member.length - 8 - memberLength);
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(block, 0, length);
+            memberLength = writeInt(member, memberLength, (int) crc32.getValue());
+            memberLength = writeInt(member, memberLength, length);
+            byte[] result = new byte[memberLength];
+            System.arraycopy(member, 0, result, 0, memberLength);
+            return result;
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+            freeBuffers.offer(block);
+        }
+    }
+
+    private static void writeHeader(final byte[] member) {
+        member[0] = (byte) GZIP_MAGIC;
+        member[1] = (byte) (GZIP_MAGIC >> 8);
+        member[2] = Deflater.DEFLATED;
+        // Flags, modification time and extra flags are all zero.
+        for (int i = 3; i < 9; i++) {
+            member[i] = 0;
+        }
+        member[9] = (byte) OS_UNKNOWN;
+    }
+
+    private static int writeInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An output stream that keeps its data in memory until it grows past a threshold, then moves
+ * it to a temporary file. Used to hold a rendered result set until it can be written out.
+ * <p>
+ * This class is not thread safe.
+ */
+public class RunSqlSpillOutputStream extends OutputStream {
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private final long threshold;
+    private MemoryOutputStream memoryOutputStream = new MemoryOutputStream();
+    private File file;
+    private OutputStream fileOutputStream;
+    private long size;
+
+    public RunSqlSpillOutputStream(final long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (file == null && size + length > threshold) {
+            spill();
+        }
+        if (file == null) {
+            memoryOutputStream.write(bytes, offset, length);
+        } else {
+            fileOutputStream.write(bytes, offset, length);
+        }
+        size += length;
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return True if the data was moved to a temporary file.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Writes everything written to this stream to the sink.
+     */
+    public void writeTo(final RunSqlOutputSink outputSink) throws IOException {
+        if (file == null) {
+            memoryOutputStream.writeTo(outputSink);
+            return;
+        }
+        fileOutputStream.flush();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputSink.write(buffer, 0, count);
+            }
+        }
+    }
+
+    /**
+     * Releases the memory and deletes the temporary file, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        memoryOutputStream = new MemoryOutputStream();
+        if (file != null) {
+            fileOutputStream.close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile("runsql", ".spill");
+        fileOutputStream = new BufferedOutputStream(new FileOutputStream(file), COPY_BUFFER_SIZE);
+        memoryOutputStream.writeTo(fileOutputStream);
+        memoryOutputStream = new MemoryOutputStream();
+    }
+
+    /**
+     * Hands its internal buffer straight to the sink rather than copying it.
+     */
+    private static class MemoryOutputStream extends ByteArrayOutputStream {
+        private void writeTo(final RunSqlOutputSink outputSink) {
+            outputSink.write(buf, 0, count);
+        }
+    }
+}
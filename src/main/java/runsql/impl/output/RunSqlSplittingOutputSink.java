@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.function.IntFunction;
+
+/**
+ * An output sink that rolls its output over into numbered parts.
+ * <p>
+ * A new part starts once the current part holds the maximum number of rows or bytes, whichever
+ * comes first. Parts only ever roll between rows, so a part can run past the byte limit by up to
+ * one row. A finished part is flushed and closed as soon as it rolls, so whatever reads the parts
+ * can start on one while later parts are still being written. The next part is opened lazily when
+ * its first bytes are written, which avoids leaving an empty part behind after the last row.
+ * <p>
+ * The header of the current result set, as marked by {@link #startHeader()} and {@link
+ * #endHeader()}, is repeated at the start of every part.
+ */
+public class RunSqlSplittingOutputSink extends RunSqlOutputSink {
+    private final IntFunction<OutputStream> partOpener;
+    private final long maximumRows;
+    private final long maximumBytes;
+    private final ByteArrayOutputStream headerCapture = new ByteArrayOutputStream();
+    private OutputStream part;
+    private int partNumber;
+    private long rowsInPart;
+    private long bytesInPart;
+    private byte[] header = new byte[0];
+    private boolean capturingHeader;
+
+    /**
+     * @param partOpener   Opens the stream for the given part number, starting at 1.
+     * @param maximumRows  The number of rows per part, or 0 for no limit.
+     * @param maximumBytes The number of bytes per part, or 0 for no limit.
+     * @param bufferSize   The size of the write buffer.
+     * @param charset      The charset to encode characters with.
+     */
+    public RunSqlSplittingOutputSink(final IntFunction<OutputStream> partOpener,
+                                     final long maximumRows, final long maximumBytes,
+                                     final int bufferSize, final Charset charset) {
+        super(null, bufferSize, charset);
+        this.partOpener = partOpener;
+        this.maximumRows = maximumRows;
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Builds the path of a part by inserting the zero padded part number before the file's
+     * extensions, for example results.csv.gz becomes results.00001.csv.gz.
+     *
+     * @param path       The output file path.
+     * @param partNumber The part number.
+     * @return The path of the part.
+     */
+    public static String partFilePath(final String path, final int partNumber) {
+        int nameStart = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        int extensionStart = path.indexOf('.', nameStart + 1);
+        String number = String.format("%05d", partNumber);
+        if (extensionStart < 0) {
+            return path + "." + number;
+        }
+        return path.substring(0, extensionStart) + "." + number + path.substring(extensionStart);
+    }
+
+    public int getPartNumber() {
+        return partNumber;
+    }
+
+    @Override
+    public void endRow() {
+        if (capturingHeader) {
+            return;
+        }
+        rowsInPart++;
+        // A part that is not open yet will start with the header when it opens.
+        long bytes = bytesInPart + position + (part == null ? header.length : 0);
+        if (maximumRows > 0 && rowsInPart >= maximumRows
+            || maximumBytes > 0 && bytes >= maximumBytes) {
+            drain();
+            closePart();
+        }
+    }
+
+    @Override
+    public void startHeader() {
+        drain();
+        headerCapture.reset();
+        capturingHeader = true;
+    }
+
+    @Override
+    public void endHeader() {
+        drain();
+        capturingHeader = false;
+        header = headerCapture.toByteArray();
+    }
+
+    @Override
+    public void flush() {
+        drain();
+        if (part != null) {
+            try {
+                part.flush();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the last part. When nothing at all was written, an empty first part is created so
+     * there is always at least one part.
+     */
+    @Override
+    public void close() {
+        drain();
+        if (part == null && partNumber == 0) {
+            openPart();
+        }
+        closePart();
+    }
+
+    @Override
+    protected void writeToOutputStream(final byte[] bytes, final int offset, final int length) {
+        if (length == 0) {
+            return;
+        }
+        if (capturingHeader) {
+            headerCapture.write(bytes, offset, length);
+        }
+        try {
+            if (part == null) {
+                openPart();
+                // A header being captured right now belongs to a new result set and is already
+                // on its way into this part.
+                if (!capturingHeader && header.length > 0) {
+                    part.write(header);
+                    bytesInPart += header.length;
+                }
+            }
+            part.write(bytes, offset, length);
+            bytesInPart += length;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void openPart() {
+        part = partOpener.apply(++partNumber);
+    }
+
+    private void closePart() {
+        if (part != null) {
+            try {
+                part.close();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+            part = null;
+        }
+        // Rows written after this point may still sit in the buffer, so the counts restart here
+        // rather than when the next part opens.
+        rowsInPart = 0;
+        bytesInPart = 0;
+    }
+}
@@ -0,0 +1,695 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link runsql.Processor} that writes results in the Apache Arrow IPC streaming format.
+ * <p>
+ * Each column is mapped from its JDBC type to an Arrow type and filled into columnar record
+ * batches of a fixed number of rows. Every result set is written as a complete stream: a schema
+ * message, one record batch message per batch and an end of stream marker. Columns without a
+ * matching Arrow type are written as UTF-8 strings.
+ * <p>
+ * The schema is marked as the header and every record batch as a row of the output sink, so when
+ * splitting output each part is a readable stream of whole record batches.
+ */
+public class RunSqlArrowProcessor extends RunSqlProcessorTemplate {
+    public static final int DEFAULT_BATCH_SIZE = 65536;
+    private static final int METADATA_VERSION_V5 = 4;
+    private static final int HEADER_SCHEMA = 1;
+    private static final int HEADER_RECORD_BATCH = 3;
+    private static final int TYPE_INT = 2;
+    private static final int TYPE_FLOATING_POINT = 3;
+    private static final int TYPE_BINARY = 4;
+    private static final int TYPE_UTF8 = 5;
+    private static final int TYPE_BOOL = 6;
+    private static final int TYPE_DECIMAL = 7;
+    private static final int TYPE_DATE = 8;
+    private static final int TYPE_TIME = 9;
+    private static final int TYPE_TIMESTAMP = 10;
+    private static final int MAXIMUM_DECIMAL_PRECISION = 38;
+    private static final byte[] CONTINUATION = {-1, -1, -1, -1};
+    private static final byte[] PADDING = new byte[8];
+    protected final RunSqlOutputSink outputSink;
+    protected final int batchSize;
+    private ArrowColumn[] columns;
+    private int batchRows;
+
+    public RunSqlArrowProcessor(final Builder builder) {
+        outputSink = builder.outputSink;
+        batchSize = builder.batchSize;
+    }
+
+    private static int padding(final long length) {
+        return (int) ((8 - length % 8) % 8);
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        columns = new ArrowColumn[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = createColumn(i + 1, columnTypes[i]);
+            columns[i].reset(batchSize);
+        }
+        batchRows = 0;
+        outputSink.startHeader();
+        writeMessage(createSchema(), new ArrayList<>(), new ArrayList<>());
+        outputSink.endHeader();
+    }
+
+    @Override
+    protected void processColumn() throws SQLException {
+        columns[currentColumnNumber - 1].read(resultSet, currentColumnNumber, batchRows);
+    }
+
+    @Override
+    protected void processPostRow() {
+        batchRows++;
+        if (batchRows == batchSize) {
+            writeRecordBatch();
+            outputSink.endRow();
+        }
+    }
+
+    @Override
+    protected void processPostRows() throws SQLException {
+        if (batchRows > 0) {
+            writeRecordBatch();
+        }
+        // End of stream marker.
+        outputSink.write(CONTINUATION);
+        outputSink.write(PADDING, 0, 4);
+        outputSink.endRow();
+        outputSink.flush();
+        super.processPostRows();
+    }
+
+    /**
+     * Maps a JDBC column type to an Arrow column.
+     *
+     * @param column  The column number, starting at 1.
+     * @param sqlType The column's type from {@link java.sql.Types}.
+     * @return The column.
+     * @throws SQLException If reading the result set meta data fails.
+     */
+    protected ArrowColumn createColumn(final int column, final int sqlType) throws SQLException {
+        String name = resultSetMetaData.getColumnName(column);
+        switch (sqlType) {
+            case Types.TINYINT:
+                return new IntColumn(name, resultSetMetaData.isSigned(column) ? 8 : 16);
+            case Types.SMALLINT:
+                return new IntColumn(name, resultSetMetaData.isSigned(column) ? 16 : 32);
+            case Types.INTEGER:
+                return new IntColumn(name, resultSetMetaData.isSigned(column) ? 32 : 64);
+            case Types.BIGINT:
+                if (resultSetMetaData.isSigned(column)) {
+                    return new IntColumn(name, 64);
+                }
+                return new DecimalColumn(name, 20, 0);
+            case Types.REAL:
+                return new FloatingPointColumn(name, false);
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new FloatingPointColumn(name, true);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                int precision = resultSetMetaData.getPrecision(column);
+                int scale = resultSetMetaData.getScale(column);
+                if (precision > 0 && precision <= MAXIMUM_DECIMAL_PRECISION && scale >= 0
+                    && scale <= precision) {
+                    return new DecimalColumn(name, precision, scale);
+                }
+                return new VariableWidthColumn(name, TYPE_UTF8);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return new BooleanColumn(name);
+            case Types.DATE:
+                return new DateColumn(name);
+            case Types.TIME:
+                return new TimeColumn(name);
+            case Types.TIMESTAMP:
+                return new TimestampColumn(name, false);
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return new TimestampColumn(name, true);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return new VariableWidthColumn(name, TYPE_BINARY);
+            default:
+                return new VariableWidthColumn(name, TYPE_UTF8);
+        }
+    }
+
+    private byte[] createSchema() {
+        RunSqlFlatBufferBuilder builder = new RunSqlFlatBufferBuilder(1024);
+        int[] fields = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            ArrowColumn column = columns[i];
+            int name = builder.createString(column.name);
+            int type = column.createType(builder);
+            int children = builder.createOffsetVector(new int[0]);
+            builder.startTable(7);
+            builder.addOffset(0, name);
+            builder.addBoolean(1, true);
+            builder.addByte(2, column.typeId);
+            builder.addOffset(3, type);
+            builder.addOffset(5, children);
+            fields[i] = builder.endTable();
+        }
+        int fieldVector = builder.createOffsetVector(fields);
+        builder.startTable(4);
+        builder.addShort(0, 0);
+        builder.addOffset(1, fieldVector);
+        int schema = builder.endTable();
+        return finishMessage(builder, HEADER_SCHEMA, schema, 0);
+    }
+
+    private void writeRecordBatch() {
+        List<byte[]> buffers = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        long[] nodeLengths = new long[columnCount];
+        long[] nodeNullCounts = new long[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            nodeLengths[i] = batchRows;
+            nodeNullCounts[i] = columns[i].nullCount;
+            columns[i].addBuffers(batchRows, buffers, lengths);
+        }
+        long[] bufferOffsets = new long[buffers.size()];
+        long[] bufferLengths = new long[buffers.size()];
+        long bodyLength = 0;
+        for (int i = 0; i < buffers.size(); i++) {
+            bufferOffsets[i] = bodyLength;
+            bufferLengths[i] = lengths.get(i);
+            bodyLength += lengths.get(i) + padding(lengths.get(i));
+        }
+        RunSqlFlatBufferBuilder builder = new RunSqlFlatBufferBuilder(256 + 32 * buffers.size());
+        int nodes = builder.createLongPairVector(nodeLengths, nodeNullCounts);
+        int bufferVector = builder.createLongPairVector(bufferOffsets, bufferLengths);
+        builder.startTable(5);
+        builder.addLong(0, batchRows);
+        builder.addOffset(1, nodes);
+        builder.addOffset(2, bufferVector);
+        int recordBatch = builder.endTable();
+        writeMessage(finishMessage(builder, HEADER_RECORD_BATCH, recordBatch, bodyLength),
+                     buffers, lengths);
+        for (ArrowColumn column : columns) {
+            column.reset(batchSize);
+        }
+        batchRows = 0;
+    }
+
+    private static byte[] finishMessage(final RunSqlFlatBufferBuilder builder,
+                                        final int headerType, final int header,
+                                        final long bodyLength) {
+        builder.startTable(5);
+        builder.addShort(0, METADATA_VERSION_V5);
+        builder.addByte(1, headerType);
+        builder.addOffset(2, header);
+        builder.addLong(3, bodyLength);
+        return builder.finish(builder.endTable());
+    }
+
+    /**
+     * Writes an encapsulated message: the continuation marker, the metadata length, the metadata
+     * padded to eight bytes and then the body buffers, each padded to eight bytes.
+     */
+    private void writeMessage(final byte[] metadata, final List<byte[]> buffers,
+                              final List<Integer> lengths) {
+        int metadataLength = metadata.length + padding(metadata.length);
+        outputSink.write(CONTINUATION);
+        writeIntLittleEndian(metadataLength);
+        outputSink.write(metadata);
+        outputSink.write(PADDING, 0, metadataLength - metadata.length);
+        for (int i = 0; i < buffers.size(); i++) {
+            int length = lengths.get(i);
+            outputSink.write(buffers.get(i), 0, length);
+            outputSink.write(PADDING, 0, padding(length));
+        }
+    }
+
+    private void writeIntLittleEndian(final int value) {
+        outputSink.writeByte(value);
+        outputSink.writeByte(value >> 8);
+        outputSink.writeByte(value >> 16);
+        outputSink.writeByte(value >> 24);
+    }
+
+    private static void putIntLittleEndian(final byte[] bytes, final int offset,
+                                           final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static void putLongLittleEndian(final byte[] bytes, final int offset,
+                                            final long value) {
+        putIntLittleEndian(bytes, offset, (int) value);
+        putIntLittleEndian(bytes, offset + 4, (int) (value >> 32));
+    }
+
+    /**
+     * The values of one column for the current record batch, along with the column's Arrow type.
+     */
+    protected abstract static class ArrowColumn {
+        protected final String name;
+        protected final int typeId;
+        protected byte[] validity;
+        protected int nullCount;
+
+        protected ArrowColumn(final String name, final int typeId) {
+            this.name = name;
+            this.typeId = typeId;
+        }
+
+        /**
+         * Writes the column's type table and returns its offset.
+         */
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(0);
+            return builder.endTable();
+        }
+
+        protected void reset(final int capacity) {
+            int validityLength = (capacity + 7) / 8;
+            if (validity == null || validity.length != validityLength) {
+                validity = new byte[validityLength];
+            } else {
+                Arrays.fill(validity, (byte) 0);
+            }
+            nullCount = 0;
+        }
+
+        /**
+         * Reads the column's value for the given row of the batch, recording nulls in the
+         * validity bitmap.
+         */
+        protected void read(final ResultSet resultSet, final int column,
+                            final int row) throws SQLException {
+            if (readValue(resultSet, column, row)) {
+                validity[row >> 3] |= 1 << (row & 7);
+            } else {
+                nullCount++;
+            }
+        }
+
+        /**
+         * @return False when the value is null.
+         */
+        protected abstract boolean readValue(ResultSet resultSet, int column,
+                                             int row) throws SQLException;
+
+        protected void addBuffers(final int rows, final List<byte[]> buffers,
+                                  final List<Integer> lengths) {
+            buffers.add(validity);
+            lengths.add((rows + 7) / 8);
+        }
+    }
+
+    private abstract static class FixedWidthColumn extends ArrowColumn {
+        protected final int byteWidth;
+        protected byte[] values;
+
+        FixedWidthColumn(final String name, final int typeId, final int byteWidth) {
+            super(name, typeId);
+            this.byteWidth = byteWidth;
+        }
+
+        @Override
+        protected void reset(final int capacity) {
+            super.reset(capacity);
+            if (values == null || values.length != capacity * byteWidth) {
+                values = new byte[capacity * byteWidth];
+            } else {
+                Arrays.fill(values, (byte) 0);
+            }
+        }
+
+        @Override
+        protected void addBuffers(final int rows, final List<byte[]> buffers,
+                                  final List<Integer> lengths) {
+            super.addBuffers(rows, buffers, lengths);
+            buffers.add(values);
+            lengths.add(rows * byteWidth);
+        }
+    }
+
+    private static class IntColumn extends FixedWidthColumn {
+        private final int bitWidth;
+
+        IntColumn(final String name, final int bitWidth) {
+            super(name, TYPE_INT, bitWidth / 8);
+            this.bitWidth = bitWidth;
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(2);
+            builder.addInt(0, bitWidth);
+            builder.addBoolean(1, true);
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            long value = bitWidth == 64 ? resultSet.getLong(column) : resultSet.getInt(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            int offset = row * byteWidth;
+            for (int i = 0; i < byteWidth; i++) {
+                values[offset + i] = (byte) (value >> 8 * i);
+            }
+            return true;
+        }
+    }
+
+    private static class FloatingPointColumn extends FixedWidthColumn {
+        private final boolean isDouble;
+
+        FloatingPointColumn(final String name, final boolean isDouble) {
+            super(name, TYPE_FLOATING_POINT, isDouble ? 8 : 4);
+            this.isDouble = isDouble;
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(1);
+            // Precision SINGLE is 1, DOUBLE is 2.
+            builder.addShort(0, isDouble ? 2 : 1);
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            if (isDouble) {
+                double value = resultSet.getDouble(column);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                putLongLittleEndian(values, row * 8, Double.doubleToRawLongBits(value));
+            } else {
+                float value = resultSet.getFloat(column);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                putIntLittleEndian(values, row * 4, Float.floatToRawIntBits(value));
+            }
+            return true;
+        }
+    }
+
+    private static class DecimalColumn extends FixedWidthColumn {
+        private final int precision;
+        private final int scale;
+
+        DecimalColumn(final String name, final int precision, final int scale) {
+            super(name, TYPE_DECIMAL, 16);
+            this.precision = precision;
+            this.scale = scale;
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(3);
+            builder.addInt(0, precision);
+            builder.addInt(1, scale);
+            builder.addInt(2, 128);
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            BigDecimal value = resultSet.getBigDecimal(column);
+            if (value == null) {
+                return false;
+            }
+            BigInteger unscaled = value.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+            byte[] bigEndian = unscaled.toByteArray();
+            int offset = row * 16;
+            byte sign = (byte) (unscaled.signum() < 0 ? -1 : 0);
+            for (int i = 0; i < 16; i++) {
+                int index = bigEndian.length - 1 - i;
+                values[offset + i] = index >= 0 ? bigEndian[index] : sign;
+            }
+            return true;
+        }
+    }
+
+    private static class BooleanColumn extends ArrowColumn {
+        private byte[] values;
+
+        BooleanColumn(final String name) {
+            super(name, TYPE_BOOL);
+        }
+
+        @Override
+        protected void reset(final int capacity) {
+            super.reset(capacity);
+            if (values == null || values.length != validity.length) {
+                values = new byte[validity.length];
+            } else {
+                Arrays.fill(values, (byte) 0);
+            }
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            if (value) {
+                values[row >> 3] |= 1 << (row & 7);
+            }
+            return true;
+        }
+
+        @Override
+        protected void addBuffers(final int rows, final List<byte[]> buffers,
+                                  final List<Integer> lengths) {
+            super.addBuffers(rows, buffers, lengths);
+            buffers.add(values);
+            lengths.add((rows + 7) / 8);
+        }
+    }
+
+    /**
+     * Days since the epoch as a 32 bit integer.
+     */
+    private static class DateColumn extends FixedWidthColumn {
+        DateColumn(final String name) {
+            super(name, TYPE_DATE, 4);
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(1);
+            // DateUnit DAY.
+            builder.addShort(0, 0);
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            Date value = resultSet.getDate(column);
+            if (value == null) {
+                return false;
+            }
+            putIntLittleEndian(values, row * 4, (int) value.toLocalDate().toEpochDay());
+            return true;
+        }
+    }
+
+    /**
+     * Milliseconds since midnight as a 32 bit integer.
+     */
+    private static class TimeColumn extends FixedWidthColumn {
+        TimeColumn(final String name) {
+            super(name, TYPE_TIME, 4);
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            builder.startTable(2);
+            // TimeUnit MILLISECOND.
+            builder.addShort(0, 1);
+            builder.addInt(1, 32);
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            Time value = resultSet.getTime(column);
+            if (value == null) {
+                return false;
+            }
+            // Time.toLocalTime drops the milliseconds, so add them back from the raw value.
+            int millisecond = (int) Math.floorMod(value.getTime(), 1000L);
+            int millisecondOfDay = value.toLocalTime().toSecondOfDay() * 1000 + millisecond;
+            putIntLittleEndian(values, row * 4, millisecondOfDay);
+            return true;
+        }
+    }
+
+    /**
+     * Microseconds since the epoch as a 64 bit integer. Timestamps without a time zone keep
+     * their wall clock value, timestamps with one are stored in UTC.
+     */
+    private static class TimestampColumn extends FixedWidthColumn {
+        private final boolean withTimeZone;
+
+        TimestampColumn(final String name, final boolean withTimeZone) {
+            super(name, TYPE_TIMESTAMP, 8);
+            this.withTimeZone = withTimeZone;
+        }
+
+        @Override
+        protected int createType(final RunSqlFlatBufferBuilder builder) {
+            int timeZone = withTimeZone ? builder.createString("UTC") : 0;
+            builder.startTable(2);
+            // TimeUnit MICROSECOND.
+            builder.addShort(0, 2);
+            if (withTimeZone) {
+                builder.addOffset(1, timeZone);
+            }
+            return builder.endTable();
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            Timestamp value = resultSet.getTimestamp(column);
+            if (value == null) {
+                return false;
+            }
+            long seconds;
+            if (withTimeZone) {
+                seconds = Math.floorDiv(value.getTime(), 1000L);
+            } else {
+                LocalDateTime localDateTime = value.toLocalDateTime();
+                seconds = localDateTime.toEpochSecond(ZoneOffset.UTC);
+            }
+            putLongLittleEndian(values, row * 8, seconds * 1000000L + value.getNanos() / 1000);
+            return true;
+        }
+    }
+
+    /**
+     * UTF-8 strings or binary values, stored as 32 bit offsets into a single data buffer.
+     */
+    private static class VariableWidthColumn extends ArrowColumn {
+        private byte[] offsets;
+        private byte[] data = new byte[1024];
+        private int dataLength;
+
+        VariableWidthColumn(final String name, final int typeId) {
+            super(name, typeId);
+        }
+
+        @Override
+        protected void reset(final int capacity) {
+            super.reset(capacity);
+            if (offsets == null || offsets.length != (capacity + 1) * 4) {
+                offsets = new byte[(capacity + 1) * 4];
+            }
+            dataLength = 0;
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final int row) throws SQLException {
+            byte[] value;
+            if (typeId == TYPE_BINARY) {
+                value = resultSet.getBytes(column);
+            } else {
+                String string = resultSet.getString(column);
+                value = string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+            }
+            if (value != null) {
+                if (dataLength + value.length > data.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + value.length));
+                }
+                System.arraycopy(value, 0, data, dataLength, value.length);
+                dataLength += value.length;
+            }
+            putIntLittleEndian(offsets, (row + 1) * 4, dataLength);
+            return value != null;
+        }
+
+        @Override
+        protected void addBuffers(final int rows, final List<byte[]> buffers,
+                                  final List<Integer> lengths) {
+            super.addBuffers(rows, buffers, lengths);
+            buffers.add(offsets);
+            lengths.add((rows + 1) * 4);
+            buffers.add(data);
+            lengths.add(dataLength);
+        }
+    }
+
+    public static class Builder {
+        private RunSqlOutputSink outputSink;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+
+        public Builder outputSink(final RunSqlOutputSink outputSink) {
+            this.outputSink = outputSink;
+            return this;
+        }
+
+        /**
+         * The number of rows in each record batch.
+         */
+        public Builder batchSize(final int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public RunSqlArrowProcessor build() {
+            return new RunSqlArrowProcessor(this);
+        }
+    }
+}
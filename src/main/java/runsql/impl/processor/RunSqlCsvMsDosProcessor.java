@@ -20,7 +20,7 @@
 
 package runsql.impl.processor;
 
-import org.apache.commons.lang3.math.NumberUtils;
+import runsql.impl.output.RunSqlOutputSink;
 
 import java.sql.Types;
 
@@ -35,10 +35,55 @@ public class RunSqlCsvMsDosProcessor extends RunSqlPrintStreamProcessor {
         super(builder);
     }
 
+    protected RunSqlCsvMsDosProcessor(final RunSqlCsvMsDosProcessor processor,
+                                      final RunSqlOutputSink outputSink) {
+        super(processor, outputSink);
+    }
+
+    @Override
+    protected RunSqlPrintStreamProcessor createFormatter(final RunSqlOutputSink outputSink) {
+        return new RunSqlCsvMsDosProcessor(this, outputSink);
+    }
+
+    /**
+     * Decides whether a value is a plain decimal number, accepting exactly what {@link
+     * org.apache.commons.lang3.math.NumberUtils#isParsable(String)} accepts: an optional minus
+     * sign followed by digits with at most one decimal point that is not the last character.
+     * Scans the characters once without allocating and stops at the first one that rules the
+     * value out, which for most text is the first.
+     */
+    static boolean isParsableNumber(final String string) {
+        int length = string.length();
+        if (length == 0 || string.charAt(length - 1) == '.') {
+            return false;
+        }
+        int start = string.charAt(0) == '-' ? 1 : 0;
+        if (start == length) {
+            return false;
+        }
+        boolean decimalPoint = false;
+        for (int i = start; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+            if (c == '.' && !decimalPoint) {
+                decimalPoint = true;
+            } else if (c < 0x80 || !Character.isDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected void printString(final String string) {
-        if (isStringSqlType() && NumberUtils.isParsable(string)) {
-            print("=" + quoteString + string + quoteString);
+        if (isStringSqlType() && isParsableNumber(string)) {
+            // Numbers need neither escaping nor encoding, so write them as they are.
+            outputSink.writeByte('=');
+            print(quoteString);
+            outputSink.write(string);
+            print(quoteString);
         } else {
             super.printString(string);
         }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.DecimalNotation;
+
+import java.math.BigDecimal;
+
+/**
+ * Writes DECIMAL and NUMERIC values in a {@link DecimalNotation}. Values with at most 18
+ * digits have their digits written straight to the output sink; longer values go through
+ * {@link BigDecimal}'s string methods.
+ */
+final class RunSqlDecimalFormat {
+    static final String CHARACTERS = "0123456789-+.E";
+    private static final int MAXIMUM_COMPACT_PRECISION = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAXIMUM_COMPACT_PRECISION + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    private RunSqlDecimalFormat() {
+    }
+
+    static String format(final BigDecimal value, final DecimalNotation decimalNotation) {
+        switch (decimalNotation) {
+            case PLAIN:
+                return value.toPlainString();
+            case SCIENTIFIC:
+                String digits = value.unscaledValue().abs().toString();
+                StringBuilder builder = new StringBuilder(digits.length() + 8);
+                if (value.signum() < 0) {
+                    builder.append('-');
+                }
+                builder.append(digits.charAt(0));
+                if (digits.length() > 1) {
+                    builder.append('.').append(digits, 1, digits.length());
+                }
+                long exponent = (long) digits.length() - value.scale() - 1;
+                return builder.append('E').append(exponent < 0 ? '-' : '+')
+                              .append(Math.abs(exponent)).toString();
+            default:
+                return value.toString();
+        }
+    }
+
+    static void write(final RunSqlOutputSink outputSink, final BigDecimal value,
+                      final DecimalNotation decimalNotation) {
+        int precision = value.precision();
+        int scale = value.scale();
+        long exponent = (long) precision - scale - 1;
+        boolean plain = decimalNotation == DecimalNotation.PLAIN || decimalNotation
+                == DecimalNotation.DEFAULT && scale >= 0 && exponent >= -6;
+        if (precision > MAXIMUM_COMPACT_PRECISION || plain && (scale < -MAXIMUM_COMPACT_PRECISION
+                || scale > MAXIMUM_COMPACT_PRECISION) || !plain
+                && decimalNotation != DecimalNotation.SCIENTIFIC) {
+            outputSink.write(format(value, decimalNotation));
+            return;
+        }
+        // longValue is exact for a scale of zero and does not inflate a compact value.
+        long unscaled = scale == 0 ? value.longValue() : value.scaleByPowerOfTen(scale)
+                                                              .longValue();
+        if (unscaled < 0) {
+            outputSink.writeByte('-');
+            unscaled = -unscaled;
+        }
+        if (plain) {
+            if (scale <= 0) {
+                outputSink.write(unscaled);
+                // toPlainString writes a zero with a negative scale as a single 0.
+                for (int i = scale; i < 0 && unscaled != 0; i++) {
+                    outputSink.writeByte('0');
+                }
+            } else {
+                outputSink.write(unscaled / POWERS_OF_TEN[scale]);
+                outputSink.writeByte('.');
+                outputSink.writePadded(unscaled % POWERS_OF_TEN[scale], scale);
+            }
+            return;
+        }
+        long divisor = POWERS_OF_TEN[precision - 1];
+        outputSink.write(unscaled / divisor);
+        if (precision > 1) {
+            outputSink.writeByte('.');
+            outputSink.writePadded(unscaled % divisor, precision - 1);
+        }
+        outputSink.writeByte('E');
+        outputSink.writeByte(exponent < 0 ? '-' : '+');
+        outputSink.write(Math.abs(exponent));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal FlatBuffers builder, enough to write the metadata of Arrow IPC messages without a
+ * dependency on the FlatBuffers runtime.
+ * <p>
+ * Like the reference implementation, the buffer is filled from the back so that every object a
+ * table refers to is written before, and therefore after in the final buffer, the table itself.
+ * Default values are always written explicitly.
+ */
+class RunSqlFlatBufferBuilder {
+    private byte[] buffer;
+    private int space;
+    private int minimumAlignment = 1;
+    private int[] vtable;
+    private int objectStart;
+
+    RunSqlFlatBufferBuilder(final int initialSize) {
+        buffer = new byte[Math.max(initialSize, 16)];
+        space = buffer.length;
+    }
+
+    int offset() {
+        return buffer.length - space;
+    }
+
+    /**
+     * Pads the buffer so that, after additionalBytes more bytes are written, the next value of the
+     * given size is aligned to that size.
+     */
+    void prep(final int size, final int additionalBytes) {
+        minimumAlignment = Math.max(minimumAlignment, size);
+        int alignSize = (~(buffer.length - space + additionalBytes) + 1) & (size - 1);
+        while (space < alignSize + size + additionalBytes) {
+            grow();
+        }
+        for (int i = 0; i < alignSize; i++) {
+            buffer[--space] = 0;
+        }
+    }
+
+    void putByte(final int value) {
+        buffer[--space] = (byte) value;
+    }
+
+    void putShort(final int value) {
+        buffer[--space] = (byte) (value >> 8);
+        buffer[--space] = (byte) value;
+    }
+
+    void putInt(final int value) {
+        buffer[--space] = (byte) (value >> 24);
+        buffer[--space] = (byte) (value >> 16);
+        buffer[--space] = (byte) (value >> 8);
+        buffer[--space] = (byte) value;
+    }
+
+    void putLong(final long value) {
+        putInt((int) (value >> 32));
+        putInt((int) value);
+    }
+
+    int createString(final String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        prep(4, bytes.length + 1);
+        putByte(0);
+        space -= bytes.length;
+        System.arraycopy(bytes, 0, buffer, space, bytes.length);
+        putInt(bytes.length);
+        return offset();
+    }
+
+    /**
+     * Writes a vector of offsets to previously created objects.
+     */
+    int createOffsetVector(final int[] offsets) {
+        prep(4, 4 * offsets.length);
+        for (int i = offsets.length - 1; i >= 0; i--) {
+            prep(4, 0);
+            putInt(offset() - offsets[i] + 4);
+        }
+        putInt(offsets.length);
+        return offset();
+    }
+
+    /**
+     * Writes a vector of structs made of two longs each, such as Arrow's FieldNode and Buffer.
+     */
+    int createLongPairVector(final long[] firsts, final long[] seconds) {
+        int length = firsts.length;
+        prep(4, 16 * length);
+        prep(8, 16 * length);
+        for (int i = length - 1; i >= 0; i--) {
+            putLong(seconds[i]);
+            putLong(firsts[i]);
+        }
+        prep(4, 0);
+        putInt(length);
+        return offset();
+    }
+
+    void startTable(final int numberOfFields) {
+        vtable = new int[numberOfFields];
+        objectStart = offset();
+    }
+
+    void addByte(final int field, final int value) {
+        prep(1, 0);
+        putByte(value);
+        vtable[field] = offset();
+    }
+
+    void addBoolean(final int field, final boolean value) {
+        addByte(field, value ? 1 : 0);
+    }
+
+    void addShort(final int field, final int value) {
+        prep(2, 0);
+        putShort(value);
+        vtable[field] = offset();
+    }
+
+    void addInt(final int field, final int value) {
+        prep(4, 0);
+        putInt(value);
+        vtable[field] = offset();
+    }
+
+    void addLong(final int field, final long value) {
+        prep(8, 0);
+        putLong(value);
+        vtable[field] = offset();
+    }
+
+    void addOffset(final int field, final int value) {
+        prep(4, 0);
+        putInt(offset() - value + 4);
+        vtable[field] = offset();
+    }
+
+    int endTable() {
+        prep(4, 0);
+        putInt(0);
+        int tableOffset = offset();
+        for (int i = vtable.length - 1; i >= 0; i--) {
+            putShort(vtable[i] != 0 ? tableOffset - vtable[i] : 0);
+        }
+        putShort(tableOffset - objectStart);
+        putShort((vtable.length + 2) * 2);
+        int vtableOffset = offset();
+        int tablePosition = buffer.length - tableOffset;
+        int value = vtableOffset - tableOffset;
+        buffer[tablePosition] = (byte) value;
+        buffer[tablePosition + 1] = (byte) (value >> 8);
+        buffer[tablePosition + 2] = (byte) (value >> 16);
+        buffer[tablePosition + 3] = (byte) (value >> 24);
+        vtable = null;
+        return tableOffset;
+    }
+
+    /**
+     * Writes the root table offset and returns the finished buffer.
+     */
+    byte[] finish(final int rootTable) {
+        prep(minimumAlignment, 4);
+        prep(4, 0);
+        putInt(offset() - rootTable + 4);
+        return Arrays.copyOfRange(buffer, space, buffer.length);
+    }
+
+    private void grow() {
+        byte[] grown = new byte[buffer.length * 2];
+        int used = buffer.length - space;
+        System.arraycopy(buffer, space, grown, grown.length - used, used);
+        space = grown.length - used;
+        buffer = grown;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Formats the rows of a result set on a pool of threads for a {@link RunSqlPrintStreamProcessor}.
+ * <p>
+ * The calling thread reads the raw column values in chunks and hands each chunk to a pool of
+ * formatters, each of which renders its chunk into a byte array. The calling thread writes the
+ * rendered chunks to the processor's sink in the original row order. At most two chunks per
+ * thread are in flight at once, which bounds memory use.
+ */
+class RunSqlFormattingPipeline {
+    static final int CHUNK_SIZE = 1024;
+    private final RunSqlPrintStreamProcessor processor;
+    private final int numberOfThreads;
+    private final BlockingQueue<Formatter> formatters = new LinkedBlockingQueue<>();
+
+    RunSqlFormattingPipeline(final RunSqlPrintStreamProcessor processor,
+                             final int numberOfThreads) {
+        this.processor = processor;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    private static Chunk getChunk(final Future<Chunk> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    void run() throws SQLException {
+        for (int i = 0; i < numberOfThreads; i++) {
+            formatters.add(new Formatter());
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        try {
+            ResultSet resultSet = processor.resultSet;
+            List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            int rowNumber = processor.currentRowNumber;
+            int chunkRowNumber = rowNumber;
+            while (resultSet.next()) {
+                chunk.add(processor.readRow());
+                rowNumber++;
+                if (chunk.size() == CHUNK_SIZE) {
+                    pending.add(submit(executorService, chunk, chunkRowNumber));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    chunkRowNumber = rowNumber;
+                    writeChunks(pending, 2 * numberOfThreads);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(submit(executorService, chunk, chunkRowNumber));
+            }
+            writeChunks(pending, 0);
+            processor.currentRowNumber = rowNumber;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Future<Chunk> submit(final ExecutorService executorService,
+                                  final List<Object[]> chunk, final int firstRowNumber) {
+        return executorService.submit(() -> format(chunk, firstRowNumber));
+    }
+
+    /**
+     * Writes finished chunks in order. Blocks on the oldest chunk while more than the given
+     * number of chunks are pending. Rows are written one at a time so the sink still sees every
+     * row boundary.
+     */
+    private void writeChunks(final Deque<Future<Chunk>> pending,
+                             final int maximumPending) throws SQLException {
+        RunSqlOutputSink outputSink = processor.outputSink;
+        while (!pending.isEmpty() && (pending.size() > maximumPending || pending.peekFirst()
+                                                                                .isDone())) {
+            Chunk chunk = getChunk(pending.removeFirst());
+            int start = 0;
+            for (int rowEnd : chunk.rowEnds) {
+                outputSink.write(chunk.bytes, start, rowEnd - start);
+                outputSink.endRow();
+                start = rowEnd;
+            }
+            outputSink.write(chunk.bytes, start, chunk.bytes.length - start);
+        }
+    }
+
+    private Chunk format(final List<Object[]> chunk,
+                         final int firstRowNumber) throws SQLException, InterruptedException {
+        Formatter formatter = formatters.take();
+        try {
+            formatter.outputSink.rowEnds = new int[chunk.size()];
+            formatter.outputSink.rows = 0;
+            for (int i = 0; i < chunk.size(); i++) {
+                formatter.processor.formatRow(chunk.get(i), firstRowNumber + i);
+            }
+            formatter.outputSink.flush();
+            byte[] bytes = formatter.byteArrayOutputStream.toByteArray();
+            formatter.byteArrayOutputStream.reset();
+            return new Chunk(bytes, formatter.outputSink.rowEnds);
+        } finally {
+            formatters.add(formatter);
+        }
+    }
+
+    private static class Chunk {
+        private final byte[] bytes;
+        private final int[] rowEnds;
+
+        private Chunk(final byte[] bytes, final int[] rowEnds) {
+            this.bytes = bytes;
+            this.rowEnds = rowEnds;
+        }
+    }
+
+    /**
+     * Records where each row of a chunk ends so the rows can be replayed to the processor's sink.
+     */
+    private static class RowEndRecordingOutputSink extends RunSqlOutputSink {
+        private final ByteArrayOutputStream byteArrayOutputStream;
+        private int[] rowEnds;
+        private int rows;
+
+        private RowEndRecordingOutputSink(final ByteArrayOutputStream byteArrayOutputStream,
+                                          final Charset charset) {
+            super(byteArrayOutputStream, DEFAULT_BUFFER_SIZE, charset);
+            this.byteArrayOutputStream = byteArrayOutputStream;
+        }
+
+        @Override
+        public void endRow() {
+            rowEnds[rows++] = byteArrayOutputStream.size() + position;
+        }
+    }
+
+    private class Formatter {
+        private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        private final RowEndRecordingOutputSink outputSink;
+        private final RunSqlPrintStreamProcessor processor;
+
+        private Formatter() throws SQLException {
+            outputSink = new RowEndRecordingOutputSink(byteArrayOutputStream,
+                                                       RunSqlFormattingPipeline.this.processor
+                                                               .outputSink.getCharset());
+            processor = RunSqlFormattingPipeline.this.processor.createFormatter(outputSink);
+            RunSqlFormattingPipeline.this.processor.initFormatter(processor);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Limits the estimated bytes of the chunks in flight in one or more {@link RunSqlImportQueue}s.
+ * Sharing a limit between the queues of imports that run at the same time bounds the memory
+ * they use together.
+ * <p>
+ * Bytes that do not fit are still accepted when nothing else is in flight, so that a single
+ * chunk larger than the limit cannot wait forever.
+ */
+class RunSqlImportLimit {
+    private final long maximumBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private long bytesInFlight;
+    private long peakBytesInFlight;
+    private long stallNanos;
+
+    RunSqlImportLimit(final long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Adds bytes to those in flight, waiting while they do not fit.
+     *
+     * @param aborted Checked while waiting, see {@link #wakeUp}.
+     * @return False if aborted, in which case no bytes were added.
+     */
+    boolean acquire(final long bytes, final BooleanSupplier aborted)
+            throws InterruptedException {
+        lock.lock();
+        try {
+            if (!fits(bytes)) {
+                long start = System.nanoTime();
+                while (!aborted.getAsBoolean() && !fits(bytes)) {
+                    notFull.await();
+                }
+                stallNanos += System.nanoTime() - start;
+            }
+            if (aborted.getAsBoolean()) {
+                return false;
+            }
+            bytesInFlight += bytes;
+            peakBytesInFlight = Math.max(peakBytesInFlight, bytesInFlight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(final long bytes) {
+        lock.lock();
+        try {
+            bytesInFlight -= bytes;
+            // Queues may be waiting for different amounts.
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes waiting threads check whether they were aborted.
+     */
+    void wakeUp() {
+        lock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(final long bytes) {
+        return bytes == 0 || bytesInFlight == 0 || bytesInFlight + bytes <= maximumBytes;
+    }
+
+    long getStallNanos() {
+        lock.lock();
+        try {
+            return stallNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getPeakBytesInFlight() {
+        lock.lock();
+        try {
+            return peakBytesInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands chunks of rows from the thread reading the source to the import threads, limiting the
+ * estimated bytes of the chunks in flight with a {@link RunSqlImportLimit}. A chunk is in flight
+ * from {@link #put} until the import thread that took it calls {@link #release}. When the limit
+ * is reached, put blocks until the import threads catch up, so that a fast source cannot fill
+ * the heap. The limit may be shared with the queues of other imports.
+ * <p>
+ * End of input markers have no rows and never block.
+ * <p>
+ * Released chunks are cleared and kept for {@link #reuse}, so that the reading thread fills
+ * the same buffers over and over instead of allocating new ones.
+ * <p>
+ * The queue records how long put stalled and how long the import threads waited for chunks.
+ * Long stalls mean more import threads may help; long waits mean the source is the bottleneck.
+ */
+class RunSqlImportQueue {
+    private final RunSqlImportLimit limit;
+    private final Queue<RunSqlRowBuffer> chunks = new ArrayDeque<>();
+    private final Queue<RunSqlRowBuffer> freeChunks = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long idleNanos;
+    private long chunksPut;
+    private volatile boolean aborted;
+
+    RunSqlImportQueue(final long maximumBytes) {
+        this(new RunSqlImportLimit(maximumBytes));
+    }
+
+    RunSqlImportQueue(final RunSqlImportLimit limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Adds a chunk, waiting while it does not fit within the limit.
+     *
+     * @return False if the queue was aborted because an import thread failed. End of input
+     * markers are still added so that the remaining import threads stop.
+     */
+    boolean put(final RunSqlRowBuffer chunk) throws InterruptedException {
+        if (chunk.rows > 0 && !limit.acquire(chunk.bytes, () -> aborted)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (chunk.rows > 0) {
+                if (aborted) {
+                    limit.release(chunk.bytes);
+                    return false;
+                }
+                chunksPut++;
+            }
+            chunks.add(chunk);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    RunSqlRowBuffer take() throws InterruptedException {
+        lock.lock();
+        try {
+            if (chunks.isEmpty()) {
+                long start = System.nanoTime();
+                while (chunks.isEmpty()) {
+                    notEmpty.await();
+                }
+                idleNanos += System.nanoTime() - start;
+            }
+            return chunks.remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the flight of a chunk that an import thread has inserted, and keeps it for reuse.
+     */
+    void release(final RunSqlRowBuffer chunk) {
+        long bytes = chunk.bytes;
+        chunk.clear();
+        limit.release(bytes);
+        lock.lock();
+        try {
+            freeChunks.add(chunk);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return An empty chunk released by an import thread, or null if there is none.
+     */
+    RunSqlRowBuffer reuse() {
+        lock.lock();
+        try {
+            return freeChunks.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops put from waiting for import threads that are no longer running, and releases the
+     * chunks no import thread took yet so that a shared limit does not keep counting them.
+     */
+    void abort() {
+        aborted = true;
+        List<RunSqlRowBuffer> discarded = new ArrayList<>();
+        lock.lock();
+        try {
+            chunks.removeIf(chunk -> chunk.rows > 0 && discarded.add(chunk));
+        } finally {
+            lock.unlock();
+        }
+        discarded.forEach(this::release);
+        limit.wakeUp();
+    }
+
+    long getStallNanos() {
+        return limit.getStallNanos();
+    }
+
+    long getIdleNanos() {
+        lock.lock();
+        try {
+            return idleNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getPeakBytesInFlight() {
+        return limit.getPeakBytesInFlight();
+    }
+
+    long getChunksPut() {
+        lock.lock();
+        try {
+            return chunksPut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Formats the statistics for the importstatistics option. The bytes in flight and the
+     * stalls are those of the limit, which may be shared with other imports.
+     */
+    String getStatistics() {
+        return String.format("Import queued %d chunks and peaked at %d bytes in flight. Fetching "
+                                     + "stalled for %d ms waiting for the import threads, which "
+                                     + "waited for rows for %d ms in total.",
+                             getChunksPut(), getPeakBytesInFlight(),
+                             TimeUnit.NANOSECONDS.toMillis(getStallNanos()),
+                             TimeUnit.NANOSECONDS.toMillis(getIdleNanos()));
+    }
+}
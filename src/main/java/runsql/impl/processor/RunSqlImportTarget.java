@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import runsql.ConnectionPool;
+import runsql.impl.RunSqlConnectionPool;
+import runsql.impl.RunSqlConnectionProperties;
+import runsql.util.TransactionMode;
+
+import java.sql.SQLException;
+
+/**
+ * The target of imports that run at the same time, such as several source statements or key
+ * ranges read by separate jobs. Their processors share one connection pool to the target
+ * database and one limit on the bytes of rows read but not yet inserted, instead of each
+ * opening its own.
+ */
+public class RunSqlImportTarget implements AutoCloseable {
+    private final ConnectionPool connectionPool;
+    private final RunSqlImportLimit limit;
+
+    public RunSqlImportTarget(final String importDriver, final String importUrl,
+                              final String importUser, final String importPassword,
+                              final TransactionMode transactionMode,
+                              final long maximumQueueBytes, final int maximumConnections) {
+        RunSqlConnectionProperties.Builder builder = new RunSqlConnectionProperties.Builder();
+        builder.setUrl(importUrl);
+        builder.setUser(importUser);
+        builder.setPassword(importPassword);
+        builder.setDriver(importDriver);
+        builder.setTransactionMode(transactionMode);
+        connectionPool = new RunSqlConnectionPool(builder.build(), maximumConnections);
+        limit = new RunSqlImportLimit(maximumQueueBytes);
+    }
+
+    ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    RunSqlImportLimit getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void close() {
+        try {
+            connectionPool.close();
+        } catch (final SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
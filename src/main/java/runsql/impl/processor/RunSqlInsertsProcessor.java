@@ -20,44 +20,123 @@
 
 package runsql.impl.processor;
 
+import runsql.impl.output.RunSqlOutputSink;
+
 import java.sql.SQLException;
 
 /**
  * A {@link runsql.Processor} that generates insert statements based on the result set.
+ * <p>
+ * Each statement inserts up to rowsPerInsert rows with a multi-row values list. The rows of a
+ * statement are separated by a comma and the row separator, and a split output part always ends
+ * with a complete statement.
  */
 public class RunSqlInsertsProcessor extends RunSqlPrintStreamProcessor {
     protected final String tableName;
+    protected final int rowsPerInsert;
+    // The "insert into table (columns) values " prefix, built once per result set.
+    private String statementPrefix;
 
     public RunSqlInsertsProcessor(final Builder builder) {
         super(builder);
         tableName = builder.tableName;
+        rowsPerInsert = builder.rowsPerInsert;
+    }
+
+    protected RunSqlInsertsProcessor(final RunSqlInsertsProcessor processor,
+                                     final RunSqlOutputSink outputSink) {
+        super(processor, outputSink);
+        tableName = processor.tableName;
+        rowsPerInsert = processor.rowsPerInsert;
+    }
+
+    @Override
+    protected RunSqlPrintStreamProcessor createFormatter(final RunSqlOutputSink outputSink) {
+        return new RunSqlInsertsProcessor(this, outputSink);
+    }
+
+    @Override
+    void initFormatter(final RunSqlPrintStreamProcessor formatter) throws SQLException {
+        super.initFormatter(formatter);
+        ((RunSqlInsertsProcessor) formatter).statementPrefix = statementPrefix;
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        StringBuilder prefix = new StringBuilder("insert into ").append(tableName).append(" (");
+        for (int i = 1; i <= columnCount; i++) {
+            prefix.append(resultSetMetaData.getColumnName(i));
+            if (i < columnCount) {
+                prefix.append(columnSeparator);
+            }
+        }
+        statementPrefix = prefix.append(") values ").toString();
+        super.processPreRows();
     }
 
+    /**
+     * Prints the column names as a sql comment, since a row of names would run into the first
+     * statement.
+     */
     @Override
-    protected void processPreRow() throws SQLException {
-        printStream.print("insert into " + tableName + " (");
+    protected void printColumnNames() throws SQLException {
+        print("-- ");
         for (int i = 1; i <= columnCount; i++) {
-            currentColumnNumber = i;
-            printStream.print(resultSetMetaData.getColumnName(i));
-            printColumnSeparator();
+            print(resultSetMetaData.getColumnName(i));
+            if (i < columnCount) {
+                print(columnSeparator);
+            }
         }
-        printStream.print(") values (");
+        printRowSeparator();
+    }
+
+    @Override
+    protected void processPreRow() {
+        if (currentRowNumber % rowsPerInsert == 0) {
+            print(statementPrefix);
+        } else {
+            print(",");
+            print(rowSeparator);
+        }
+        print("(");
     }
 
     @Override
     protected void processPostRow() {
-        printStream.print(");");
-        printStream.print(rowSeparator);
+        print(")");
+        if ((currentRowNumber + 1) % rowsPerInsert == 0) {
+            print(";");
+            printRowSeparator();
+        }
+    }
+
+    @Override
+    protected void processPostRows() throws SQLException {
+        // Terminate the last statement when it has fewer than rowsPerInsert rows.
+        if (currentRowNumber % rowsPerInsert != 0) {
+            print(";");
+            printRowSeparator();
+        }
+        super.processPostRows();
     }
 
     public static class Builder extends RunSqlPrintStreamProcessor.Builder {
         private String tableName;
+        private int rowsPerInsert = 1;
 
         public Builder tableName(final String tableName) {
             this.tableName = tableName;
             return this;
         }
 
+        /**
+         * The maximum number of rows in each insert statement.
+         */
+        public Builder rowsPerInsert(final int rowsPerInsert) {
+            this.rowsPerInsert = rowsPerInsert;
+            return this;
+        }
+
         @Override
         public RunSqlInsertsProcessor build() {
             return new RunSqlInsertsProcessor(this);
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * A {@link runsql.Processor} that writes each row as a JSON object on its own line.
+ * <p>
+ * The column name keys are escaped and encoded once per result set. Numbers and booleans are
+ * written as JSON literals based on the column's sql type, SQL NULL as null, binary values as
+ * base64 strings and everything else as JSON strings. The null value, quote, escape and boolean
+ * text options do not apply.
+ */
+public class RunSqlJsonLinesProcessor extends RunSqlPrintStreamProcessor {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Each key includes the punctuation before it: {"a": for the first column, ,"b": for the rest.
+    private byte[][] keys;
+
+    public RunSqlJsonLinesProcessor(final Builder builder) {
+        super(builder);
+    }
+
+    protected RunSqlJsonLinesProcessor(final RunSqlJsonLinesProcessor processor,
+                                       final RunSqlOutputSink outputSink) {
+        super(processor, outputSink);
+    }
+
+    /**
+     * Writes the string as a quoted JSON string, escaping it in a single pass.
+     */
+    static void writeJsonString(final RunSqlOutputSink outputSink, final String string) {
+        outputSink.writeByte('"');
+        writeJsonCharacters(outputSink, string);
+        outputSink.writeByte('"');
+    }
+
+    /**
+     * Writes the escaped characters of a JSON string without the surrounding quotes.
+     */
+    static void writeJsonCharacters(final RunSqlOutputSink outputSink, final String string) {
+        int start = 0;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            outputSink.write(string, start, i);
+            start = i + 1;
+            outputSink.writeByte('\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    outputSink.writeByte(c);
+                    break;
+                case '\n':
+                    outputSink.writeByte('n');
+                    break;
+                case '\r':
+                    outputSink.writeByte('r');
+                    break;
+                case '\t':
+                    outputSink.writeByte('t');
+                    break;
+                case '\b':
+                    outputSink.writeByte('b');
+                    break;
+                case '\f':
+                    outputSink.writeByte('f');
+                    break;
+                default:
+                    outputSink.writeByte('u');
+                    outputSink.writeByte('0');
+                    outputSink.writeByte('0');
+                    outputSink.writeByte(HEX_DIGITS[c >> 4]);
+                    outputSink.writeByte(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        outputSink.write(string, start, length);
+    }
+
+    @Override
+    protected RunSqlPrintStreamProcessor createFormatter(final RunSqlOutputSink outputSink) {
+        return new RunSqlJsonLinesProcessor(this, outputSink);
+    }
+
+    @Override
+    void initFormatter(final RunSqlPrintStreamProcessor formatter) throws SQLException {
+        super.initFormatter(formatter);
+        ((RunSqlJsonLinesProcessor) formatter).keys = keys;
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        columnWriters = createColumnWriters();
+        keys = new byte[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            RunSqlOutputSink keySink =
+                    new RunSqlOutputSink(byteArrayOutputStream, 64, outputSink.getCharset());
+            keySink.writeByte(i == 0 ? '{' : ',');
+            writeJsonString(keySink, resultSetMetaData.getColumnName(i + 1));
+            keySink.writeByte(':');
+            keySink.flush();
+            keys[i] = byteArrayOutputStream.toByteArray();
+        }
+        // No header, but mark it so split parts do not repeat the previous result set's one.
+        outputSink.startHeader();
+        outputSink.endHeader();
+    }
+
+    @Override
+    protected void processPreRow() {
+        if (columnCount == 0) {
+            outputSink.writeByte('{');
+        } else {
+            outputSink.write(keys[0]);
+        }
+    }
+
+    /**
+     * Writes the key of the next column in place of a column separator.
+     */
+    @Override
+    protected void printColumnSeparator() {
+        if (currentColumnNumber < columnCount) {
+            outputSink.write(keys[currentColumnNumber]);
+        }
+    }
+
+    @Override
+    protected void processPostRow() {
+        outputSink.writeByte('}');
+        printRowSeparator();
+    }
+
+    @Override
+    protected void printNullValue() {
+        outputSink.write(NULL);
+    }
+
+    @Override
+    protected void printInteger(final long value) {
+        outputSink.write(value);
+    }
+
+    @Override
+    protected void printString(final String string) {
+        writeJsonString(outputSink, string);
+    }
+
+    @Override
+    protected boolean canPrintPlainValue(final String characters) {
+        return StringUtils.containsNone(characters, '"', '\\') && !hasControlCharacter(characters);
+    }
+
+    /**
+     * Dates are JSON strings; numbers are written bare.
+     */
+    @Override
+    protected void printPlainValueStart(final boolean text) {
+        if (text) {
+            outputSink.writeByte('"');
+        }
+    }
+
+    @Override
+    protected void printPlainValueEnd(final boolean text) {
+        if (text) {
+            outputSink.writeByte('"');
+        }
+    }
+
+    /**
+     * JSON escapes single characters, so each chunk is escaped on its own.
+     */
+    @Override
+    protected void printCharacterStream(final Reader reader) throws IOException {
+        outputSink.writeByte('"');
+        String chunk;
+        while ((chunk = readCharacterChunk(reader)) != null) {
+            writeJsonCharacters(outputSink, chunk);
+        }
+        outputSink.writeByte('"');
+    }
+
+    @Override
+    protected ColumnWriter createColumnWriter(final int column,
+                                              final int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.BIGINT:
+                // Unsigned big integers may overflow a long.
+                return resultSetMetaData.isSigned(column) ? new LongColumnWriter(column) :
+                        new NumberColumnWriter(column);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new NumberColumnWriter(column);
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumnWriter(column);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return new JsonBooleanColumnWriter(column);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return new Base64ColumnWriter(column);
+            default:
+                return super.createColumnWriter(column, sqlType);
+        }
+    }
+
+    /**
+     * Reads the value as a BigDecimal, which is a valid JSON number in every {@link
+     * runsql.util.DecimalNotation}.
+     */
+    protected class NumberColumnWriter extends ColumnWriter {
+        protected NumberColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            write(read());
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getBigDecimal(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                RunSqlDecimalFormat.write(outputSink, (BigDecimal) value, decimalNotation);
+            }
+        }
+    }
+
+    /**
+     * JSON has no NaN or infinity, so those are written as strings.
+     */
+    protected class DoubleColumnWriter extends ColumnWriter {
+        protected DoubleColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            double value = resultSet.getDouble(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                printDouble(value);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            double value = resultSet.getDouble(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printDouble((Double) value);
+            }
+        }
+
+        private void printDouble(final double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                printString(Double.toString(value));
+            } else {
+                outputSink.write(Double.toString(value));
+            }
+        }
+    }
+
+    protected class JsonBooleanColumnWriter extends ColumnWriter {
+        protected JsonBooleanColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                outputSink.write(value ? TRUE : FALSE);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                outputSink.write((Boolean) value ? TRUE : FALSE);
+            }
+        }
+    }
+
+    protected class Base64ColumnWriter extends BinaryColumnWriter {
+        protected Base64ColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected boolean isArray() {
+            return false;
+        }
+
+        @Override
+        protected void printBinary(final byte[] bytes, final int length) {
+            outputSink.writeBase64(bytes, 0, length);
+        }
+
+        @Override
+        protected void printBinaryStart() {
+            outputSink.writeByte('"');
+        }
+
+        @Override
+        protected void printBinaryEnd() {
+            outputSink.writeByte('"');
+        }
+    }
+
+    public static class Builder extends RunSqlPrintStreamProcessor.Builder {
+        @Override
+        public RunSqlJsonLinesProcessor build() {
+            return new RunSqlJsonLinesProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import runsql.SqlStatementExecutionHook;
+import runsql.util.SqlCode;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Inserts rows into the target database with a prepared statement holding several rows in its
+ * values list. Each full group of rows is added to the statement's batch. The rows left over at
+ * the end go into a statement sized to fit them, run with a fresh copy of the execution hook.
+ * <p>
+ * The number of rows per statement is capped so that the statement has no more parameters than
+ * the driver allows.
+ * <p>
+ * Values are moved with {@link RunSqlParameterBinder}s chosen from the source columns. A column
+ * is bound with its typed setter when the target parameter has the same kind of type, or when
+ * the driver does not describe its parameters. The current group of rows is kept in a columnar
+ * {@link RunSqlRowBuffer} that is cleared and reused for each group.
+ */
+class RunSqlMultiRowInsert {
+    private final Connection connection;
+    private final SqlStatementExecutionHook sqlStatementExecutionHook;
+    private final String insertTableName;
+    private final String[] insertColumnNames;
+    private final int numberOfColumnsToInsert;
+    private final int rowsPerInsert;
+    private final RunSqlParameterBinder[] binders;
+    private final int[] targetTypes;
+    private final boolean[] typed;
+    private final RunSqlRowBuffer values;
+    private final PreparedStatement preparedStatement;
+
+    RunSqlMultiRowInsert(final Connection connection,
+                         final SqlStatementExecutionHook sqlStatementExecutionHook,
+                         final String insertTableName, final String[] insertColumnNames,
+                         final int numberOfColumnsToInsert, final int rowsPerInsert,
+                         final int maximumParameters, final RunSqlParameterBinder[] binders,
+                         final int[] sourceTypes) throws SQLException {
+        this.connection = connection;
+        this.sqlStatementExecutionHook = sqlStatementExecutionHook;
+        this.insertTableName = insertTableName;
+        this.insertColumnNames = insertColumnNames;
+        this.numberOfColumnsToInsert = numberOfColumnsToInsert;
+        this.rowsPerInsert = getRowsPerInsert(rowsPerInsert, maximumParameters,
+                                              numberOfColumnsToInsert);
+        this.binders = binders;
+        values = new RunSqlRowBuffer(binders, this.rowsPerInsert, false);
+        preparedStatement = connection.prepareStatement(
+                SqlCode.createInsertSql(insertTableName, insertColumnNames,
+                                        numberOfColumnsToInsert, this.rowsPerInsert));
+        targetTypes = getTargetTypes(preparedStatement, sourceTypes, numberOfColumnsToInsert);
+        typed = new boolean[numberOfColumnsToInsert];
+        for (int i = 0; i < numberOfColumnsToInsert; i++) {
+            typed[i] = binders[i] != RunSqlParameterBinder.OBJECT
+                    && RunSqlParameterBinder.forType(targetTypes[i], true) == binders[i];
+        }
+    }
+
+    /**
+     * @return The sql types of the first row's parameters, or the source types when the driver
+     * cannot describe them.
+     */
+    private static int[] getTargetTypes(final PreparedStatement preparedStatement,
+                                        final int[] sourceTypes,
+                                        final int numberOfColumnsToInsert) {
+        int[] targetTypes = new int[numberOfColumnsToInsert];
+        try {
+            ParameterMetaData parameterMetaData = preparedStatement.getParameterMetaData();
+            for (int i = 0; i < numberOfColumnsToInsert; i++) {
+                targetTypes[i] = parameterMetaData.getParameterType(i + 1);
+            }
+        } catch (final SQLException e) {
+            System.arraycopy(sourceTypes, 0, targetTypes, 0, numberOfColumnsToInsert);
+        }
+        return targetTypes;
+    }
+
+    /**
+     * @return The requested rows per insert, lowered so that a statement has at most the
+     * maximum number of parameters, but never below one.
+     */
+    static int getRowsPerInsert(final int rowsPerInsert, final int maximumParameters,
+                                final int numberOfColumnsToInsert) {
+        return Math.max(1, Math.min(rowsPerInsert, maximumParameters / numberOfColumnsToInsert));
+    }
+
+    PreparedStatement getPreparedStatement() {
+        return preparedStatement;
+    }
+
+    /**
+     * Reads a column of the result set's current row into the current row.
+     *
+     * @param column The column number, starting at one.
+     */
+    void read(final ResultSet resultSet, final int column) throws SQLException {
+        binders[column - 1].read(resultSet, column, values, values.rows);
+    }
+
+    /**
+     * Inserts the rows of a chunk read by {@link #readRow} on another thread. Full groups are
+     * bound straight from the chunk; other rows are copied into the current group.
+     */
+    void insertChunk(final RunSqlRowBuffer chunk) throws SQLException {
+        int row = 0;
+        while (row < chunk.rows) {
+            if (values.rows == 0 && chunk.rows - row >= rowsPerInsert) {
+                addGroup(chunk, row);
+                row += rowsPerInsert;
+            } else {
+                chunk.copyRowTo(row++, values, values.rows);
+                endRow();
+            }
+        }
+    }
+
+    /**
+     * Reads the result set's current row into the next row of a chunk.
+     */
+    static void readRow(final ResultSet resultSet, final RunSqlParameterBinder[] binders,
+                        final RunSqlRowBuffer chunk) throws SQLException {
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].read(resultSet, i + 1, chunk, chunk.rows);
+        }
+        chunk.rows++;
+    }
+
+    /**
+     * Ends the current row, adding the group to the batch when it is full.
+     */
+    void endRow() throws SQLException {
+        values.rows++;
+        if (values.rows == rowsPerInsert) {
+            addGroup(values, 0);
+            values.clear();
+        }
+    }
+
+    private void addGroup(final RunSqlRowBuffer buffer, final int firstRow) throws SQLException {
+        sqlStatementExecutionHook.beforeStatement(connection, preparedStatement);
+        setParameters(preparedStatement, buffer, firstRow, rowsPerInsert);
+        preparedStatement.addBatch();
+        sqlStatementExecutionHook.afterStatement(connection, preparedStatement);
+    }
+
+    /**
+     * Inserts the remaining rows and lets the hook execute the last batch and end the
+     * transaction.
+     */
+    void finish() throws SQLException {
+        sqlStatementExecutionHook.afterAllStatements(connection, preparedStatement);
+        if (values.rows == 0) {
+            return;
+        }
+        // The hook has executed the full groups and ended their transaction, so a fresh copy
+        // executes the short group and commits or rolls it back on its own.
+        SqlStatementExecutionHook remainderHook = sqlStatementExecutionHook.createFreshCopy();
+        try (PreparedStatement remainderStatement = connection.prepareStatement(
+                SqlCode.createInsertSql(insertTableName, insertColumnNames,
+                                        numberOfColumnsToInsert, values.rows))) {
+            remainderHook.beforeStatement(connection, remainderStatement);
+            setParameters(remainderStatement, values, 0, values.rows);
+            remainderStatement.addBatch();
+            remainderHook.afterStatement(connection, remainderStatement);
+            remainderHook.afterAllStatements(connection, remainderStatement);
+        }
+        values.clear();
+    }
+
+    private void setParameters(final PreparedStatement statement, final RunSqlRowBuffer buffer,
+                               final int firstRow, final int rows) throws SQLException {
+        int parameterIndex = 1;
+        for (int row = firstRow; row < firstRow + rows; row++) {
+            for (int column = 0; column < numberOfColumnsToInsert; column++) {
+                if (typed[column]) {
+                    binders[column].bind(statement, parameterIndex++, buffer, row, column,
+                                         targetTypes[column]);
+                } else {
+                    binders[column].bindObject(statement, parameterIndex++, buffer, row, column);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Moves a column value from the source result set to an insert parameter with the typed getter
+ * and setter for the column's sql type, such as getLong and setLong, instead of getObject and
+ * setObject. Values are read into a {@link RunSqlRowBuffer} and bound from there, and nulls are
+ * bound with setNull and the parameter's sql type.
+ * <p>
+ * Each binder keeps its values in the buffer's primitive lanes where it can: booleans, integers,
+ * dates and times as longs, decimals that fit as an unscaled long and a scale, and strings and
+ * byte arrays in the buffer's slab. Only the OBJECT binder and oversized decimals hold on to the
+ * objects the driver returns.
+ * <p>
+ * When the target parameter has a different kind of type than the source column, the value is
+ * bound with {@link #bindObject} so that the driver converts it as before.
+ */
+enum RunSqlParameterBinder {
+    BOOLEAN(RunSqlParameterBinder.LONG_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            buffer.setLong(row, column - 1, resultSet.getBoolean(column) ? 1 : 0);
+            buffer.setNull(row, column - 1, resultSet.wasNull());
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setBoolean(parameterIndex, buffer.getLong(row, column) != 0);
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getLong(row, column) != 0;
+        }
+    },
+    LONG(RunSqlParameterBinder.LONG_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            buffer.setLong(row, column - 1, resultSet.getLong(column));
+            buffer.setNull(row, column - 1, resultSet.wasNull());
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setLong(parameterIndex, buffer.getLong(row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getLong(row, column);
+        }
+    },
+    DOUBLE(RunSqlParameterBinder.DOUBLE_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            buffer.setDouble(row, column - 1, resultSet.getDouble(column));
+            buffer.setNull(row, column - 1, resultSet.wasNull());
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setDouble(parameterIndex, buffer.getDouble(row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getDouble(row, column);
+        }
+    },
+    /**
+     * Keeps decimals whose unscaled value fits in a long as the long and the scale, and others
+     * in the object lane.
+     */
+    DECIMAL(RunSqlParameterBinder.LONG_LANE | RunSqlParameterBinder.INT_LANE
+                    | RunSqlParameterBinder.OBJECT_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            BigDecimal value = resultSet.getBigDecimal(column);
+            buffer.setNull(row, column - 1, value == null);
+            BigInteger unscaledValue = value == null ? null : value.unscaledValue();
+            if (value == null) {
+                buffer.setObject(row, column - 1, null);
+            } else if (unscaledValue.bitLength() < Long.SIZE) {
+                buffer.setLong(row, column - 1, unscaledValue.longValue());
+                buffer.setInt(row, column - 1, value.scale());
+                buffer.setObject(row, column - 1, null);
+            } else {
+                buffer.setObject(row, column - 1, value);
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setBigDecimal(parameterIndex,
+                                            (BigDecimal) toObject(buffer, row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            Object value = buffer.getObject(row, column);
+            return value != null
+                    ? value
+                    : BigDecimal.valueOf(buffer.getLong(row, column), buffer.getInt(row, column));
+        }
+    },
+    STRING(RunSqlParameterBinder.LONG_LANE | RunSqlParameterBinder.SLAB) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            String value = resultSet.getString(column);
+            buffer.setNull(row, column - 1, value == null);
+            if (value != null) {
+                buffer.putString(row, column - 1, value);
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setString(parameterIndex, buffer.getString(row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getString(row, column);
+        }
+    },
+    BYTES(RunSqlParameterBinder.LONG_LANE | RunSqlParameterBinder.SLAB) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            byte[] value = resultSet.getBytes(column);
+            buffer.setNull(row, column - 1, value == null);
+            if (value != null) {
+                buffer.putBytes(row, column - 1, value);
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setBytes(parameterIndex, buffer.getBytes(row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getBytes(row, column);
+        }
+    },
+    DATE(RunSqlParameterBinder.LONG_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            Date value = resultSet.getDate(column);
+            buffer.setNull(row, column - 1, value == null);
+            if (value != null) {
+                buffer.setLong(row, column - 1, value.getTime());
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setDate(parameterIndex, new Date(buffer.getLong(row, column)));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return new Date(buffer.getLong(row, column));
+        }
+    },
+    TIME(RunSqlParameterBinder.LONG_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            Time value = resultSet.getTime(column);
+            buffer.setNull(row, column - 1, value == null);
+            if (value != null) {
+                buffer.setLong(row, column - 1, value.getTime());
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setTime(parameterIndex, new Time(buffer.getLong(row, column)));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return new Time(buffer.getLong(row, column));
+        }
+    },
+    /**
+     * Keeps the milliseconds of a timestamp in the long lane and its nanoseconds in the int lane.
+     */
+    TIMESTAMP(RunSqlParameterBinder.LONG_LANE | RunSqlParameterBinder.INT_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            Timestamp value = resultSet.getTimestamp(column);
+            buffer.setNull(row, column - 1, value == null);
+            if (value != null) {
+                buffer.setLong(row, column - 1, value.getTime());
+                buffer.setInt(row, column - 1, value.getNanos());
+            }
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setTimestamp(parameterIndex,
+                                           (Timestamp) toObject(buffer, row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            Timestamp timestamp = new Timestamp(buffer.getLong(row, column));
+            timestamp.setNanos(buffer.getInt(row, column));
+            return timestamp;
+        }
+    },
+    OBJECT(RunSqlParameterBinder.OBJECT_LANE) {
+        @Override
+        void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                  final int row) throws SQLException {
+            Object value = resultSet.getObject(column);
+            buffer.setObject(row, column - 1, value);
+            buffer.setNull(row, column - 1, value == null);
+        }
+
+        @Override
+        void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                 final RunSqlRowBuffer buffer, final int row, final int column)
+                throws SQLException {
+            preparedStatement.setObject(parameterIndex, buffer.getObject(row, column));
+        }
+
+        @Override
+        Object toObject(final RunSqlRowBuffer buffer, final int row, final int column) {
+            return buffer.getObject(row, column);
+        }
+    };
+
+    static final int LONG_LANE = 1;
+    static final int INT_LANE = 2;
+    static final int DOUBLE_LANE = 4;
+    static final int OBJECT_LANE = 8;
+    // Variable length values in the slab, located by the long lane.
+    static final int SLAB = 16;
+    private final int lanes;
+
+    RunSqlParameterBinder(final int lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Chooses the binder for a column.
+     *
+     * @param sqlType The column's type from {@link java.sql.Types}.
+     * @param signed  False for unsigned columns, whose BIGINT values may not fit in a long.
+     * @return The binder.
+     */
+    static RunSqlParameterBinder forType(final int sqlType, final boolean signed) {
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.BIGINT:
+                return signed ? LONG : OBJECT;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return DECIMAL;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return STRING;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return BYTES;
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+                return TIME;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            default:
+                return OBJECT;
+        }
+    }
+
+    /**
+     * Creates the binders for the first columns of a result set.
+     */
+    static RunSqlParameterBinder[] forColumns(final ResultSetMetaData resultSetMetaData,
+                                              final int numberOfColumns) throws SQLException {
+        RunSqlParameterBinder[] binders = new RunSqlParameterBinder[numberOfColumns];
+        for (int i = 0; i < numberOfColumns; i++) {
+            binders[i] = forType(resultSetMetaData.getColumnType(i + 1),
+                                 resultSetMetaData.isSigned(i + 1));
+        }
+        return binders;
+    }
+
+    /**
+     * @return True if the binder keeps its values in the given lane of a {@link
+     * RunSqlRowBuffer}.
+     */
+    boolean usesLane(final int lane) {
+        return (lanes & lane) != 0;
+    }
+
+    /**
+     * Reads the column's value from the current row into the same column of a buffer row.
+     *
+     * @param column The column number, starting at one.
+     */
+    abstract void read(final ResultSet resultSet, final int column, final RunSqlRowBuffer buffer,
+                       final int row) throws SQLException;
+
+    /**
+     * Binds the non null value in a buffer cell with the typed setter.
+     *
+     * @param column The buffer column, starting at zero.
+     */
+    abstract void set(final PreparedStatement preparedStatement, final int parameterIndex,
+                      final RunSqlRowBuffer buffer, final int row, final int column)
+            throws SQLException;
+
+    /**
+     * @return The non null value in a buffer cell as an object.
+     */
+    abstract Object toObject(final RunSqlRowBuffer buffer, final int row, final int column);
+
+    /**
+     * Binds the value in a buffer cell with the typed setter, or with setNull and the
+     * parameter's sql type.
+     */
+    void bind(final PreparedStatement preparedStatement, final int parameterIndex,
+              final RunSqlRowBuffer buffer, final int row, final int column,
+              final int targetType) throws SQLException {
+        if (buffer.isNull(row, column)) {
+            preparedStatement.setNull(parameterIndex, targetType);
+        } else {
+            set(preparedStatement, parameterIndex, buffer, row, column);
+        }
+    }
+
+    /**
+     * Binds the value in a buffer cell with setObject, for parameters of a different kind of
+     * type.
+     */
+    void bindObject(final PreparedStatement preparedStatement, final int parameterIndex,
+                    final RunSqlRowBuffer buffer, final int row, final int column)
+            throws SQLException {
+        preparedStatement.setObject(parameterIndex, buffer.isNull(row, column)
+                ? null
+                : toObject(buffer, row, column));
+    }
+}
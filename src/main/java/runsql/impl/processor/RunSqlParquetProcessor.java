@@ -0,0 +1,1040 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link runsql.Processor} that writes results as Apache Parquet files.
+ * <p>
+ * Rows are buffered column by column until a row group holds the configured number of rows, then
+ * the row group is encoded, compressed with the configured {@link Codec} and written out, so memory
+ * use is bounded by the row group size rather than the size of the result set. Each column chunk
+ * is dictionary encoded when that is smaller than plain encoding and the dictionary stays under
+ * {@link #MAXIMUM_DICTIONARY_SIZE} bytes. All columns are optional; columns without a matching
+ * Parquet type are written as UTF-8 strings.
+ * <p>
+ * Every result set is written as a complete Parquet file. The file is marked as a single row of
+ * the output sink, so when splitting output with --splitrows 1 each result set gets its own file.
+ */
+public class RunSqlParquetProcessor extends RunSqlProcessorTemplate {
+    public static final int DEFAULT_ROW_GROUP_SIZE = 131072;
+    public static final int MAXIMUM_DICTIONARY_SIZE = 1048576;
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_INT32 = 1;
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_BYTE_ARRAY = 6;
+    private static final int TYPE_FIXED_LEN_BYTE_ARRAY = 7;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int CONVERTED_DECIMAL = 5;
+    private static final int CONVERTED_DATE = 6;
+    private static final int CONVERTED_TIME_MILLIS = 7;
+    private static final int CONVERTED_TIMESTAMP_MICROS = 10;
+    private static final int CONVERTED_INT_8 = 15;
+    private static final int CONVERTED_INT_16 = 16;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int ENCODING_RLE_DICTIONARY = 8;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int MAXIMUM_DECIMAL_PRECISION = 38;
+    protected final RunSqlOutputSink outputSink;
+    protected final int rowGroupSize;
+    protected final Codec codec;
+    private final RunSqlThriftCompactWriter thriftWriter = new RunSqlThriftCompactWriter();
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private ParquetColumn[] columns;
+    private int rowGroupRows;
+    private long fileOffset;
+    private long totalRows;
+
+    public RunSqlParquetProcessor(final Builder builder) {
+        outputSink = builder.outputSink;
+        rowGroupSize = builder.rowGroupSize;
+        codec = builder.codec;
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        columns = new ParquetColumn[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = createColumn(i + 1, columnTypes[i]);
+            columns[i].reset(rowGroupSize);
+        }
+        rowGroups.clear();
+        rowGroupRows = 0;
+        totalRows = 0;
+        fileOffset = 0;
+        // No header to repeat when splitting output.
+        outputSink.startHeader();
+        outputSink.endHeader();
+        write(MAGIC);
+    }
+
+    @Override
+    protected void processColumn() throws SQLException {
+        columns[currentColumnNumber - 1].read(resultSet, currentColumnNumber);
+    }
+
+    @Override
+    protected void processPostRow() {
+        rowGroupRows++;
+        if (rowGroupRows == rowGroupSize) {
+            writeRowGroup();
+        }
+    }
+
+    @Override
+    protected void processPostRows() throws SQLException {
+        if (rowGroupRows > 0) {
+            writeRowGroup();
+        }
+        byte[] fileMetaData = createFileMetaData();
+        write(fileMetaData);
+        write(new byte[]{(byte) fileMetaData.length, (byte) (fileMetaData.length >> 8),
+                         (byte) (fileMetaData.length >> 16), (byte) (fileMetaData.length >> 24)});
+        write(MAGIC);
+        outputSink.endRow();
+        outputSink.flush();
+        super.processPostRows();
+    }
+
+    /**
+     * Maps a JDBC column type to a Parquet column.
+     *
+     * @param column  The column number, starting at 1.
+     * @param sqlType The column's type from {@link java.sql.Types}.
+     * @return The column.
+     * @throws SQLException If reading the result set meta data fails.
+     */
+    protected ParquetColumn createColumn(final int column,
+                                         final int sqlType) throws SQLException {
+        String name = resultSetMetaData.getColumnName(column);
+        boolean signed = resultSetMetaData.isSigned(column);
+        switch (sqlType) {
+            case Types.TINYINT:
+                return new IntColumn(name, signed ? CONVERTED_INT_8 : CONVERTED_INT_16);
+            case Types.SMALLINT:
+                return signed ? new IntColumn(name, CONVERTED_INT_16) : new IntColumn(name, -1);
+            case Types.INTEGER:
+                return signed ? new IntColumn(name, -1) : new LongColumn(name);
+            case Types.BIGINT:
+                return signed ? new LongColumn(name) : new DecimalColumn(name, 20, 0);
+            case Types.REAL:
+                return new FloatColumn(name);
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumn(name);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                int precision = resultSetMetaData.getPrecision(column);
+                int scale = resultSetMetaData.getScale(column);
+                if (precision > 0 && precision <= MAXIMUM_DECIMAL_PRECISION && scale >= 0
+                    && scale <= precision) {
+                    return new DecimalColumn(name, precision, scale);
+                }
+                return new StringColumn(name);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return new BooleanColumn(name);
+            case Types.DATE:
+                return new DateColumn(name);
+            case Types.TIME:
+                return new TimeColumn(name);
+            case Types.TIMESTAMP:
+                return new TimestampColumn(name, false);
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return new TimestampColumn(name, true);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return new BinaryColumn(name);
+            default:
+                return new StringColumn(name);
+        }
+    }
+
+    private void write(final byte[] bytes) {
+        write(bytes, bytes.length);
+    }
+
+    private void write(final byte[] bytes, final int length) {
+        outputSink.write(bytes, 0, length);
+        fileOffset += length;
+    }
+
+    private void writeRowGroup() {
+        RowGroup rowGroup = new RowGroup();
+        rowGroup.rows = rowGroupRows;
+        rowGroup.fileOffset = fileOffset;
+        for (ParquetColumn column : columns) {
+            rowGroup.columnChunks.add(writeColumnChunk(column));
+            column.reset(rowGroupSize);
+        }
+        rowGroups.add(rowGroup);
+        totalRows += rowGroupRows;
+        rowGroupRows = 0;
+    }
+
+    private ColumnChunk writeColumnChunk(final ParquetColumn column) {
+        ColumnChunk columnChunk = new ColumnChunk();
+        ByteArray page = new ByteArray(1024 + column.values.length);
+        // Definition levels, prefixed with their length as data page v1 requires.
+        page.writeIntLittleEndian(0);
+        writeHybrid(column.definitionLevels, column.rows, 1, page);
+        int definitionLevelsLength = page.length - 4;
+        page.bytes[0] = (byte) definitionLevelsLength;
+        page.bytes[1] = (byte) (definitionLevelsLength >> 8);
+        page.bytes[2] = (byte) (definitionLevelsLength >> 16);
+        page.bytes[3] = (byte) (definitionLevelsLength >> 24);
+        int encoding = ENCODING_PLAIN;
+        if (column.useDictionary()) {
+            encoding = ENCODING_RLE_DICTIONARY;
+            columnChunk.dictionaryPageOffset = fileOffset;
+            ByteArray dictionary = column.dictionaryValues;
+            byte[] compressed = codec.compress(dictionary.bytes, dictionary.length);
+            thriftWriter.reset();
+            thriftWriter.structBegin();
+            thriftWriter.fieldI32(1, PAGE_DICTIONARY);
+            thriftWriter.fieldI32(2, dictionary.length);
+            thriftWriter.fieldI32(3, compressed.length);
+            thriftWriter.fieldStructBegin(7);
+            thriftWriter.fieldI32(1, column.dictionary.size());
+            thriftWriter.fieldI32(2, ENCODING_PLAIN);
+            thriftWriter.structEnd();
+            thriftWriter.structEnd();
+            byte[] header = thriftWriter.toByteArray();
+            write(header);
+            write(compressed);
+            columnChunk.uncompressedSize += header.length + dictionary.length;
+            columnChunk.compressedSize += header.length + compressed.length;
+            int bitWidth = Math.max(1, 32 - Integer.numberOfLeadingZeros(
+                    column.dictionary.size() - 1));
+            page.writeByte(bitWidth);
+            writeHybrid(column.indices, column.valueCount, bitWidth, page);
+        } else {
+            column.writePlainValues(page);
+        }
+        columnChunk.dataPageOffset = fileOffset;
+        byte[] compressed = codec.compress(page.bytes, page.length);
+        thriftWriter.reset();
+        thriftWriter.structBegin();
+        thriftWriter.fieldI32(1, PAGE_DATA);
+        thriftWriter.fieldI32(2, page.length);
+        thriftWriter.fieldI32(3, compressed.length);
+        thriftWriter.fieldStructBegin(5);
+        thriftWriter.fieldI32(1, column.rows);
+        thriftWriter.fieldI32(2, encoding);
+        thriftWriter.fieldI32(3, ENCODING_RLE);
+        thriftWriter.fieldI32(4, ENCODING_RLE);
+        thriftWriter.structEnd();
+        thriftWriter.structEnd();
+        byte[] header = thriftWriter.toByteArray();
+        write(header);
+        write(compressed);
+        columnChunk.uncompressedSize += header.length + page.length;
+        columnChunk.compressedSize += header.length + compressed.length;
+        columnChunk.encoding = encoding;
+        columnChunk.rows = column.rows;
+        return columnChunk;
+    }
+
+    private byte[] createFileMetaData() {
+        RunSqlThriftCompactWriter writer = new RunSqlThriftCompactWriter();
+        writer.structBegin();
+        writer.fieldI32(1, 1);
+        writer.fieldListBegin(2, RunSqlThriftCompactWriter.TYPE_STRUCT, columnCount + 1);
+        writer.structBegin();
+        writer.fieldString(4, "schema");
+        writer.fieldI32(5, columnCount);
+        writer.structEnd();
+        for (ParquetColumn column : columns) {
+            writer.structBegin();
+            writer.fieldI32(1, column.physicalType);
+            if (column.typeLength > 0) {
+                writer.fieldI32(2, column.typeLength);
+            }
+            writer.fieldI32(3, REPETITION_OPTIONAL);
+            writer.fieldString(4, column.name);
+            column.writeAnnotations(writer);
+            writer.structEnd();
+        }
+        writer.fieldI64(3, totalRows);
+        writer.fieldListBegin(4, RunSqlThriftCompactWriter.TYPE_STRUCT, rowGroups.size());
+        for (RowGroup rowGroup : rowGroups) {
+            long uncompressedSize = 0;
+            long compressedSize = 0;
+            writer.structBegin();
+            writer.fieldListBegin(1, RunSqlThriftCompactWriter.TYPE_STRUCT, columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                ColumnChunk columnChunk = rowGroup.columnChunks.get(i);
+                long chunkOffset = columnChunk.dictionaryPageOffset >= 0 ?
+                        columnChunk.dictionaryPageOffset : columnChunk.dataPageOffset;
+                writer.structBegin();
+                writer.fieldI64(2, chunkOffset);
+                writer.fieldStructBegin(3);
+                writer.fieldI32(1, columns[i].physicalType);
+                if (columnChunk.encoding == ENCODING_RLE_DICTIONARY) {
+                    writer.fieldListBegin(2, RunSqlThriftCompactWriter.TYPE_I32, 3);
+                    writer.writeI32(ENCODING_PLAIN);
+                    writer.writeI32(ENCODING_RLE);
+                    writer.writeI32(ENCODING_RLE_DICTIONARY);
+                } else {
+                    writer.fieldListBegin(2, RunSqlThriftCompactWriter.TYPE_I32, 2);
+                    writer.writeI32(ENCODING_PLAIN);
+                    writer.writeI32(ENCODING_RLE);
+                }
+                writer.fieldListBegin(3, RunSqlThriftCompactWriter.TYPE_BINARY, 1);
+                writer.writeString(columns[i].name);
+                writer.fieldI32(4, codec.getId());
+                writer.fieldI64(5, columnChunk.rows);
+                writer.fieldI64(6, columnChunk.uncompressedSize);
+                writer.fieldI64(7, columnChunk.compressedSize);
+                writer.fieldI64(9, columnChunk.dataPageOffset);
+                if (columnChunk.dictionaryPageOffset >= 0) {
+                    writer.fieldI64(11, columnChunk.dictionaryPageOffset);
+                }
+                writer.structEnd();
+                writer.structEnd();
+                uncompressedSize += columnChunk.uncompressedSize;
+                compressedSize += columnChunk.compressedSize;
+            }
+            writer.fieldI64(2, uncompressedSize);
+            writer.fieldI64(3, rowGroup.rows);
+            writer.fieldI64(5, rowGroup.fileOffset);
+            writer.fieldI64(6, compressedSize);
+            writer.structEnd();
+        }
+        writer.fieldString(6, "runsql");
+        writer.structEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writes values with the RLE/bit-packing hybrid encoding. Runs of at least eight equal values
+     * become RLE runs, everything else is bit-packed in groups of eight.
+     */
+    static void writeHybrid(final int[] values, final int count, final int bitWidth,
+                            final ByteArray output) {
+        int i = 0;
+        while (i < count) {
+            int run = runLength(values, i, count);
+            if (run >= 8) {
+                output.writeUnsignedVarint(run << 1);
+                int value = values[i];
+                for (int b = 0; b < (bitWidth + 7) / 8; b++) {
+                    output.writeByte(value >>> 8 * b);
+                }
+                i += run;
+                continue;
+            }
+            int start = i;
+            int groups = 0;
+            while (i < count) {
+                i = Math.min(i + 8, count);
+                groups++;
+                if (i < count && runLength(values, i, count) >= 8) {
+                    break;
+                }
+            }
+            output.writeUnsignedVarint(groups << 1 | 1);
+            long bits = 0;
+            int bitCount = 0;
+            for (int j = start; j < start + groups * 8; j++) {
+                long value = j < count ? values[j] & 0xffffffffL : 0;
+                bits |= value << bitCount;
+                bitCount += bitWidth;
+                while (bitCount >= 8) {
+                    output.writeByte((int) bits);
+                    bits >>>= 8;
+                    bitCount -= 8;
+                }
+            }
+        }
+    }
+
+    private static int runLength(final int[] values, final int start, final int count) {
+        int end = start + 1;
+        while (end < count && values[end] == values[start]) {
+            end++;
+        }
+        return end - start;
+    }
+
+    /**
+     * Compresses Parquet pages.
+     */
+    public interface Codec {
+        /**
+         * No compression.
+         */
+        Codec UNCOMPRESSED = new Codec() {
+            @Override
+            public int getId() {
+                return 0;
+            }
+
+            @Override
+            public byte[] compress(final byte[] bytes, final int length) {
+                return Arrays.copyOf(bytes, length);
+            }
+        };
+
+        /**
+         * Gzip compression using the JDK's deflater.
+         */
+        Codec GZIP = new Codec() {
+            @Override
+            public int getId() {
+                return 2;
+            }
+
+            @Override
+            public byte[] compress(final byte[] bytes, final int length) {
+                ByteArrayOutputStream byteArrayOutputStream =
+                        new ByteArrayOutputStream(length / 4 + 64);
+                try (GZIPOutputStream gzipOutputStream =
+                             new GZIPOutputStream(byteArrayOutputStream, 65536)) {
+                    gzipOutputStream.write(bytes, 0, length);
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return byteArrayOutputStream.toByteArray();
+            }
+        };
+
+        /**
+         * @return The codec's id in the Parquet CompressionCodec enum.
+         */
+        int getId();
+
+        byte[] compress(byte[] bytes, int length);
+    }
+
+    /**
+     * A growable byte array.
+     */
+    static class ByteArray {
+        byte[] bytes;
+        int length;
+
+        ByteArray(final int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void ensureCapacity(final int additional) {
+            if (length + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+            }
+        }
+
+        void writeByte(final int value) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void write(final byte[] source, final int offset, final int count) {
+            ensureCapacity(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        void writeIntLittleEndian(final int value) {
+            ensureCapacity(4);
+            bytes[length++] = (byte) value;
+            bytes[length++] = (byte) (value >> 8);
+            bytes[length++] = (byte) (value >> 16);
+            bytes[length++] = (byte) (value >> 24);
+        }
+
+        void writeLongLittleEndian(final long value) {
+            writeIntLittleEndian((int) value);
+            writeIntLittleEndian((int) (value >> 32));
+        }
+
+        void writeUnsignedVarint(final int value) {
+            int remaining = value;
+            while ((remaining & ~0x7f) != 0) {
+                writeByte(remaining & 0x7f | 0x80);
+                remaining >>>= 7;
+            }
+            writeByte(remaining);
+        }
+    }
+
+    /**
+     * A plain encoded value used as a dictionary key.
+     */
+    private static final class DictionaryKey {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        DictionaryKey(final byte[] bytes, final int offset, final int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof DictionaryKey)) {
+                return false;
+            }
+            DictionaryKey other = (DictionaryKey) object;
+            return hash == other.hash && Arrays
+                    .equals(bytes, offset, offset + length, other.bytes, other.offset,
+                            other.offset + other.length);
+        }
+    }
+
+    /**
+     * The buffered values of one column for the current row group, along with the column's
+     * Parquet type.
+     */
+    protected abstract static class ParquetColumn {
+        protected final String name;
+        protected final int physicalType;
+        protected final int typeLength;
+        protected final ByteArray value = new ByteArray(64);
+        protected ByteArray values = new ByteArray(1024);
+        protected int[] definitionLevels;
+        protected int rows;
+        protected int valueCount;
+        protected Map<DictionaryKey, Integer> dictionary;
+        protected ByteArray dictionaryValues;
+        protected int[] indices;
+
+        protected ParquetColumn(final String name, final int physicalType, final int typeLength) {
+            this.name = name;
+            this.physicalType = physicalType;
+            this.typeLength = typeLength;
+        }
+
+        protected void reset(final int capacity) {
+            if (definitionLevels == null || definitionLevels.length != capacity) {
+                definitionLevels = new int[capacity];
+            }
+            values.length = 0;
+            rows = 0;
+            valueCount = 0;
+            if (supportsDictionary()) {
+                dictionary = new HashMap<>();
+                dictionaryValues = new ByteArray(1024);
+                if (indices == null || indices.length != capacity) {
+                    indices = new int[capacity];
+                }
+            }
+        }
+
+        protected boolean supportsDictionary() {
+            return true;
+        }
+
+        /**
+         * Reads the column's value for the next row.
+         */
+        protected void read(final ResultSet resultSet, final int column) throws SQLException {
+            value.length = 0;
+            if (!readValue(resultSet, column, value)) {
+                definitionLevels[rows++] = 0;
+                return;
+            }
+            definitionLevels[rows++] = 1;
+            values.write(value.bytes, 0, value.length);
+            if (dictionary != null) {
+                Integer index = dictionary.get(new DictionaryKey(value.bytes, 0, value.length));
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(new DictionaryKey(Arrays.copyOf(value.bytes, value.length), 0,
+                                                     value.length), index);
+                    dictionaryValues.write(value.bytes, 0, value.length);
+                    if (dictionaryValues.length > MAXIMUM_DICTIONARY_SIZE) {
+                        dictionary = null;
+                        dictionaryValues = null;
+                    }
+                }
+                indices[valueCount] = index;
+            }
+            valueCount++;
+        }
+
+        /**
+         * Writes the value in plain encoding.
+         *
+         * @return False when the value is null.
+         */
+        protected abstract boolean readValue(ResultSet resultSet, int column,
+                                             ByteArray value) throws SQLException;
+
+        /**
+         * Whether dictionary encoding the current row group is likely smaller than plain
+         * encoding.
+         */
+        protected boolean useDictionary() {
+            if (dictionary == null || dictionary.isEmpty()) {
+                return false;
+            }
+            int bitWidth = 32 - Integer.numberOfLeadingZeros(dictionary.size());
+            long dictionaryEncodedSize =
+                    dictionaryValues.length + ((long) valueCount * bitWidth + 7) / 8;
+            return dictionaryEncodedSize < values.length;
+        }
+
+        protected void writePlainValues(final ByteArray page) {
+            page.write(values.bytes, 0, values.length);
+        }
+
+        /**
+         * Writes the converted type and logical type fields of the column's schema element.
+         */
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+        }
+    }
+
+    private static class IntColumn extends ParquetColumn {
+        private final int convertedType;
+
+        IntColumn(final String name, final int convertedType) {
+            super(name, TYPE_INT32, 0);
+            this.convertedType = convertedType;
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            int intValue = resultSet.getInt(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            value.writeIntLittleEndian(intValue);
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            if (convertedType >= 0) {
+                writer.fieldI32(6, convertedType);
+                writer.fieldStructBegin(10);
+                writer.fieldStructBegin(10);
+                writer.fieldByte(1, convertedType == CONVERTED_INT_8 ? 8 : 16);
+                writer.fieldBoolean(2, true);
+                writer.structEnd();
+                writer.structEnd();
+            }
+        }
+    }
+
+    private static class LongColumn extends ParquetColumn {
+        LongColumn(final String name) {
+            super(name, TYPE_INT64, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            long longValue = resultSet.getLong(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            value.writeLongLittleEndian(longValue);
+            return true;
+        }
+    }
+
+    private static class FloatColumn extends ParquetColumn {
+        FloatColumn(final String name) {
+            super(name, TYPE_FLOAT, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            float floatValue = resultSet.getFloat(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            value.writeIntLittleEndian(Float.floatToRawIntBits(floatValue));
+            return true;
+        }
+    }
+
+    private static class DoubleColumn extends ParquetColumn {
+        DoubleColumn(final String name) {
+            super(name, TYPE_DOUBLE, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            double doubleValue = resultSet.getDouble(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            value.writeLongLittleEndian(Double.doubleToRawLongBits(doubleValue));
+            return true;
+        }
+    }
+
+    /**
+     * Decimals are stored as INT32 up to precision 9, INT64 up to 18 and otherwise as big endian
+     * two's complement in the fewest bytes that hold the precision.
+     */
+    private static class DecimalColumn extends ParquetColumn {
+        private final int precision;
+        private final int scale;
+
+        DecimalColumn(final String name, final int precision, final int scale) {
+            super(name, physicalType(precision), typeLength(precision));
+            this.precision = precision;
+            this.scale = scale;
+        }
+
+        private static int physicalType(final int precision) {
+            if (precision <= 9) {
+                return TYPE_INT32;
+            }
+            return precision <= 18 ? TYPE_INT64 : TYPE_FIXED_LEN_BYTE_ARRAY;
+        }
+
+        private static int typeLength(final int precision) {
+            if (precision <= 18) {
+                return 0;
+            }
+            BigInteger limit = BigInteger.TEN.pow(precision);
+            int length = 1;
+            while (BigInteger.ONE.shiftLeft(8 * length - 1).compareTo(limit) < 0) {
+                length++;
+            }
+            return length;
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            BigDecimal decimal = resultSet.getBigDecimal(column);
+            if (decimal == null) {
+                return false;
+            }
+            BigInteger unscaled = decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+            if (physicalType == TYPE_INT32) {
+                value.writeIntLittleEndian(unscaled.intValue());
+            } else if (physicalType == TYPE_INT64) {
+                value.writeLongLittleEndian(unscaled.longValue());
+            } else {
+                byte[] bigEndian = unscaled.toByteArray();
+                byte sign = (byte) (unscaled.signum() < 0 ? -1 : 0);
+                for (int i = typeLength - bigEndian.length; i > 0; i--) {
+                    value.writeByte(sign);
+                }
+                int start = Math.max(0, bigEndian.length - typeLength);
+                value.write(bigEndian, start, bigEndian.length - start);
+            }
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            writer.fieldI32(6, CONVERTED_DECIMAL);
+            writer.fieldI32(7, scale);
+            writer.fieldI32(8, precision);
+            writer.fieldStructBegin(10);
+            writer.fieldStructBegin(5);
+            writer.fieldI32(1, scale);
+            writer.fieldI32(2, precision);
+            writer.structEnd();
+            writer.structEnd();
+        }
+    }
+
+    private static class BooleanColumn extends ParquetColumn {
+        BooleanColumn(final String name) {
+            super(name, TYPE_BOOLEAN, 0);
+        }
+
+        @Override
+        protected boolean supportsDictionary() {
+            return false;
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            boolean booleanValue = resultSet.getBoolean(column);
+            if (resultSet.wasNull()) {
+                return false;
+            }
+            value.writeByte(booleanValue ? 1 : 0);
+            return true;
+        }
+
+        /**
+         * Plain encoded booleans are bit-packed, least significant bit first.
+         */
+        @Override
+        protected void writePlainValues(final ByteArray page) {
+            int packed = 0;
+            for (int i = 0; i < values.length; i++) {
+                packed |= values.bytes[i] << (i & 7);
+                if ((i & 7) == 7) {
+                    page.writeByte(packed);
+                    packed = 0;
+                }
+            }
+            if ((values.length & 7) != 0) {
+                page.writeByte(packed);
+            }
+        }
+    }
+
+    /**
+     * Days since the epoch.
+     */
+    private static class DateColumn extends ParquetColumn {
+        DateColumn(final String name) {
+            super(name, TYPE_INT32, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            Date date = resultSet.getDate(column);
+            if (date == null) {
+                return false;
+            }
+            value.writeIntLittleEndian((int) date.toLocalDate().toEpochDay());
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            writer.fieldI32(6, CONVERTED_DATE);
+            writer.fieldStructBegin(10);
+            writer.fieldStructBegin(6);
+            writer.structEnd();
+            writer.structEnd();
+        }
+    }
+
+    /**
+     * Milliseconds since midnight.
+     */
+    private static class TimeColumn extends ParquetColumn {
+        TimeColumn(final String name) {
+            super(name, TYPE_INT32, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            Time time = resultSet.getTime(column);
+            if (time == null) {
+                return false;
+            }
+            // Time.toLocalTime drops the milliseconds, so add them back from the raw value.
+            int millisecond = (int) Math.floorMod(time.getTime(), 1000L);
+            value.writeIntLittleEndian(time.toLocalTime().toSecondOfDay() * 1000 + millisecond);
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            writer.fieldI32(6, CONVERTED_TIME_MILLIS);
+            writer.fieldStructBegin(10);
+            writer.fieldStructBegin(7);
+            writer.fieldBoolean(1, false);
+            writer.fieldStructBegin(2);
+            writer.fieldStructBegin(1);
+            writer.structEnd();
+            writer.structEnd();
+            writer.structEnd();
+            writer.structEnd();
+        }
+    }
+
+    /**
+     * Microseconds since the epoch. Timestamps without a time zone keep their wall clock value,
+     * timestamps with one are stored in UTC.
+     */
+    private static class TimestampColumn extends ParquetColumn {
+        private final boolean withTimeZone;
+
+        TimestampColumn(final String name, final boolean withTimeZone) {
+            super(name, TYPE_INT64, 0);
+            this.withTimeZone = withTimeZone;
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            Timestamp timestamp = resultSet.getTimestamp(column);
+            if (timestamp == null) {
+                return false;
+            }
+            long seconds = withTimeZone ? Math.floorDiv(timestamp.getTime(), 1000L) :
+                    timestamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+            value.writeLongLittleEndian(seconds * 1000000L + timestamp.getNanos() / 1000);
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            // The converted type implies UTC, so only write it for UTC values.
+            if (withTimeZone) {
+                writer.fieldI32(6, CONVERTED_TIMESTAMP_MICROS);
+            }
+            writer.fieldStructBegin(10);
+            writer.fieldStructBegin(8);
+            writer.fieldBoolean(1, withTimeZone);
+            writer.fieldStructBegin(2);
+            writer.fieldStructBegin(2);
+            writer.structEnd();
+            writer.structEnd();
+            writer.structEnd();
+            writer.structEnd();
+        }
+    }
+
+    private static class BinaryColumn extends ParquetColumn {
+        BinaryColumn(final String name) {
+            super(name, TYPE_BYTE_ARRAY, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            byte[] bytes = resultSet.getBytes(column);
+            if (bytes == null) {
+                return false;
+            }
+            value.writeIntLittleEndian(bytes.length);
+            value.write(bytes, 0, bytes.length);
+            return true;
+        }
+    }
+
+    private static class StringColumn extends ParquetColumn {
+        StringColumn(final String name) {
+            super(name, TYPE_BYTE_ARRAY, 0);
+        }
+
+        @Override
+        protected boolean readValue(final ResultSet resultSet, final int column,
+                                    final ByteArray value) throws SQLException {
+            String string = resultSet.getString(column);
+            if (string == null) {
+                return false;
+            }
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            value.writeIntLittleEndian(bytes.length);
+            value.write(bytes, 0, bytes.length);
+            return true;
+        }
+
+        @Override
+        protected void writeAnnotations(final RunSqlThriftCompactWriter writer) {
+            writer.fieldI32(6, CONVERTED_UTF8);
+            writer.fieldStructBegin(10);
+            writer.fieldStructBegin(1);
+            writer.structEnd();
+            writer.structEnd();
+        }
+    }
+
+    private static class RowGroup {
+        private final List<ColumnChunk> columnChunks = new ArrayList<>();
+        private long rows;
+        private long fileOffset;
+    }
+
+    private static class ColumnChunk {
+        private long dictionaryPageOffset = -1;
+        private long dataPageOffset;
+        private long uncompressedSize;
+        private long compressedSize;
+        private int encoding;
+        private long rows;
+    }
+
+    public static class Builder {
+        private RunSqlOutputSink outputSink;
+        private int rowGroupSize = DEFAULT_ROW_GROUP_SIZE;
+        private Codec codec = Codec.GZIP;
+
+        public Builder outputSink(final RunSqlOutputSink outputSink) {
+            this.outputSink = outputSink;
+            return this;
+        }
+
+        /**
+         * The number of rows buffered in memory for each row group.
+         */
+        public Builder rowGroupSize(final int rowGroupSize) {
+            this.rowGroupSize = rowGroupSize;
+            return this;
+        }
+
+        public Builder codec(final Codec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public RunSqlParquetProcessor build() {
+            return new RunSqlParquetProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+
+/**
+ * A {@link runsql.Processor} that writes the PostgreSQL COPY binary format, loadable with COPY
+ * table FROM file WITH (FORMAT binary).
+ * <p>
+ * Values are read with the getter matching each column's sql type and written in PostgreSQL's
+ * binary representation, so no text formatting or escaping takes place. COPY binary does not
+ * convert types, so the target table's column types must match: smallint for tinyint and
+ * smallint columns, integer, bigint, real, double precision, numeric, boolean, date, time,
+ * timestamp, timestamptz and bytea. Every other type is written as text.
+ * <p>
+ * Each result set is a complete COPY stream. When splitting output the signature is repeated at
+ * the start of each part and only the last part ends with the trailer, which COPY treats the
+ * same as the end of the file.
+ */
+public class RunSqlPgCopyBinaryProcessor extends RunSqlProcessorTemplate {
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff,
+                                             '\r', '\n', 0};
+    // Days and seconds between 1970-01-01 and PostgreSQL's epoch of 2000-01-01.
+    private static final long POSTGRES_EPOCH_DAYS = 10957;
+    private static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_DAYS * 86400;
+    private static final int NUMERIC_POSITIVE = 0x0000;
+    private static final int NUMERIC_NEGATIVE = 0x4000;
+    protected final RunSqlOutputSink outputSink;
+    private final boolean utf8;
+    private FieldWriter[] fieldWriters;
+
+    public RunSqlPgCopyBinaryProcessor(final Builder builder) {
+        outputSink = builder.outputSink;
+        utf8 = StandardCharsets.UTF_8.equals(outputSink.getCharset());
+    }
+
+    /**
+     * The number of bytes {@link RunSqlOutputSink} writes for the string in UTF-8, including
+     * its replacement of unpaired surrogates with a question mark.
+     */
+    static int utf8Length(final String string) {
+        int length = string.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character
+                    .isLowSurrogate(string.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        fieldWriters = new FieldWriter[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            fieldWriters[i] = createFieldWriter(i + 1, columnTypes[i]);
+        }
+        outputSink.startHeader();
+        outputSink.write(SIGNATURE);
+        // Flags and header extension length.
+        writeInt(0);
+        writeInt(0);
+        outputSink.endHeader();
+    }
+
+    @Override
+    protected void processPreRow() {
+        writeShort(columnCount);
+    }
+
+    @Override
+    protected void processColumn() throws SQLException {
+        fieldWriters[currentColumnNumber - 1].write(resultSet, currentColumnNumber);
+    }
+
+    @Override
+    protected void processPostRow() {
+        outputSink.endRow();
+    }
+
+    @Override
+    protected void processPostRows() throws SQLException {
+        writeShort(-1);
+        outputSink.flush();
+        super.processPostRows();
+    }
+
+    protected FieldWriter createFieldWriter(final int column,
+                                            final int sqlType) throws SQLException {
+        boolean signed = resultSetMetaData.isSigned(column);
+        switch (sqlType) {
+            case Types.TINYINT:
+                return this::writeInt2;
+            case Types.SMALLINT:
+                return signed ? this::writeInt2 : this::writeInt4;
+            case Types.INTEGER:
+                return signed ? this::writeInt4 : this::writeInt8;
+            case Types.BIGINT:
+                return signed ? this::writeInt8 : this::writeNumeric;
+            case Types.REAL:
+                return this::writeFloat4;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return this::writeFloat8;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return this::writeNumeric;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return this::writeBool;
+            case Types.DATE:
+                return this::writeDate;
+            case Types.TIME:
+                return this::writeTime;
+            case Types.TIMESTAMP:
+                return this::writeTimestamp;
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return this::writeTimestampWithTimeZone;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return this::writeBytea;
+            default:
+                return this::writeText;
+        }
+    }
+
+    private void writeShort(final int value) {
+        outputSink.writeByte(value >> 8);
+        outputSink.writeByte(value);
+    }
+
+    private void writeInt(final int value) {
+        outputSink.writeByte(value >> 24);
+        outputSink.writeByte(value >> 16);
+        outputSink.writeByte(value >> 8);
+        outputSink.writeByte(value);
+    }
+
+    private void writeLong(final long value) {
+        writeInt((int) (value >> 32));
+        writeInt((int) value);
+    }
+
+    private void writeNull() {
+        writeInt(-1);
+    }
+
+    private void writeInt2(final ResultSet resultSet, final int column) throws SQLException {
+        short value = resultSet.getShort(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(2);
+            writeShort(value);
+        }
+    }
+
+    private void writeInt4(final ResultSet resultSet, final int column) throws SQLException {
+        int value = resultSet.getInt(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(4);
+            writeInt(value);
+        }
+    }
+
+    private void writeInt8(final ResultSet resultSet, final int column) throws SQLException {
+        long value = resultSet.getLong(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(8);
+            writeLong(value);
+        }
+    }
+
+    private void writeFloat4(final ResultSet resultSet, final int column) throws SQLException {
+        float value = resultSet.getFloat(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(4);
+            writeInt(Float.floatToIntBits(value));
+        }
+    }
+
+    private void writeFloat8(final ResultSet resultSet, final int column) throws SQLException {
+        double value = resultSet.getDouble(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(8);
+            writeLong(Double.doubleToLongBits(value));
+        }
+    }
+
+    private void writeBool(final ResultSet resultSet, final int column) throws SQLException {
+        boolean value = resultSet.getBoolean(column);
+        if (resultSet.wasNull()) {
+            writeNull();
+        } else {
+            writeInt(1);
+            outputSink.writeByte(value ? 1 : 0);
+        }
+    }
+
+    /**
+     * Writes a numeric as its sign, scale and base 10000 digits, with the weight giving the
+     * power of 10000 of the first digit.
+     */
+    private void writeNumeric(final ResultSet resultSet, final int column) throws SQLException {
+        BigDecimal value = resultSet.getBigDecimal(column);
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        int scale = Math.max(value.scale(), 0);
+        String plain = value.abs().setScale(scale).toPlainString();
+        int point = plain.indexOf('.');
+        String integerPart = point < 0 ? plain : plain.substring(0, point);
+        String fractionPart = point < 0 ? "" : plain.substring(point + 1);
+        int integerGroups = (integerPart.length() + 3) / 4;
+        int fractionGroups = (fractionPart.length() + 3) / 4;
+        int[] digits = new int[integerGroups + fractionGroups];
+        // Pad the integer part on the left and the fraction part on the right to whole groups.
+        int offset = integerGroups * 4 - integerPart.length();
+        for (int i = 0; i < integerPart.length(); i++) {
+            int group = (i + offset) / 4;
+            digits[group] = digits[group] * 10 + integerPart.charAt(i) - '0';
+        }
+        for (int i = 0; i < fractionGroups * 4; i++) {
+            int group = integerGroups + i / 4;
+            int digit = i < fractionPart.length() ? fractionPart.charAt(i) - '0' : 0;
+            digits[group] = digits[group] * 10 + digit;
+        }
+        int first = 0;
+        while (first < digits.length && digits[first] == 0) {
+            first++;
+        }
+        int last = digits.length;
+        while (last > first && digits[last - 1] == 0) {
+            last--;
+        }
+        int weight = first == last ? 0 : integerGroups - 1 - first;
+        writeInt(8 + 2 * (last - first));
+        writeShort(last - first);
+        writeShort(weight);
+        writeShort(value.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+        writeShort(scale);
+        for (int i = first; i < last; i++) {
+            writeShort(digits[i]);
+        }
+    }
+
+    private void writeDate(final ResultSet resultSet, final int column) throws SQLException {
+        Date date = resultSet.getDate(column);
+        if (date == null) {
+            writeNull();
+        } else {
+            writeInt(4);
+            writeInt((int) (date.toLocalDate().toEpochDay() - POSTGRES_EPOCH_DAYS));
+        }
+    }
+
+    private void writeTime(final ResultSet resultSet, final int column) throws SQLException {
+        Time time = resultSet.getTime(column);
+        if (time == null) {
+            writeNull();
+        } else {
+            // Time.toLocalTime drops the milliseconds, so add them back from the raw value.
+            long millisecond = Math.floorMod(time.getTime(), 1000L);
+            writeInt(8);
+            writeLong(time.toLocalTime().toSecondOfDay() * 1000000L + millisecond * 1000);
+        }
+    }
+
+    private void writeTimestamp(final ResultSet resultSet, final int column) throws SQLException {
+        Timestamp timestamp = resultSet.getTimestamp(column);
+        if (timestamp == null) {
+            writeNull();
+        } else {
+            long seconds = timestamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+            writeInt(8);
+            writeLong((seconds - POSTGRES_EPOCH_SECONDS) * 1000000L + timestamp.getNanos() / 1000);
+        }
+    }
+
+    private void writeTimestampWithTimeZone(final ResultSet resultSet,
+                                            final int column) throws SQLException {
+        Timestamp timestamp = resultSet.getTimestamp(column);
+        if (timestamp == null) {
+            writeNull();
+        } else {
+            long seconds = Math.floorDiv(timestamp.getTime(), 1000L);
+            writeInt(8);
+            writeLong((seconds - POSTGRES_EPOCH_SECONDS) * 1000000L + timestamp.getNanos() / 1000);
+        }
+    }
+
+    private void writeBytea(final ResultSet resultSet, final int column) throws SQLException {
+        byte[] value = resultSet.getBytes(column);
+        if (value == null) {
+            writeNull();
+        } else {
+            writeInt(value.length);
+            outputSink.write(value);
+        }
+    }
+
+    /**
+     * Text is always UTF-8. With a UTF-8 output sink the string is encoded straight into the
+     * sink's buffer after measuring its length.
+     */
+    private void writeText(final ResultSet resultSet, final int column) throws SQLException {
+        String value = resultSet.getString(column);
+        if (value == null) {
+            writeNull();
+        } else if (utf8) {
+            writeInt(utf8Length(value));
+            outputSink.write(value);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            outputSink.write(bytes);
+        }
+    }
+
+    /**
+     * Writes one field of the current row: its length followed by its binary value, or a length
+     * of -1 for null.
+     */
+    @FunctionalInterface
+    protected interface FieldWriter {
+        void write(ResultSet resultSet, int column) throws SQLException;
+    }
+
+    public static class Builder {
+        private RunSqlOutputSink outputSink;
+
+        public Builder outputSink(final RunSqlOutputSink outputSink) {
+            this.outputSink = outputSink;
+            return this;
+        }
+
+        public RunSqlPgCopyBinaryProcessor build() {
+            return new RunSqlPgCopyBinaryProcessor(this);
+        }
+    }
+}
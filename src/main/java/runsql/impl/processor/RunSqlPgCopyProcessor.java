@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * A {@link runsql.Processor} that writes the PostgreSQL COPY text format, which COPY FROM loads
+ * much faster than replaying insert statements.
+ * <p>
+ * Values are separated by the column separator, a tab by default, and null values are written
+ * as the null value, \N by default. Backslashes, control characters and the column separator are
+ * backslash escaped in a single pass. Booleans are written as t and f and binary values as bytea
+ * hex strings.
+ */
+public class RunSqlPgCopyProcessor extends RunSqlPrintStreamProcessor {
+    // Only single character delimiters can appear unescaped in a value.
+    private final char delimiter;
+
+    public RunSqlPgCopyProcessor(final Builder builder) {
+        super(builder);
+        delimiter = columnSeparator != null && columnSeparator.length() == 1 ?
+                columnSeparator.charAt(0) : '\t';
+    }
+
+    protected RunSqlPgCopyProcessor(final RunSqlPgCopyProcessor processor,
+                                    final RunSqlOutputSink outputSink) {
+        super(processor, outputSink);
+        delimiter = processor.delimiter;
+    }
+
+    @Override
+    protected RunSqlPrintStreamProcessor createFormatter(final RunSqlOutputSink outputSink) {
+        return new RunSqlPgCopyProcessor(this, outputSink);
+    }
+
+    @Override
+    protected void processPreRows() throws SQLException {
+        columnWriters = createColumnWriters();
+        // COPY text has no header, but mark it so split parts do not repeat an earlier one.
+        outputSink.startHeader();
+        outputSink.endHeader();
+    }
+
+    @Override
+    protected void printString(final String string) {
+        int start = 0;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            char escaped;
+            switch (c) {
+                case '\\':
+                    escaped = '\\';
+                    break;
+                case '\n':
+                    escaped = 'n';
+                    break;
+                case '\r':
+                    escaped = 'r';
+                    break;
+                case '\t':
+                    escaped = 't';
+                    break;
+                case '\b':
+                    escaped = 'b';
+                    break;
+                case '\f':
+                    escaped = 'f';
+                    break;
+                case '\u000b':
+                    escaped = 'v';
+                    break;
+                default:
+                    if (c != delimiter) {
+                        continue;
+                    }
+                    escaped = c;
+            }
+            outputSink.write(string, start, i);
+            outputSink.writeByte('\\');
+            outputSink.write(escaped);
+            start = i + 1;
+        }
+        outputSink.write(string, start, length);
+    }
+
+    /**
+     * COPY escapes single characters, so each chunk is escaped on its own.
+     */
+    @Override
+    protected void printCharacterStream(final Reader reader) throws IOException {
+        String chunk;
+        while ((chunk = readCharacterChunk(reader)) != null) {
+            printString(chunk);
+        }
+    }
+
+    @Override
+    protected void printInteger(final long value) {
+        outputSink.write(value);
+    }
+
+    @Override
+    protected boolean canPrintPlainValue(final String characters) {
+        return super.canPrintPlainValue(characters) && characters.indexOf('\\') < 0
+                && !hasControlCharacter(characters);
+    }
+
+    @Override
+    protected ColumnWriter createColumnWriter(final int column,
+                                              final int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return new PgBooleanColumnWriter(column);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return new ByteaColumnWriter(column);
+            default:
+                return super.createColumnWriter(column, sqlType);
+        }
+    }
+
+    protected class PgBooleanColumnWriter extends ColumnWriter {
+        protected PgBooleanColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                outputSink.writeByte(value ? 't' : 'f');
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                outputSink.writeByte((Boolean) value ? 't' : 'f');
+            }
+        }
+    }
+
+    /**
+     * Writes the bytea hex format, whose leading backslash is itself escaped.
+     */
+    protected class ByteaColumnWriter extends BinaryColumnWriter {
+        protected ByteaColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected boolean isArray() {
+            return false;
+        }
+
+        @Override
+        protected void printBinary(final byte[] bytes, final int length) {
+            outputSink.writeHex(bytes, 0, length);
+        }
+
+        @Override
+        protected void printBinaryStart() {
+            outputSink.writeByte('\\');
+            outputSink.writeByte('\\');
+            outputSink.writeByte('x');
+        }
+
+        @Override
+        protected void printBinaryEnd() {
+        }
+    }
+
+    public static class Builder extends RunSqlPrintStreamProcessor.Builder {
+        @Override
+        public RunSqlPgCopyProcessor build() {
+            return new RunSqlPgCopyProcessor(this);
+        }
+    }
+}
@@ -20,12 +20,22 @@
 
 package runsql.impl.processor;
 
+import runsql.impl.arguments.Parameter;
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.BinaryFormat;
+import runsql.util.DecimalNotation;
 import runsql.util.QuoteMode;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 
@@ -33,7 +43,14 @@ import java.util.Arrays;
  * The main {@link runsql.Processor} for printing results to a file or screen.
  */
 public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
-    protected final PrintStream printStream;
+    private static final String INTEGER_CHARACTERS = "-0123456789";
+    private static final int ASCII_LIMIT = 128;
+    private static final byte SEPARATOR_START = 1;
+    private static final byte QUOTE_START = 2;
+    // A multiple of three so that base64 chunks need no padding.
+    private static final int BINARY_CHUNK_SIZE = 3 * 4096;
+    private static final int CHARACTER_CHUNK_SIZE = 8192;
+    protected final RunSqlOutputSink outputSink;
     protected final String nullValue;
     protected final String columnSeparator;
     protected final String rowSeparator;
@@ -42,10 +59,32 @@ public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
     protected final String trueValue;
     protected final String falseValue;
     protected final boolean outputColumnNames;
+    protected final int formatThreads;
+    protected final BinaryFormat binaryFormat;
+    protected final DecimalNotation decimalNotation;
+    protected final String dateFormat;
+    protected final String timeFormat;
+    protected final String timestampFormat;
+    private final RunSqlTemporalFormat dateTemporalFormat;
+    private final RunSqlTemporalFormat timeTemporalFormat;
+    private final RunSqlTemporalFormat timestampTemporalFormat;
     private final QuoteMode quoteMode;
+    private final boolean printIntegersDirectly;
+    private final boolean hasSeparator;
+    private final boolean hasQuote;
+    private final boolean hasEscape;
+    private final char separatorStart;
+    private final char quoteStart;
+    private final byte[] asciiCharacterClasses = new byte[ASCII_LIMIT];
+    protected ColumnWriter[] columnWriters;
+    private byte[] binaryChunk;
+    private char[] characterChunk;
+    // A high surrogate held back from the previous character chunk.
+    private int pendingCharacter = -1;
 
     public RunSqlPrintStreamProcessor(final Builder builder) {
-        printStream = builder.printStream;
+        outputSink = builder.outputSink != null ? builder.outputSink :
+                new RunSqlOutputSink(builder.printStream);
         nullValue = builder.nullValue;
         columnSeparator = builder.columnSeparator;
         rowSeparator = builder.rowSeparator;
@@ -55,96 +94,453 @@ public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
         quoteMode = builder.quoteMode;
         trueValue = builder.trueValue;
         falseValue = builder.falseValue;
+        formatThreads = builder.formatThreads;
+        binaryFormat = builder.binaryFormat;
+        decimalNotation = builder.decimalNotation;
+        dateFormat = builder.dateFormat;
+        timeFormat = builder.timeFormat;
+        timestampFormat = builder.timestampFormat;
+        dateTemporalFormat = dateFormat == null ? RunSqlTemporalFormat.builtIn(Types.DATE) :
+                RunSqlTemporalFormat.compile(dateFormat, Parameter.DATE_FORMAT);
+        timeTemporalFormat = timeFormat == null ? RunSqlTemporalFormat.builtIn(Types.TIME) :
+                RunSqlTemporalFormat.compile(timeFormat, Parameter.TIME_FORMAT);
+        timestampTemporalFormat =
+                timestampFormat == null ? RunSqlTemporalFormat.builtIn(Types.TIMESTAMP) :
+                        RunSqlTemporalFormat.compile(timestampFormat, Parameter.TIMESTAMP_FORMAT);
+        printIntegersDirectly =
+                !(quoteMode == QuoteMode.ALWAYS && StringUtils.isNotEmpty(quoteString)) && StringUtils
+                        .containsNone(columnSeparator, INTEGER_CHARACTERS) && StringUtils
+                        .containsNone(quoteString, INTEGER_CHARACTERS);
+        hasSeparator = StringUtils.isNotEmpty(columnSeparator);
+        hasQuote = StringUtils.isNotEmpty(quoteString);
+        hasEscape = StringUtils.isNotEmpty(escapeString);
+        separatorStart = hasSeparator ? columnSeparator.charAt(0) : 0;
+        quoteStart = hasQuote ? quoteString.charAt(0) : 0;
+        if (hasSeparator && separatorStart < ASCII_LIMIT) {
+            asciiCharacterClasses[separatorStart] |= SEPARATOR_START;
+        }
+        if (hasQuote && quoteStart < ASCII_LIMIT) {
+            asciiCharacterClasses[quoteStart] |= QUOTE_START;
+        }
+    }
+
+    /**
+     * Creates a single threaded copy of the processor's format settings that writes to a
+     * different sink.
+     */
+    protected RunSqlPrintStreamProcessor(final RunSqlPrintStreamProcessor processor,
+                                         final RunSqlOutputSink outputSink) {
+        this(new Builder().outputSink(outputSink)
+                          .nullValue(processor.nullValue)
+                          .columnSeparator(processor.columnSeparator)
+                          .rowSeparator(processor.rowSeparator)
+                          .quoteString(processor.quoteString)
+                          .escapeString(processor.escapeString)
+                          .outputColumnNames(processor.outputColumnNames)
+                          .quoteMode(processor.quoteMode)
+                          .trueValue(processor.trueValue)
+                          .falseValue(processor.falseValue)
+                          .binaryFormat(processor.binaryFormat)
+                          .decimalNotation(processor.decimalNotation)
+                          .dateFormat(processor.dateFormat)
+                          .timeFormat(processor.timeFormat)
+                          .timestampFormat(processor.timestampFormat));
     }
 
     @Override
     protected void processPreRows() throws SQLException {
+        columnWriters = createColumnWriters();
+        outputSink.startHeader();
         if (outputColumnNames) {
-            for (int i = 1; i <= columnCount; i++) {
-                currentColumnNumber = i;
-                printString(resultSetMetaData.getColumnName(i));
-                printColumnSeparator();
-            }
-            processPostRow();
+            printColumnNames();
         }
+        outputSink.endHeader();
+    }
+
+    /**
+     * Prints the column names as the first row.
+     */
+    protected void printColumnNames() throws SQLException {
+        currentSqlType = Types.VARCHAR;
+        for (int i = 1; i <= columnCount; i++) {
+            currentColumnNumber = i;
+            printString(resultSetMetaData.getColumnName(i));
+            printColumnSeparator();
+        }
+        processPostRow();
     }
 
     @Override
     protected void processPostRow() throws SQLException {
         super.processPostRow();
-        print(rowSeparator);
+        printRowSeparator();
     }
 
     @Override
-    protected void processColumn() throws SQLException {
-        Object object = resultSet.getObject(currentColumnNumber);
-        if (object == null) {
-            printNullValue();
+    protected void processRows() throws SQLException {
+        if (formatThreads > 1) {
+            new RunSqlFormattingPipeline(this, formatThreads).run();
         } else {
-            switch (currentSqlType) {
-                case Types.BOOLEAN:
-                case Types.BIT:
-                    printString(resultSet.getBoolean(currentColumnNumber) ? trueValue : falseValue);
-                    break;
-                case Types.BINARY:
-                case Types.VARBINARY:
-                case Types.LONGVARBINARY:
-                    printString(Arrays.toString(resultSet.getBytes(currentColumnNumber)));
-                    break;
-                default:
-                    printString(object.toString());
-            }
+            super.processRows();
         }
+    }
+
+    @Override
+    protected void processPostRows() throws SQLException {
+        outputSink.flush();
+        super.processPostRows();
+    }
+
+    @Override
+    protected void processColumn() throws SQLException {
+        columnWriters[currentColumnNumber - 1].write();
         printColumnSeparator();
     }
 
+    /**
+     * Creates a copy of this processor used by {@link RunSqlFormattingPipeline} to format rows
+     * on another thread. Subclasses with additional settings must override this method.
+     *
+     * @param outputSink The sink the copy writes to.
+     * @return A processor with the same format settings as this one.
+     */
+    protected RunSqlPrintStreamProcessor createFormatter(final RunSqlOutputSink outputSink) {
+        return new RunSqlPrintStreamProcessor(this, outputSink);
+    }
+
+    /**
+     * Prepares a formatter created by {@link #createFormatter} to format rows of the current
+     * result set.
+     */
+    void initFormatter(final RunSqlPrintStreamProcessor formatter) throws SQLException {
+        formatter.resultSetMetaData = resultSetMetaData;
+        formatter.columnCount = columnCount;
+        formatter.columnTypes = columnTypes;
+        formatter.columnWriters = formatter.createColumnWriters();
+    }
+
+    /**
+     * Reads the values of the current row so another thread can format them.
+     */
+    Object[] readRow() throws SQLException {
+        Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = columnWriters[i].read();
+        }
+        return values;
+    }
+
+    /**
+     * Formats a row of values previously returned by {@link #readRow()}.
+     */
+    void formatRow(final Object[] values, final int rowNumber) throws SQLException {
+        currentRowNumber = rowNumber;
+        processPreRow();
+        for (int i = 0; i < columnCount; i++) {
+            currentColumnNumber = i + 1;
+            currentSqlType = columnTypes[i];
+            columnWriters[i].write(values[i]);
+            printColumnSeparator();
+        }
+        processPostRow();
+    }
+
+    /**
+     * Builds the column plan for the current result set. Called once per result set so the per
+     * row work does not need to consult the result set meta data.
+     *
+     * @return One writer per column.
+     * @throws SQLException If reading the result set meta data fails.
+     */
+    protected ColumnWriter[] createColumnWriters() throws SQLException {
+        ColumnWriter[] writers = new ColumnWriter[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            writers[i] = createColumnWriter(i + 1, columnTypes[i]);
+        }
+        return writers;
+    }
+
+    protected ColumnWriter createColumnWriter(final int column,
+                                              final int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return new IntColumnWriter(column);
+            case Types.INTEGER:
+                // Unsigned integers may overflow an int.
+                return resultSetMetaData.isSigned(column) ? new IntColumnWriter(column) :
+                        new LongColumnWriter(column);
+            case Types.BIGINT:
+                // Unsigned big integers may overflow a long.
+                return resultSetMetaData.isSigned(column) ? new LongColumnWriter(column) :
+                        new ObjectColumnWriter(column);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new DecimalColumnWriter(column);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return new BooleanColumnWriter(column);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return new StringColumnWriter(column);
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return new CharacterStreamColumnWriter(column);
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return new TemporalColumnWriter(column, sqlType);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return new BinaryColumnWriter(column);
+            default:
+                return new ObjectColumnWriter(column);
+        }
+    }
+
     protected void printNullValue() {
         print(nullValue);
     }
 
     void printString(final String string) {
+        int firstToken = nextToken(string, 0, hasSeparator, hasQuote);
         boolean printQuotes = false;
         switch (quoteMode) {
             case NEVER:
                 printQuotes = false;
                 break;
             case ALWAYS:
-                printQuotes = StringUtils.isNotEmpty(quoteString);
+                printQuotes = hasQuote;
                 break;
             case NECESSARY:
-                if (StringUtils.isNotEmpty(quoteString) && StringUtils
-                        .isNotEmpty(columnSeparator)) {
-                    printQuotes = StringUtils.contains(string, columnSeparator);
-                }
+                printQuotes = hasQuote && hasSeparator && firstToken >= 0 && nextToken(string,
+                                                                                        firstToken,
+                                                                                        true,
+                                                                                        false) >= 0;
                 break;
             case TEXT:
-                printQuotes = !NumberUtils.isParsable(string);
+                printQuotes = hasQuote && isTextValue(string);
                 break;
         }
         if (printQuotes) {
-            print(quoteString);
-            if (StringUtils.contains(string, quoteString) && StringUtils.isNotEmpty(escapeString)) {
-                print(StringUtils.replace(string, quoteString, escapeString + quoteString));
+            outputSink.write(quoteString);
+            printEscaped(string, firstToken, false, hasEscape);
+            outputSink.write(quoteString);
+        } else {
+            printEscaped(string, firstToken, hasEscape && hasSeparator,
+                         hasEscape && quoteMode != QuoteMode.NEVER);
+        }
+    }
+
+    /**
+     * Decides whether a value is quoted in {@link QuoteMode#TEXT} mode from the sql type of the
+     * current column. Only values of types that could hold either text or a number are parsed.
+     */
+    private boolean isTextValue(final String string) {
+        switch (currentSqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return false;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return true;
+            default:
+                return !NumberUtils.isParsable(string);
+        }
+    }
+
+    /**
+     * Writes a character value a chunk at a time, quoting and escaping it as {@link
+     * #printString} would without holding the whole value in memory. Values that fit in one
+     * chunk are passed to {@link #printString}. The necessary quote mode has to see the whole
+     * value before deciding whether to quote it, so when quotes and a column separator are set it
+     * reads longer values into memory.
+     *
+     * @param reader The value's characters.
+     * @throws IOException If reading fails.
+     */
+    protected void printCharacterStream(final Reader reader) throws IOException {
+        String chunk = readCharacterChunk(reader);
+        String next = chunk == null ? null : readCharacterChunk(reader);
+        if (next == null) {
+            printString(chunk == null ? "" : chunk);
+            return;
+        }
+        if (quoteMode == QuoteMode.NECESSARY && hasQuote && hasSeparator) {
+            StringBuilder value = new StringBuilder(chunk);
+            do {
+                value.append(next);
+            } while ((next = readCharacterChunk(reader)) != null);
+            printString(value.toString());
+            return;
+        }
+        // Large character types are always text.
+        boolean printQuotes =
+                hasQuote && (quoteMode == QuoteMode.ALWAYS || quoteMode == QuoteMode.TEXT);
+        boolean escapeSeparators = !printQuotes && hasEscape && hasSeparator;
+        boolean escapeQuotes = hasEscape && (printQuotes || quoteMode != QuoteMode.NEVER);
+        // Hold back enough characters to see a token that starts at the end of a chunk.
+        int carry = Math.max(escapeSeparators ? columnSeparator.length() - 1 : 0,
+                             escapeQuotes ? quoteString.length() - 1 : 0);
+        if (printQuotes) {
+            outputSink.write(quoteString);
+        }
+        String text = chunk;
+        while (next != null) {
+            int limit = text.length() - carry;
+            if (limit > 0 && Character.isHighSurrogate(text.charAt(limit - 1))) {
+                limit--;
+            }
+            int written =
+                    printEscapedUntil(text, Math.max(limit, 0), escapeSeparators, escapeQuotes);
+            text = text.substring(written) + next;
+            next = readCharacterChunk(reader);
+        }
+        printEscapedUntil(text, text.length(), escapeSeparators, escapeQuotes);
+        if (printQuotes) {
+            outputSink.write(quoteString);
+        }
+    }
+
+    /**
+     * Reads the next chunk of a character value. A chunk never ends with the high surrogate of a
+     * pair split by the chunk boundary. Callers must read until null so no character is held
+     * back for the next value.
+     *
+     * @return The chunk or null at the end of the value.
+     */
+    protected String readCharacterChunk(final Reader reader) throws IOException {
+        if (characterChunk == null) {
+            characterChunk = new char[CHARACTER_CHUNK_SIZE];
+        }
+        int length = 0;
+        if (pendingCharacter >= 0) {
+            characterChunk[length++] = (char) pendingCharacter;
+            pendingCharacter = -1;
+        }
+        int read;
+        while (length < characterChunk.length && (read = reader
+                .read(characterChunk, length, characterChunk.length - length)) >= 0) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length > 1 && Character.isHighSurrogate(characterChunk[length - 1])) {
+            pendingCharacter = characterChunk[--length];
+        }
+        return new String(characterChunk, 0, length);
+    }
+
+    /**
+     * Writes the string, escaping the tokens that start before the limit, and at least up to
+     * the limit.
+     *
+     * @return The index after the last character written.
+     */
+    private int printEscapedUntil(final String string, final int limit,
+                                  final boolean escapeSeparators, final boolean escapeQuotes) {
+        int start = 0;
+        int index = nextToken(string, 0, escapeSeparators, escapeQuotes);
+        while (index >= 0 && index < limit) {
+            int tokenLength = escapeSeparators && string
+                    .startsWith(columnSeparator, index) ? columnSeparator.length() :
+                    quoteString.length();
+            outputSink.write(string, start, index);
+            outputSink.write(escapeString);
+            outputSink.write(string, index, index + tokenLength);
+            start = index + tokenLength;
+            index = nextToken(string, start, escapeSeparators, escapeQuotes);
+        }
+        int end = Math.max(start, limit);
+        outputSink.write(string, start, end);
+        return end;
+    }
+
+    /**
+     * Writes the string, prefixing each requested token with the escape string. Everything
+     * before firstToken is known not to contain a token.
+     */
+    private void printEscaped(final String string, final int firstToken,
+                              final boolean escapeSeparators, final boolean escapeQuotes) {
+        if (firstToken < 0 || !escapeSeparators && !escapeQuotes) {
+            outputSink.write(string);
+            return;
+        }
+        int start = 0;
+        int index = nextToken(string, firstToken, escapeSeparators, escapeQuotes);
+        while (index >= 0) {
+            int tokenLength = escapeSeparators && string
+                    .startsWith(columnSeparator, index) ? columnSeparator.length() :
+                    quoteString.length();
+            outputSink.write(string, start, index);
+            outputSink.write(escapeString);
+            outputSink.write(string, index, index + tokenLength);
+            start = index + tokenLength;
+            index = nextToken(string, start, escapeSeparators, escapeQuotes);
+        }
+        outputSink.write(string, start, string.length());
+    }
+
+    /**
+     * Finds the next occurrence of the column separator and/or quote string. Each character is
+     * classified once against a table built from the first character of each token; only
+     * candidates are compared against the full token.
+     *
+     * @return The index where the token starts or -1 if there are no more tokens.
+     */
+    private int nextToken(final String string, final int from, final boolean separators,
+                          final boolean quotes) {
+        int mask = (separators ? SEPARATOR_START : 0) | (quotes ? QUOTE_START : 0);
+        if (mask == 0) {
+            return -1;
+        }
+        int length = string.length();
+        for (int i = from; i < length; i++) {
+            char c = string.charAt(i);
+            int characterClass;
+            if (c < ASCII_LIMIT) {
+                characterClass = asciiCharacterClasses[c] & mask;
             } else {
-                print(string);
+                characterClass = (c == separatorStart ? SEPARATOR_START : 0) | (c == quoteStart ?
+                        QUOTE_START : 0);
+                characterClass &= mask;
             }
-            print(quoteString);
-        } else {
-            String stringToPrint = string;
-            if (StringUtils.isNotEmpty(escapeString)) {
-                if (StringUtils.contains(stringToPrint, columnSeparator)) {
-                    stringToPrint = StringUtils.replace(stringToPrint, columnSeparator,
-                                                        escapeString + columnSeparator);
-                }
-                if (quoteMode != QuoteMode.NEVER && StringUtils
-                        .isNotEmpty(quoteString) && StringUtils
-                        .contains(stringToPrint, quoteString)) {
-                    stringToPrint = StringUtils
-                            .replace(stringToPrint, quoteString, escapeString + quoteString);
-                }
+            if (characterClass != 0 && ((characterClass & SEPARATOR_START) != 0 && string
+                    .startsWith(columnSeparator, i) || (characterClass & QUOTE_START) != 0 && string
+                    .startsWith(quoteString, i))) {
+                return i;
             }
-            print(stringToPrint);
         }
+        return -1;
     }
 
     protected void printColumnSeparator() {
@@ -153,11 +549,497 @@ public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
         }
     }
 
+    /**
+     * Prints the row separator and tells the output sink that a row ended.
+     */
+    protected void printRowSeparator() {
+        print(rowSeparator);
+        outputSink.endRow();
+    }
+
     protected void print(final Object object) {
-        printStream.print(object);
+        outputSink.write(String.valueOf(object));
+    }
+
+    /**
+     * Prints an integral value, skipping the quote and escape checks in {@link #printString}
+     * when the configured separator and quote strings can never appear in a number.
+     */
+    protected void printInteger(final long value) {
+        if (printIntegersDirectly) {
+            outputSink.write(value);
+        } else {
+            printString(Long.toString(value));
+        }
+    }
+
+    /**
+     * Decides whether values made only of the given characters, such as formatted numbers and
+     * dates, can be written without escaping. The characters must not occur in the column
+     * separator, quote or escape strings.
+     *
+     * @param characters Every character such a value may contain.
+     * @return True if {@link #printPlainValueStart} and {@link #printPlainValueEnd} may be used.
+     */
+    protected boolean canPrintPlainValue(final String characters) {
+        return StringUtils.containsNone(columnSeparator, characters) && StringUtils
+                .containsNone(quoteString, characters) && StringUtils
+                .containsNone(escapeString, characters);
+    }
+
+    /**
+     * Starts a value that is written straight to the sink, opening the quotes {@link
+     * #printString} would put around it.
+     *
+     * @param text True for values that {@link QuoteMode#TEXT} quotes, such as dates.
+     */
+    protected void printPlainValueStart(final boolean text) {
+        if (isQuotingPlainValue(text)) {
+            outputSink.write(quoteString);
+        }
+    }
+
+    /**
+     * Ends a value started with {@link #printPlainValueStart}.
+     */
+    protected void printPlainValueEnd(final boolean text) {
+        if (isQuotingPlainValue(text)) {
+            outputSink.write(quoteString);
+        }
+    }
+
+    static boolean hasControlCharacter(final String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) < ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isQuotingPlainValue(final boolean text) {
+        // Plain values never contain the separator, so the necessary quote mode never quotes.
+        return hasQuote && (quoteMode == QuoteMode.ALWAYS || quoteMode == QuoteMode.TEXT && text);
+    }
+
+    /**
+     * Writes a single column of the current row. Each implementation reads its value with the
+     * getter matching the column's sql type and checks {@link ResultSet#wasNull()} rather than
+     * boxing the value through {@link ResultSet#getObject(int)}.
+     */
+    protected abstract class ColumnWriter {
+        protected final int column;
+
+        protected ColumnWriter(final int column) {
+            this.column = column;
+        }
+
+        /**
+         * Reads the value of the current row and writes it.
+         */
+        protected abstract void write() throws SQLException;
+
+        /**
+         * Reads the value of the current row so it can be written later, possibly on another
+         * thread.
+         *
+         * @return The value or null if the value is sql NULL.
+         */
+        protected abstract Object read() throws SQLException;
+
+        /**
+         * Writes a value previously returned by {@link #read()}.
+         */
+        protected abstract void write(Object value) throws SQLException;
+    }
+
+    protected class IntColumnWriter extends ColumnWriter {
+        protected IntColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            int value = resultSet.getInt(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                printInteger(value);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            int value = resultSet.getInt(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printInteger((Integer) value);
+            }
+        }
+    }
+
+    protected class LongColumnWriter extends ColumnWriter {
+        protected LongColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            long value = resultSet.getLong(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                printInteger(value);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            long value = resultSet.getLong(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printInteger((Long) value);
+            }
+        }
+    }
+
+    /**
+     * Writes decimals in the configured {@link DecimalNotation}, writing the digits straight to
+     * the sink when the separator, quote and escape strings cannot appear in a number.
+     */
+    protected class DecimalColumnWriter extends ColumnWriter {
+        private final boolean plain;
+
+        protected DecimalColumnWriter(final int column) {
+            super(column);
+            plain = canPrintPlainValue(RunSqlDecimalFormat.CHARACTERS);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            write(read());
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getBigDecimal(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else if (plain) {
+                printPlainValueStart(false);
+                RunSqlDecimalFormat.write(outputSink, (BigDecimal) value, decimalNotation);
+                printPlainValueEnd(false);
+            } else {
+                printString(RunSqlDecimalFormat.format((BigDecimal) value, decimalNotation));
+            }
+        }
+    }
+
+    protected class BooleanColumnWriter extends ColumnWriter {
+        protected BooleanColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            if (resultSet.wasNull()) {
+                printNullValue();
+            } else {
+                printString(value ? trueValue : falseValue);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printString((Boolean) value ? trueValue : falseValue);
+            }
+        }
+    }
+
+    protected class StringColumnWriter extends ColumnWriter {
+        protected StringColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            write(read());
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getString(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printString((String) value);
+            }
+        }
+    }
+
+    /**
+     * Formats dates and times with a {@link RunSqlTemporalFormat}, writing the digits straight
+     * to the sink when the formatted value never needs quoting or escaping.
+     */
+    protected class TemporalColumnWriter extends ColumnWriter {
+        private final int sqlType;
+        private final RunSqlTemporalFormat temporalFormat;
+        private final boolean plain;
+
+        protected TemporalColumnWriter(final int column, final int sqlType) {
+            super(column);
+            this.sqlType = sqlType;
+            switch (sqlType) {
+                case Types.DATE:
+                    temporalFormat = dateTemporalFormat;
+                    break;
+                case Types.TIME:
+                    temporalFormat = timeTemporalFormat;
+                    break;
+                default:
+                    temporalFormat = timestampTemporalFormat;
+            }
+            plain = canPrintPlainValue(temporalFormat.getCharacters());
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            write(read());
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            switch (sqlType) {
+                case Types.DATE:
+                    return resultSet.getDate(column);
+                case Types.TIME:
+                    return resultSet.getTime(column);
+                default:
+                    return resultSet.getTimestamp(column);
+            }
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+                return;
+            }
+            java.util.Date date = (java.util.Date) value;
+            long epochMillis = date.getTime();
+            if (!temporalFormat.canFormat(epochMillis)) {
+                printString(value.toString());
+                return;
+            }
+            int nanos = value instanceof Timestamp ? ((Timestamp) value).getNanos() :
+                    (int) Math.floorMod(epochMillis, 1000L) * 1000000;
+            if (plain) {
+                printPlainValueStart(true);
+                temporalFormat.write(outputSink, epochMillis, nanos);
+                printPlainValueEnd(true);
+            } else {
+                printString(temporalFormat.format(epochMillis, nanos));
+            }
+        }
+    }
+
+    /**
+     * Streams large character values with {@link ResultSet#getCharacterStream(int)}. Rows
+     * formatted on other threads read the whole value up front.
+     */
+    protected class CharacterStreamColumnWriter extends ColumnWriter {
+        protected CharacterStreamColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            try (Reader reader = resultSet.getCharacterStream(column)) {
+                if (reader == null) {
+                    printNullValue();
+                } else {
+                    printCharacterStream(reader);
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getString(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printString((String) value);
+            }
+        }
+    }
+
+    /**
+     * Writes binary values in the configured {@link BinaryFormat}. Hex and base64 values are read
+     * with {@link ResultSet#getBinaryStream(int)} and encoded a chunk at a time straight into the
+     * output sink. Rows formatted on other threads read the whole value up front.
+     */
+    protected class BinaryColumnWriter extends ColumnWriter {
+        protected BinaryColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            if (isArray()) {
+                write(read());
+                return;
+            }
+            try (InputStream inputStream = resultSet.getBinaryStream(column)) {
+                if (inputStream == null) {
+                    printNullValue();
+                    return;
+                }
+                if (binaryChunk == null) {
+                    binaryChunk = new byte[BINARY_CHUNK_SIZE];
+                }
+                printBinaryStart();
+                int length;
+                while ((length = readChunk(inputStream)) > 0) {
+                    printBinary(binaryChunk, length);
+                }
+                printBinaryEnd();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getBytes(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else if (isArray()) {
+                printString(Arrays.toString((byte[]) value));
+            } else {
+                byte[] bytes = (byte[]) value;
+                printBinaryStart();
+                printBinary(bytes, bytes.length);
+                printBinaryEnd();
+            }
+        }
+
+        protected boolean isArray() {
+            return binaryFormat == BinaryFormat.ARRAY;
+        }
+
+        /**
+         * Fills the chunk unless the stream ends first.
+         *
+         * @return The number of bytes read, 0 at the end of the stream.
+         */
+        private int readChunk(final InputStream inputStream) throws IOException {
+            int length = 0;
+            int read;
+            while (length < binaryChunk.length && (read = inputStream
+                    .read(binaryChunk, length, binaryChunk.length - length)) >= 0) {
+                length += read;
+            }
+            return length;
+        }
+
+        /**
+         * Encodes a chunk of the value. Every chunk but the last is a multiple of three bytes
+         * long, so base64 chunks join without padding.
+         */
+        protected void printBinary(final byte[] bytes, final int length) {
+            if (binaryFormat == BinaryFormat.HEX) {
+                outputSink.writeHex(bytes, 0, length);
+            } else {
+                outputSink.writeBase64(bytes, 0, length);
+            }
+        }
+
+        /**
+         * Hex and base64 values are quoted like text but never escaped, so the column separator
+         * and quote string should not contain the encoding's digits.
+         */
+        protected void printBinaryStart() {
+            if (hasQuote && (quoteMode == QuoteMode.ALWAYS || quoteMode == QuoteMode.TEXT)) {
+                outputSink.write(quoteString);
+            }
+        }
+
+        protected void printBinaryEnd() {
+            printBinaryStart();
+        }
+    }
+
+    /**
+     * Fallback for sql types without a specialized writer.
+     */
+    protected class ObjectColumnWriter extends ColumnWriter {
+        protected ObjectColumnWriter(final int column) {
+            super(column);
+        }
+
+        @Override
+        protected void write() throws SQLException {
+            write(read());
+        }
+
+        @Override
+        protected Object read() throws SQLException {
+            return resultSet.getObject(column);
+        }
+
+        @Override
+        protected void write(final Object value) {
+            if (value == null) {
+                printNullValue();
+            } else {
+                printString(value.toString());
+            }
+        }
     }
 
     public static class Builder {
+        private RunSqlOutputSink outputSink;
         private PrintStream printStream;
         private String nullValue;
         private String columnSeparator;
@@ -168,12 +1050,27 @@ public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
         private QuoteMode quoteMode;
         private String trueValue;
         private String falseValue;
+        private int formatThreads = 1;
+        private BinaryFormat binaryFormat = BinaryFormat.ARRAY;
+        private DecimalNotation decimalNotation = DecimalNotation.DEFAULT;
+        private String dateFormat;
+        private String timeFormat;
+        private String timestampFormat;
 
+        /**
+         * Convenience for writing to a PrintStream through a sink with the default buffer size.
+         * Ignored when an output sink is supplied.
+         */
         public Builder printStream(final PrintStream printStream) {
             this.printStream = printStream;
             return this;
         }
 
+        public Builder outputSink(final RunSqlOutputSink outputSink) {
+            this.outputSink = outputSink;
+            return this;
+        }
+
         public Builder nullValue(final String nullValue) {
             this.nullValue = nullValue;
             return this;
@@ -219,6 +1116,52 @@ public class RunSqlPrintStreamProcessor extends RunSqlProcessorTemplate {
             return this;
         }
 
+        /**
+         * The number of threads that format rows. When greater than one, rows are read in
+         * chunks on the calling thread and formatted on a pool of threads.
+         */
+        public Builder formatThreads(final int formatThreads) {
+            this.formatThreads = formatThreads;
+            return this;
+        }
+
+        public Builder binaryFormat(final BinaryFormat binaryFormat) {
+            this.binaryFormat = binaryFormat;
+            return this;
+        }
+
+        public Builder decimalNotation(final DecimalNotation decimalNotation) {
+            this.decimalNotation = decimalNotation;
+            return this;
+        }
+
+        /**
+         * The pattern for DATE values, see {@link RunSqlTemporalFormat}. Null writes values as
+         * {@link java.sql.Date#toString()} does.
+         */
+        public Builder dateFormat(final String dateFormat) {
+            this.dateFormat = dateFormat;
+            return this;
+        }
+
+        /**
+         * The pattern for TIME values. Null writes values as {@link java.sql.Time#toString()}
+         * does.
+         */
+        public Builder timeFormat(final String timeFormat) {
+            this.timeFormat = timeFormat;
+            return this;
+        }
+
+        /**
+         * The pattern for TIMESTAMP values. Null writes values as {@link Timestamp#toString()}
+         * does.
+         */
+        public Builder timestampFormat(final String timestampFormat) {
+            this.timestampFormat = timestampFormat;
+            return this;
+        }
+
         public RunSqlPrintStreamProcessor build() {
             return new RunSqlPrintStreamProcessor(this);
         }
@@ -26,33 +26,49 @@ import runsql.SqlStatementExecutionHook;
 import runsql.impl.RunSqlStatementExecutionHook;
 import runsql.impl.arguments.ArgumentDefaults;
 import runsql.impl.exceptions.RunSqlParseException;
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.BinaryFormat;
+import runsql.util.DecimalNotation;
 import runsql.util.QuoteMode;
 import runsql.util.TransactionMode;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.PrintStream;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 
+import static runsql.impl.arguments.Parameter.ARROW_BATCH_SIZE;
 import static runsql.impl.arguments.Parameter.BATCH_SIZE;
+import static runsql.impl.arguments.Parameter.BINARY_FORMAT;
 import static runsql.impl.arguments.Parameter.BOOLEAN_FALSE_VALUE;
 import static runsql.impl.arguments.Parameter.BOOLEAN_TRUE_VALUE;
 import static runsql.impl.arguments.Parameter.COLUMN_SEPARATOR;
+import static runsql.impl.arguments.Parameter.DATE_FORMAT;
+import static runsql.impl.arguments.Parameter.DECIMAL_NOTATION;
 import static runsql.impl.arguments.Parameter.ESCAPE_CHARACTER;
 import static runsql.impl.arguments.Parameter.FILE_FORMAT;
+import static runsql.impl.arguments.Parameter.FORMAT_THREADS;
 import static runsql.impl.arguments.Parameter.IMPORT_COLUMNS;
+import static runsql.impl.arguments.Parameter.IMPORT_DIRECT_BUFFERS;
 import static runsql.impl.arguments.Parameter.IMPORT_DRIVER;
+import static runsql.impl.arguments.Parameter.IMPORT_MAX_PARAMETERS;
 import static runsql.impl.arguments.Parameter.IMPORT_PASSWORD;
+import static runsql.impl.arguments.Parameter.IMPORT_QUEUE_BYTES;
+import static runsql.impl.arguments.Parameter.IMPORT_STATISTICS;
 import static runsql.impl.arguments.Parameter.IMPORT_TABLE;
 import static runsql.impl.arguments.Parameter.IMPORT_URL;
 import static runsql.impl.arguments.Parameter.IMPORT_USER;
 import static runsql.impl.arguments.Parameter.INCLUDE_HEADERS;
 import static runsql.impl.arguments.Parameter.NUMBER_OF_JOBS;
+import static runsql.impl.arguments.Parameter.PARQUET_CODEC;
+import static runsql.impl.arguments.Parameter.PARQUET_ROW_GROUP_SIZE;
 import static runsql.impl.arguments.Parameter.QUOTE_MODE;
 import static runsql.impl.arguments.Parameter.QUOTE_VALUE;
+import static runsql.impl.arguments.Parameter.ROWS_PER_INSERT;
 import static runsql.impl.arguments.Parameter.ROW_SEPARATOR;
 import static runsql.impl.arguments.Parameter.TABLE_NAME;
+import static runsql.impl.arguments.Parameter.TIMESTAMP_FORMAT;
+import static runsql.impl.arguments.Parameter.TIME_FORMAT;
 import static runsql.impl.arguments.Parameter.TRANSACTION_MODE;
 import static runsql.impl.arguments.Parameter.VALUE_WHEN_NULL;
 
@@ -62,7 +78,8 @@ import static runsql.impl.arguments.Parameter.VALUE_WHEN_NULL;
  */
 public class RunSqlProcessorFactory {
     public static final List<String> FILE_FORMAT_OPTIONS =
-            Arrays.asList("csv", "msdoscsv", "inserts", "none");
+            Arrays.asList("csv", "msdoscsv", "inserts", "jsonl", "pgcopy", "pgcopybinary", "arrow",
+                          "parquet", "none");
 
     static String processSpecialChars(final String input) {
         if (StringUtils.isBlank(input)) {
@@ -77,7 +94,20 @@ public class RunSqlProcessorFactory {
     }
 
     public static Processor createProcessor(final Arguments arguments,
-                                            final PrintStream printStream) throws RunSqlParseException {
+                                            final RunSqlOutputSink outputSink) throws RunSqlParseException {
+        return createProcessor(arguments, outputSink, null);
+    }
+
+    /**
+     * Creates a processor. Import processors created with the same import target share its
+     * connection pool and byte limit.
+     *
+     * @param importTarget The target shared by imports that run at the same time, or null.
+     */
+    public static Processor createProcessor(final Arguments arguments,
+                                            final RunSqlOutputSink outputSink,
+                                            final RunSqlImportTarget importTarget)
+            throws RunSqlParseException {
         ResultSetProcessorFields fields = new ResultSetProcessorFields();
         fields.fileFormat = arguments.getValue(FILE_FORMAT.getEitherName()).toLowerCase();
         fields.tableName = arguments.getValue(TABLE_NAME.getEitherName());
@@ -99,9 +129,27 @@ public class RunSqlProcessorFactory {
         if ("inserts".equalsIgnoreCase(fields.fileFormat)) {
             fields.setToInsertsMode();
         }
+        if ("jsonl".equalsIgnoreCase(fields.fileFormat)) {
+            fields.rowSeparator = "\n";
+        }
+        if ("pgcopy".equalsIgnoreCase(fields.fileFormat)) {
+            fields.setToPgCopyMode();
+        }
         fields.processArguments(arguments);
         if (arguments.hasOption(IMPORT_TABLE.getEitherName())) {
-            return buildImportProcessor(arguments);
+            return buildImportProcessor(arguments, importTarget);
+        }
+        if ("pgcopybinary".equalsIgnoreCase(fields.fileFormat)) {
+            return new RunSqlPgCopyBinaryProcessor.Builder().outputSink(outputSink).build();
+        }
+        if ("arrow".equalsIgnoreCase(fields.fileFormat)) {
+            int batchSize = Arguments.parsePositiveInteger(
+                    arguments.getValue(ARROW_BATCH_SIZE.getEitherName())).intValue();
+            return new RunSqlArrowProcessor.Builder().outputSink(outputSink).batchSize(batchSize)
+                                                     .build();
+        }
+        if ("parquet".equalsIgnoreCase(fields.fileFormat)) {
+            return buildParquetProcessor(arguments, outputSink);
         }
         RunSqlPrintStreamProcessor.Builder builder;
         if ("msdoscsv".equalsIgnoreCase(fields.fileFormat)) {
@@ -109,15 +157,65 @@ public class RunSqlProcessorFactory {
         } else if ("inserts".equalsIgnoreCase(fields.fileFormat)) {
             RunSqlInsertsProcessor.Builder insertsBuilder = new RunSqlInsertsProcessor.Builder();
             insertsBuilder.tableName(fields.tableName);
+            insertsBuilder.rowsPerInsert(Arguments.parsePositiveInteger(
+                    arguments.getValue(ROWS_PER_INSERT.getEitherName())).intValue());
             builder = insertsBuilder;
+        } else if ("jsonl".equalsIgnoreCase(fields.fileFormat)) {
+            builder = new RunSqlJsonLinesProcessor.Builder();
+        } else if ("pgcopy".equalsIgnoreCase(fields.fileFormat)) {
+            builder = new RunSqlPgCopyProcessor.Builder();
         } else {
             builder = new RunSqlPrintStreamProcessor.Builder();
         }
-        return fields.buildResultSetProcessor(builder, printStream, arguments);
+        return fields.buildResultSetProcessor(builder, outputSink, arguments);
+    }
+
+    private static Processor buildParquetProcessor(final Arguments arguments,
+                                                   final RunSqlOutputSink outputSink) throws RunSqlParseException {
+        int rowGroupSize = Arguments.parsePositiveInteger(
+                arguments.getValue(PARQUET_ROW_GROUP_SIZE.getEitherName())).intValue();
+        String codecName = arguments.getValue(PARQUET_CODEC.getEitherName());
+        RunSqlParquetProcessor.Codec codec;
+        if ("none".equalsIgnoreCase(codecName)) {
+            codec = RunSqlParquetProcessor.Codec.UNCOMPRESSED;
+        } else if ("gzip".equalsIgnoreCase(codecName)) {
+            codec = RunSqlParquetProcessor.Codec.GZIP;
+        } else {
+            throw new RunSqlParseException(
+                    String.format("Invalid %s: %s.", PARQUET_CODEC.getLongName(), codecName),
+                    null);
+        }
+        return new RunSqlParquetProcessor.Builder().outputSink(outputSink)
+                                                   .rowGroupSize(rowGroupSize).codec(codec)
+                                                   .build();
     }
 
-    private static Processor buildImportProcessor(
-            final Arguments arguments) throws RunSqlParseException {
+    /**
+     * Creates the target shared by imports that run at the same time.
+     *
+     * @param sourceJobs The number of jobs reading the source at the same time, each with its
+     *                   own import processor.
+     */
+    public static RunSqlImportTarget createImportTarget(final Arguments arguments,
+                                                        final int sourceJobs)
+            throws RunSqlParseException {
+        int numberOfJobs =
+                Arguments.parsePositiveInteger(arguments.getValue(NUMBER_OF_JOBS.getEitherName()))
+                         .intValue();
+        return new RunSqlImportTarget(arguments.getValue(IMPORT_DRIVER.getEitherName()),
+                                      arguments.getValue(IMPORT_URL.getEitherName()),
+                                      arguments.getValue(IMPORT_USER.getEitherName()),
+                                      arguments.getValue(IMPORT_PASSWORD.getEitherName()),
+                                      TransactionMode.parseTransactionMode(arguments.getValue(
+                                              TRANSACTION_MODE.getEitherName())),
+                                      Arguments.parsePositiveInteger(arguments.getValue(
+                                              IMPORT_QUEUE_BYTES.getEitherName())).longValue(),
+                                      sourceJobs * numberOfJobs);
+    }
+
+    private static Processor buildImportProcessor(final Arguments arguments,
+                                                  final RunSqlImportTarget importTarget)
+            throws RunSqlParseException {
         int numberOfJobs =
                 Arguments.parsePositiveInteger(arguments.getValue(NUMBER_OF_JOBS.getEitherName()))
                          .intValue();
@@ -126,6 +224,12 @@ public class RunSqlProcessorFactory {
             RunSqlProcessorImportConcurrent.Builder concurrentImportBuilder =
                     new RunSqlProcessorImportConcurrent.Builder();
             concurrentImportBuilder.setNumberOfJobs(numberOfJobs);
+            concurrentImportBuilder.setMaximumQueueBytes(Arguments.parsePositiveInteger(
+                    arguments.getValue(IMPORT_QUEUE_BYTES.getEitherName())).longValue());
+            concurrentImportBuilder.setPrintStatistics(Arguments.parseBoolean(
+                    arguments.getValue(IMPORT_STATISTICS.getEitherName())));
+            concurrentImportBuilder.setDirectBuffers(Arguments.parseBoolean(
+                    arguments.getValue(IMPORT_DIRECT_BUFFERS.getEitherName())));
             importBuilder = concurrentImportBuilder;
         } else {
             importBuilder = new RunSqlProcessorImport.Builder();
@@ -139,6 +243,10 @@ public class RunSqlProcessorFactory {
         importBuilder.setImportUrl(arguments.getValue(IMPORT_URL.getEitherName()));
         importBuilder.setImportUser(arguments.getValue(IMPORT_USER.getEitherName()));
         importBuilder.setImportPassword(arguments.getValue(IMPORT_PASSWORD.getEitherName()));
+        importBuilder.setRowsPerInsert(Arguments.parsePositiveInteger(
+                arguments.getValue(ROWS_PER_INSERT.getEitherName())).intValue());
+        importBuilder.setMaximumParameters(Arguments.parsePositiveInteger(
+                arguments.getValue(IMPORT_MAX_PARAMETERS.getEitherName())).intValue());
         BigInteger batchSize =
                 Arguments.parsePositiveInteger(arguments.getValue(BATCH_SIZE.getEitherName()));
         long batchSizeLong = batchSize == null ? 1L : batchSize.longValue();
@@ -154,7 +262,9 @@ public class RunSqlProcessorFactory {
                 new RunSqlStatementExecutionHook(true, batchSizeLong, transactionMode,
                                                  transactionSize);
         importBuilder.setSqlStatementExecutionHook(sqlStatementExecutionHook);
+        importBuilder.setBatchSize(batchSizeLong);
         importBuilder.setTransactionMode(transactionMode);
+        importBuilder.setImportTarget(importTarget);
         return importBuilder.build();
     }
 
@@ -191,6 +301,16 @@ public class RunSqlProcessorFactory {
             quoteMode = QuoteMode.TEXT;
         }
 
+        private void setToPgCopyMode() {
+            columnSeparator = "\t";
+            rowSeparator = "\n";
+            nullValue = "\\N";
+            encloseStringWithQuotes = null;
+            escapeCharacter = null;
+            outputColumnNames = "f";
+            quoteMode = QuoteMode.NEVER;
+        }
+
         private void processArguments(final Arguments arguments) throws RunSqlParseException {
             if (arguments.hasOption(COLUMN_SEPARATOR.getEitherName())) {
                 columnSeparator =
@@ -218,9 +338,9 @@ public class RunSqlProcessorFactory {
         }
 
         private Processor buildResultSetProcessor(final RunSqlPrintStreamProcessor.Builder builder,
-                                                  final PrintStream printStream,
+                                                  final RunSqlOutputSink outputSink,
                                                   final Arguments arguments) throws RunSqlParseException {
-            return builder.printStream(printStream)
+            return builder.outputSink(outputSink)
                           .columnSeparator(columnSeparator)
                           .rowSeparator(rowSeparator)
                           .nullValue(nullValue)
@@ -230,6 +350,15 @@ public class RunSqlProcessorFactory {
                           .quoteMode(quoteMode)
                           .trueValue(arguments.getValue(BOOLEAN_TRUE_VALUE.getEitherName()))
                           .falseValue(arguments.getValue(BOOLEAN_FALSE_VALUE.getEitherName()))
+                          .formatThreads(Arguments.parsePositiveInteger(
+                                  arguments.getValue(FORMAT_THREADS.getEitherName())).intValue())
+                          .binaryFormat(BinaryFormat.getBinaryFormat(
+                                  arguments.getValue(BINARY_FORMAT.getEitherName())))
+                          .decimalNotation(DecimalNotation.getDecimalNotation(
+                                  arguments.getValue(DECIMAL_NOTATION.getEitherName())))
+                          .dateFormat(arguments.getValue(DATE_FORMAT.getEitherName()))
+                          .timeFormat(arguments.getValue(TIME_FORMAT.getEitherName()))
+                          .timestampFormat(arguments.getValue(TIMESTAMP_FORMAT.getEitherName()))
                           .build();
         }
     }
@@ -22,12 +22,10 @@ package runsql.impl.processor;
 
 import runsql.Processor;
 import runsql.SqlStatementExecutionHook;
-import runsql.util.SqlCode;
 import runsql.util.TransactionMode;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 /**
@@ -36,6 +34,11 @@ import java.sql.SQLException;
  * connection to the target database, loops through the records from the source database and inserts
  * them into the target database.
  * <p>
+ * Each insert statement holds up to rowsPerInsert rows, see {@link RunSqlMultiRowInsert}.
+ * <p>
+ * When imports run at the same time, the connection comes from the pool of their shared {@link
+ * RunSqlImportTarget}.
+ * <p>
  * Also see {@link RunSqlProcessorImportConcurrent} which uses multiple threads to insert data into
  * the target database.
  */
@@ -48,8 +51,11 @@ public class RunSqlProcessorImport extends RunSqlProcessorTemplate {
     private final String importPassword;
     private final SqlStatementExecutionHook sqlStatementExecutionHook;
     private final TransactionMode transactionMode;
+    private final int rowsPerInsert;
+    private final int maximumParameters;
+    private final RunSqlImportTarget importTarget;
     private Connection connection;
-    private PreparedStatement preparedStatement;
+    private RunSqlMultiRowInsert multiRowInsert;
     private int numberOfColumnsToInsert;
 
     public RunSqlProcessorImport(final Builder builder) {
@@ -61,37 +67,47 @@ public class RunSqlProcessorImport extends RunSqlProcessorTemplate {
         importPassword = builder.importPassword;
         sqlStatementExecutionHook = builder.sqlStatementExecutionHook;
         transactionMode = builder.transactionMode;
+        rowsPerInsert = builder.rowsPerInsert;
+        maximumParameters = builder.maximumParameters;
+        importTarget = builder.importTarget;
     }
 
     @Override
     protected void processPreRows() throws SQLException, ClassNotFoundException {
-        Class.forName(importDriver);
-        connection = DriverManager.getConnection(importUrl, importUser, importPassword);
+        if (importTarget != null) {
+            connection = importTarget.getConnectionPool().getConnection();
+        } else {
+            Class.forName(importDriver);
+            connection = DriverManager.getConnection(importUrl, importUser, importPassword);
+        }
         connection.setAutoCommit(transactionMode == TransactionMode.AUTO);
         numberOfColumnsToInsert =
                 insertColumnNames == null ? columnCount : insertColumnNames.length;
-        String insertSql = SqlCode.createInsertSql(insertTableName, insertColumnNames,
-                                                   numberOfColumnsToInsert);
-        preparedStatement = connection.prepareStatement(insertSql);
+        multiRowInsert = new RunSqlMultiRowInsert(connection, sqlStatementExecutionHook,
+                                                  insertTableName, insertColumnNames,
+                                                  numberOfColumnsToInsert, rowsPerInsert,
+                                                  maximumParameters,
+                                                  RunSqlParameterBinder.forColumns(
+                                                          resultSetMetaData,
+                                                          numberOfColumnsToInsert),
+                                                  columnTypes);
     }
 
     @Override
     protected void processPostRows() throws SQLException {
-        sqlStatementExecutionHook.afterAllStatements(connection, preparedStatement);
+        multiRowInsert.finish();
         connection.close();
     }
 
     @Override
     protected void processPostRow() throws SQLException {
-        preparedStatement.addBatch();
-        sqlStatementExecutionHook.afterStatement(connection, preparedStatement);
+        multiRowInsert.endRow();
     }
 
     @Override
     protected void processColumn() throws SQLException {
         if (currentColumnNumber <= numberOfColumnsToInsert) {
-            preparedStatement
-                    .setObject(currentColumnNumber, resultSet.getObject(currentColumnNumber));
+            multiRowInsert.read(resultSet, currentColumnNumber);
         }
     }
 
@@ -104,6 +120,10 @@ public class RunSqlProcessorImport extends RunSqlProcessorTemplate {
         protected String importPassword;
         protected SqlStatementExecutionHook sqlStatementExecutionHook;
         protected TransactionMode transactionMode;
+        protected int rowsPerInsert = 1;
+        protected int maximumParameters = Integer.MAX_VALUE;
+        protected long batchSize = 1;
+        protected RunSqlImportTarget importTarget;
 
         public Builder setInsertTableName(final String insertTableName) {
             this.insertTableName = insertTableName;
@@ -146,6 +166,26 @@ public class RunSqlProcessorImport extends RunSqlProcessorTemplate {
             return this;
         }
 
+        public Builder setRowsPerInsert(final int rowsPerInsert) {
+            this.rowsPerInsert = rowsPerInsert;
+            return this;
+        }
+
+        public Builder setMaximumParameters(final int maximumParameters) {
+            this.maximumParameters = maximumParameters;
+            return this;
+        }
+
+        public Builder setBatchSize(final long batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder setImportTarget(final RunSqlImportTarget importTarget) {
+            this.importTarget = importTarget;
+            return this;
+        }
+
         public Processor build() {
             return new RunSqlProcessorImport(this);
         }
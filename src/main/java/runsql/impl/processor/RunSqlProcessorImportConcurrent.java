@@ -25,24 +25,20 @@ import runsql.Processor;
 import runsql.SqlStatementExecutionHook;
 import runsql.impl.RunSqlConnectionPool;
 import runsql.impl.RunSqlConnectionProperties;
-import runsql.util.SqlCode;
 import runsql.util.TransactionMode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
@@ -53,11 +49,27 @@ import java.util.stream.IntStream;
  * Whether or not this class has any performance benefits over a single threaded depends on many
  * factors. As always it is best to test before deciding which approach to use.
  * <p>
- * This job uses its own queue and {@link JobConsumer} to perform multithreading.
+ * This job uses its own queue and {@link JobConsumer} to perform multithreading. Rows are handed
+ * to the consumers in chunks rather than one at a time, so that the queue is locked once per
+ * chunk. A chunk holds a whole number of batches, each of batchsize statements of rowsperinsert
+ * rows, and at least {@link #MINIMUM_CHUNK_ROWS} rows.
+ * <p>
+ * The chunks waiting for or being inserted by the consumers are limited to an estimated number
+ * of bytes, see {@link RunSqlImportQueue}. A chunk is closed early once it reaches its share of
+ * the limit, so that rows with large values do not make a single chunk exceed it.
+ * <p>
+ * When imports run at the same time, they share the connection pool and the byte limit of a
+ * {@link RunSqlImportTarget}.
+ * <p>
+ * Chunks are columnar {@link RunSqlRowBuffer}s, recycled through the queue once inserted. With
+ * direct buffers, their strings and binary values are kept outside the heap.
  */
 public class RunSqlProcessorImportConcurrent implements Processor {
-    private static final List<Object> POISON_PILL = new ArrayList<>();
+    static final int MINIMUM_CHUNK_ROWS = 1024;
+    private static final RunSqlRowBuffer POISON_PILL =
+            new RunSqlRowBuffer(new RunSqlParameterBinder[0], 0, false);
     private static final Logger LOGGER = LogManager.getLogger();
+    private static final Logger STATISTICS_LOGGER = LogManager.getLogger("runsql.statistics");
     private final String insertTableName;
     private final String[] insertColumnNames;
     private final String importDriver;
@@ -67,11 +79,20 @@ public class RunSqlProcessorImportConcurrent implements Processor {
     private final int numberOfJobs;
     private final SqlStatementExecutionHook sqlStatementExecutionHook;
     private final TransactionMode transactionMode;
-    private final BlockingQueue<List<Object>> jobQueue = new LinkedBlockingQueue<>();
+    private final int rowsPerInsert;
+    private final int maximumParameters;
+    private final long batchSize;
+    private final long maximumQueueBytes;
+    private final boolean printStatistics;
+    private final boolean directBuffers;
+    private final RunSqlImportTarget importTarget;
+    private final RunSqlImportQueue jobQueue;
     private ConnectionPool connectionPool;
-    private PreparedStatement preparedStatement;
     private ResultSet resultSet;
     private int columnCount;
+    private int numberOfColumnsToInsert;
+    private int[] columnTypes;
+    private RunSqlParameterBinder[] binders;
 
     public RunSqlProcessorImportConcurrent(final Builder builder) {
         importDriver = builder.importDriver;
@@ -83,22 +104,62 @@ public class RunSqlProcessorImportConcurrent implements Processor {
         sqlStatementExecutionHook = builder.sqlStatementExecutionHook;
         transactionMode = builder.transactionMode;
         numberOfJobs = builder.numberOfJobs;
+        rowsPerInsert = builder.rowsPerInsert;
+        maximumParameters = builder.maximumParameters;
+        batchSize = builder.batchSize;
+        maximumQueueBytes = builder.maximumQueueBytes;
+        printStatistics = builder.printStatistics;
+        directBuffers = builder.directBuffers;
+        importTarget = builder.importTarget;
+        jobQueue = importTarget == null
+                ? new RunSqlImportQueue(maximumQueueBytes)
+                : new RunSqlImportQueue(importTarget.getLimit());
     }
 
     @Override
     public void process(final ResultSet resultSet) throws SQLException {
         ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
         columnCount = resultSetMetaData.getColumnCount();
+        numberOfColumnsToInsert =
+                insertColumnNames == null ? columnCount : insertColumnNames.length;
+        binders = RunSqlParameterBinder.forColumns(resultSetMetaData, numberOfColumnsToInsert);
+        columnTypes = new int[numberOfColumnsToInsert];
+        for (int i = 0; i < numberOfColumnsToInsert; i++) {
+            columnTypes[i] = resultSetMetaData.getColumnType(i + 1);
+        }
         createConnectionPool();
+        try {
+            importRows(resultSet);
+        } finally {
+            closeConnectionPool();
+        }
+    }
+
+    private void importRows(final ResultSet resultSet) throws SQLException {
         ExecutorService executorService = Executors.newFixedThreadPool(numberOfJobs);
         List<Future<?>> futures = new ArrayList<>(numberOfJobs);
         IntStream.range(0, numberOfJobs)
                  .forEach($ -> futures.add(executorService.submit(createJobConsumer())));
-        while (resultSet.next()) {
-            jobQueue.add(createRowListObject(resultSet));
-        }
+        int chunkRows = getChunkRows(RunSqlMultiRowInsert.getRowsPerInsert(
+                rowsPerInsert, maximumParameters, numberOfColumnsToInsert), batchSize);
+        long maximumChunkBytes = Math.max(1L, maximumQueueBytes / (2L * numberOfJobs));
         try {
-            IntStream.range(0, numberOfJobs).forEach($ -> jobQueue.add(POISON_PILL));
+            RunSqlRowBuffer chunk = nextChunk(chunkRows);
+            boolean importing = true;
+            while (importing && resultSet.next()) {
+                readRow(resultSet, chunk);
+                chunk.updateBytes();
+                if (chunk.rows == chunkRows || chunk.bytes >= maximumChunkBytes) {
+                    importing = jobQueue.put(chunk);
+                    chunk = nextChunk(chunkRows);
+                }
+            }
+            if (importing && chunk.rows > 0) {
+                jobQueue.put(chunk);
+            }
+            for (int i = 0; i < numberOfJobs; i++) {
+                jobQueue.put(POISON_PILL);
+            }
             for (Future<?> future : futures) {
                 try {
                     future.get();
@@ -109,6 +170,9 @@ public class RunSqlProcessorImportConcurrent implements Processor {
             }
             executorService.shutdown();
             executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            if (printStatistics) {
+                STATISTICS_LOGGER.info(jobQueue.getStatistics());
+            }
         } catch (final InterruptedException e) {
             LOGGER.error("Error - Import job thread interrupted.");
             throw new RuntimeException(e);
@@ -116,40 +180,91 @@ public class RunSqlProcessorImportConcurrent implements Processor {
     }
 
     void createConnectionPool() {
+        if (importTarget != null) {
+            connectionPool = importTarget.getConnectionPool();
+            return;
+        }
         RunSqlConnectionProperties.Builder builder = new RunSqlConnectionProperties.Builder();
         builder.setUrl(importUrl);
         builder.setUser(importUser);
         builder.setPassword(importPassword);
         builder.setDriver(importDriver);
         builder.setTransactionMode(transactionMode);
-        connectionPool = new RunSqlConnectionPool(builder.build());
+        connectionPool = new RunSqlConnectionPool(builder.build(), numberOfJobs);
+    }
+
+    /**
+     * Closes the pool created for this result set. A shared import target's pool stays open for
+     * the other imports and is closed with the target.
+     */
+    void closeConnectionPool() {
+        if (importTarget != null) {
+            return;
+        }
+        try {
+            connectionPool.close();
+        } catch (final SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private JobConsumer createJobConsumer() {
         return new JobConsumer(sqlStatementExecutionHook.createFreshCopy());
     }
 
-    List<Object> createRowListObject(final ResultSet resultSet) {
-        List<Object> result = new ArrayList<>();
-        for (int columnIndex = 1; columnIndex <= columnCount; columnIndex++) {
-            try {
-                result.add(resultSet.getObject(columnIndex));
-            } catch (final SQLException e) {
-                LOGGER.error("Error occurred when parsing the source data.");
-                throw new RuntimeException(e);
-            }
+    /**
+     * @return The number of rows in a chunk, the smallest whole number of batches holding at
+     * least {@link #MINIMUM_CHUNK_ROWS} rows.
+     */
+    static int getChunkRows(final int rowsPerInsert, final long batchSize) {
+        long batchRows = Math.max(1L, rowsPerInsert * batchSize);
+        long batches = (MINIMUM_CHUNK_ROWS + batchRows - 1) / batchRows;
+        return (int) Math.min(Integer.MAX_VALUE / 2, batches * batchRows);
+    }
+
+    /**
+     * @return A chunk released by the import threads, or a new one if none is free.
+     */
+    private RunSqlRowBuffer nextChunk(final int chunkRows) {
+        RunSqlRowBuffer chunk = jobQueue.reuse();
+        return chunk != null ? chunk : new RunSqlRowBuffer(binders, chunkRows, directBuffers);
+    }
+
+    void readRow(final ResultSet resultSet, final RunSqlRowBuffer chunk) {
+        try {
+            RunSqlMultiRowInsert.readRow(resultSet, binders, chunk);
+        } catch (final SQLException e) {
+            LOGGER.error("Error occurred when parsing the source data.");
+            throw new RuntimeException(e);
         }
-        return result;
     }
 
     public static class Builder extends RunSqlProcessorImport.Builder {
         private int numberOfJobs;
+        private long maximumQueueBytes = Long.MAX_VALUE;
+        private boolean printStatistics;
+        private boolean directBuffers;
 
         public Builder setNumberOfJobs(final int numberOfJobs) {
             this.numberOfJobs = numberOfJobs;
             return this;
         }
 
+        public Builder setMaximumQueueBytes(final long maximumQueueBytes) {
+            this.maximumQueueBytes = maximumQueueBytes;
+            return this;
+        }
+
+        public Builder setPrintStatistics(final boolean printStatistics) {
+            this.printStatistics = printStatistics;
+            return this;
+        }
+
+        public Builder setDirectBuffers(final boolean directBuffers) {
+            this.directBuffers = directBuffers;
+            return this;
+        }
+
         @Override
         public Processor build() {
             return new RunSqlProcessorImportConcurrent(this);
@@ -158,7 +273,7 @@ public class RunSqlProcessorImportConcurrent implements Processor {
 
     private class JobConsumer implements Runnable {
         private final SqlStatementExecutionHook sqlStatementExecutionHook;
-        private PreparedStatement preparedStatement;
+        private RunSqlMultiRowInsert multiRowInsert;
 
         private JobConsumer(final SqlStatementExecutionHook sqlStatementExecutionHook) {
             this.sqlStatementExecutionHook = sqlStatementExecutionHook;
@@ -167,37 +282,39 @@ public class RunSqlProcessorImportConcurrent implements Processor {
         @Override
         public void run() {
             try (Connection connection = connectionPool.getConnection()) {
-                int numberOfColumnsToInsert =
-                        insertColumnNames == null ? columnCount : insertColumnNames.length;
-                String insertSql = SqlCode.createInsertSql(insertTableName, insertColumnNames,
-                                                           numberOfColumnsToInsert);
-                preparedStatement = connection.prepareStatement(insertSql);
-                sqlStatementExecutionHook.beforeAllStatements(connection, preparedStatement);
+                multiRowInsert = new RunSqlMultiRowInsert(connection, sqlStatementExecutionHook,
+                                                          insertTableName, insertColumnNames,
+                                                          numberOfColumnsToInsert, rowsPerInsert,
+                                                          maximumParameters, binders,
+                                                          columnTypes);
+                sqlStatementExecutionHook
+                        .beforeAllStatements(connection, multiRowInsert.getPreparedStatement());
                 boolean loop = true;
                 while (loop) {
-                    List<Object> rowListObject = jobQueue.take();
-                    if (rowListObject == POISON_PILL) {
+                    RunSqlRowBuffer chunk = jobQueue.take();
+                    if (chunk == POISON_PILL) {
                         loop = false;
                     } else {
-                        processRowListObject(connection, rowListObject);
+                        // Release the chunk even when the insert fails, since the limit may be
+                        // shared with other imports.
+                        try {
+                            processChunk(chunk);
+                        } finally {
+                            jobQueue.release(chunk);
+                        }
                     }
                 }
-                sqlStatementExecutionHook.afterAllStatements(connection, preparedStatement);
+                multiRowInsert.finish();
             } catch (final Exception e) {
+                jobQueue.abort();
                 LOGGER.error("Error occurred during target database load.");
                 throw new RuntimeException(e);
             }
         }
 
-        void processRowListObject(final Connection connection, final List<Object> rowListObject) {
+        void processChunk(final RunSqlRowBuffer chunk) {
             try {
-                sqlStatementExecutionHook.beforeStatement(connection, preparedStatement);
-                for (int parameterIndex = 1; parameterIndex <= columnCount; parameterIndex++) {
-                    preparedStatement
-                            .setObject(parameterIndex, rowListObject.get(parameterIndex - 1));
-                }
-                preparedStatement.addBatch();
-                sqlStatementExecutionHook.afterStatement(connection, preparedStatement);
+                multiRowInsert.insertChunk(chunk);
             } catch (final SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -36,6 +36,7 @@ public abstract class RunSqlProcessorTemplate implements Processor {
     protected ResultSetMetaData resultSetMetaData;
     protected ResultSet resultSet;
     protected int columnCount;
+    protected int[] columnTypes;
     protected int currentColumnNumber;
     protected int currentRowNumber;
     protected int currentSqlType;
@@ -46,6 +47,12 @@ public abstract class RunSqlProcessorTemplate implements Processor {
         this.resultSet = resultSet;
         resultSetMetaData = resultSet.getMetaData();
         columnCount = resultSetMetaData.getColumnCount();
+        // Column types do not change between rows, so look them up once per result set rather
+        // than once per cell.
+        columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnTypes[i] = resultSetMetaData.getColumnType(i + 1);
+        }
         currentColumnNumber = 0;
         currentRowNumber = 0;
         processPreRows();
@@ -77,7 +84,7 @@ public abstract class RunSqlProcessorTemplate implements Processor {
     protected void processRow() throws SQLException {
         for (int i = 0; i < columnCount; i++) {
             currentColumnNumber = i + 1;
-            currentSqlType = resultSetMetaData.getColumnType(currentColumnNumber);
+            currentSqlType = columnTypes[i];
             processColumn();
         }
     }
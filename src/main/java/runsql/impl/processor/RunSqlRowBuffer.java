@@ -0,0 +1,296 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A columnar batch of rows read for an import. Each column gets only the lanes its {@link
+ * RunSqlParameterBinder} needs: primitive long, int and double arrays, and an object array for
+ * values with no primitive form. Strings and byte arrays are copied into a slab shared by all
+ * columns, with the offset and length of each value in the column's long lane. Nulls are kept
+ * in a bitmap.
+ * <p>
+ * The slab may be a direct {@link ByteBuffer}, keeping variable length data off the heap. A
+ * buffer is meant to be cleared and reused, so that moving rows through it allocates nothing
+ * but the values the driver returns and the values passed to it.
+ * <p>
+ * A buffer is used by one thread at a time.
+ */
+class RunSqlRowBuffer {
+    private static final int LONG_BYTES = 8;
+    private static final int INT_BYTES = 4;
+    private static final int OBJECT_REFERENCE_BYTES = 8;
+    private static final int OBJECT_BYTES = 48;
+    private static final int STRING_BYTES = 56;
+    private static final int ARRAY_BYTES = 16;
+    private static final int MINIMUM_SLAB_BYTES = 4096;
+    private final RunSqlParameterBinder[] binders;
+    private final int columns;
+    private final int capacity;
+    private final boolean direct;
+    private final long[][] longLanes;
+    private final int[][] intLanes;
+    private final double[][] doubleLanes;
+    private final Object[][] objectLanes;
+    private final long[] nullBits;
+    private final long rowBytes;
+    private ByteBuffer slab;
+    private char[] characters = new char[0];
+    private long objectBytes;
+    // The number of rows filled.
+    int rows;
+    // The estimated size of the filled rows, set by updateBytes.
+    long bytes;
+
+    /**
+     * @param binders  The binder of each column.
+     * @param capacity The number of rows the buffer holds.
+     * @param direct   True to keep strings and byte arrays in a direct byte buffer.
+     */
+    RunSqlRowBuffer(final RunSqlParameterBinder[] binders, final int capacity,
+                    final boolean direct) {
+        this.binders = binders;
+        this.columns = binders.length;
+        this.capacity = capacity;
+        this.direct = direct;
+        longLanes = new long[columns][];
+        intLanes = new int[columns][];
+        doubleLanes = new double[columns][];
+        objectLanes = new Object[columns][];
+        long laneBytes = 0;
+        for (int column = 0; column < columns; column++) {
+            RunSqlParameterBinder binder = binders[column];
+            if (binder.usesLane(RunSqlParameterBinder.LONG_LANE)) {
+                longLanes[column] = new long[capacity];
+                laneBytes += LONG_BYTES;
+            }
+            if (binder.usesLane(RunSqlParameterBinder.INT_LANE)) {
+                intLanes[column] = new int[capacity];
+                laneBytes += INT_BYTES;
+            }
+            if (binder.usesLane(RunSqlParameterBinder.DOUBLE_LANE)) {
+                doubleLanes[column] = new double[capacity];
+                laneBytes += LONG_BYTES;
+            }
+            if (binder.usesLane(RunSqlParameterBinder.OBJECT_LANE)) {
+                objectLanes[column] = new Object[capacity];
+                laneBytes += OBJECT_REFERENCE_BYTES;
+            }
+        }
+        rowBytes = laneBytes;
+        nullBits = new long[(int) (((long) capacity * columns + 63) / 64)];
+        slab = allocate(0);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Empties the buffer for reuse.
+     */
+    void clear() {
+        for (Object[] objectLane : objectLanes) {
+            if (objectLane != null) {
+                Arrays.fill(objectLane, 0, rows, null);
+            }
+        }
+        Arrays.fill(nullBits, 0);
+        slab.clear();
+        objectBytes = 0;
+        rows = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Sets {@link #bytes} to the estimated size of the filled rows: their lanes, the slab in use
+     * and the objects in the object lanes.
+     */
+    void updateBytes() {
+        bytes = rows * rowBytes + slab.position() + objectBytes;
+    }
+
+    boolean isNull(final int row, final int column) {
+        int bit = row * columns + column;
+        return (nullBits[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    void setNull(final int row, final int column, final boolean isNull) {
+        int bit = row * columns + column;
+        if (isNull) {
+            nullBits[bit >>> 6] |= 1L << bit;
+        } else {
+            nullBits[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    long getLong(final int row, final int column) {
+        return longLanes[column][row];
+    }
+
+    void setLong(final int row, final int column, final long value) {
+        longLanes[column][row] = value;
+    }
+
+    int getInt(final int row, final int column) {
+        return intLanes[column][row];
+    }
+
+    void setInt(final int row, final int column, final int value) {
+        intLanes[column][row] = value;
+    }
+
+    double getDouble(final int row, final int column) {
+        return doubleLanes[column][row];
+    }
+
+    void setDouble(final int row, final int column, final double value) {
+        doubleLanes[column][row] = value;
+    }
+
+    Object getObject(final int row, final int column) {
+        return objectLanes[column][row];
+    }
+
+    void setObject(final int row, final int column, final Object value) {
+        objectLanes[column][row] = value;
+        if (value instanceof String) {
+            objectBytes += STRING_BYTES + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            objectBytes += ARRAY_BYTES + ((byte[]) value).length;
+        } else if (value != null) {
+            objectBytes += OBJECT_BYTES;
+        }
+    }
+
+    /**
+     * Copies the characters of a string into the slab.
+     */
+    void putString(final int row, final int column, final String value) {
+        int length = value.length();
+        int offset = reserve(2 * length);
+        for (int i = 0; i < length; i++) {
+            slab.putChar(offset + 2 * i, value.charAt(i));
+        }
+        longLanes[column][row] = (long) offset << 32 | length;
+    }
+
+    String getString(final int row, final int column) {
+        long location = longLanes[column][row];
+        int offset = (int) (location >>> 32);
+        int length = (int) location;
+        if (characters.length < length) {
+            characters = new char[Math.max(length, 2 * characters.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            characters[i] = slab.getChar(offset + 2 * i);
+        }
+        return new String(characters, 0, length);
+    }
+
+    /**
+     * Copies a byte array into the slab.
+     */
+    void putBytes(final int row, final int column, final byte[] value) {
+        int offset = reserve(value.length);
+        ByteBuffer duplicate = slab.duplicate();
+        duplicate.position(offset);
+        duplicate.put(value);
+        longLanes[column][row] = (long) offset << 32 | value.length;
+    }
+
+    byte[] getBytes(final int row, final int column) {
+        long location = longLanes[column][row];
+        byte[] value = new byte[(int) location];
+        ByteBuffer duplicate = slab.duplicate();
+        duplicate.position((int) (location >>> 32));
+        duplicate.get(value);
+        return value;
+    }
+
+    /**
+     * Copies a row into another buffer with the same binders.
+     */
+    void copyRowTo(final int row, final RunSqlRowBuffer target, final int targetRow) {
+        for (int column = 0; column < columns; column++) {
+            boolean isNull = isNull(row, column);
+            target.setNull(targetRow, column, isNull);
+            if (isNull) {
+                continue;
+            }
+            RunSqlParameterBinder binder = binders[column];
+            if (binder.usesLane(RunSqlParameterBinder.SLAB)) {
+                long location = longLanes[column][row];
+                int length = (int) location;
+                int byteLength = binder == RunSqlParameterBinder.STRING ? 2 * length : length;
+                int targetOffset = target.reserve(byteLength);
+                ByteBuffer source = slab.duplicate();
+                int offset = (int) (location >>> 32);
+                source.limit(offset + byteLength).position(offset);
+                ByteBuffer destination = target.slab.duplicate();
+                destination.position(targetOffset);
+                destination.put(source);
+                target.longLanes[column][targetRow] = (long) targetOffset << 32 | length;
+                continue;
+            }
+            if (longLanes[column] != null) {
+                target.longLanes[column][targetRow] = longLanes[column][row];
+            }
+            if (intLanes[column] != null) {
+                target.intLanes[column][targetRow] = intLanes[column][row];
+            }
+            if (doubleLanes[column] != null) {
+                target.doubleLanes[column][targetRow] = doubleLanes[column][row];
+            }
+            if (objectLanes[column] != null) {
+                target.setObject(targetRow, column, objectLanes[column][row]);
+            }
+        }
+    }
+
+    /**
+     * Reserves space at the end of the slab, growing it when full.
+     *
+     * @return The offset of the space.
+     */
+    private int reserve(final int length) {
+        int offset = slab.position();
+        if (slab.remaining() < length) {
+            long needed = (long) offset + length;
+            if (needed > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Row buffer slab exceeds 2 GB.");
+            }
+            ByteBuffer grown = allocate((int) Math.min(Integer.MAX_VALUE,
+                                                       Math.max(needed, 2L * slab.capacity())));
+            slab.flip();
+            grown.put(slab);
+            slab = grown;
+        }
+        slab.position(offset + length);
+        return offset;
+    }
+
+    private ByteBuffer allocate(final int minimumBytes) {
+        int size = Math.max(minimumBytes, MINIMUM_SLAB_BYTES);
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.arguments.Parameter;
+import runsql.impl.exceptions.RunSqlParseException;
+import runsql.impl.output.RunSqlOutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Formats date, time and timestamp values from their epoch milliseconds and nanoseconds,
+ * writing the digits straight to an output sink.
+ * <p>
+ * Patterns support the letters y (year, yy for two digits), M (month), d (day), H (hour of
+ * day), m (minute), s (second) and S (fraction of a second, one to nine digits). Repeating a
+ * letter pads the field with zeros. Text in single quotes and characters other than letters are
+ * copied as is; two single quotes write one. Fields are computed in the default time zone on the
+ * proleptic Gregorian calendar.
+ * <p>
+ * The built in formats, used when no pattern is given, match the toString methods of {@link
+ * java.sql.Date}, {@link java.sql.Time} and {@link java.sql.Timestamp}. Those use the Julian
+ * calendar before the Gregorian cutover, so {@link #canFormat(long)} rejects such values.
+ * <p>
+ * Instances keep the fields of the value being formatted and are not thread safe.
+ */
+class RunSqlTemporalFormat {
+    private static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int[] NANOS_DIVISORS =
+            {1000000000, 100000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1};
+    private static final int YEAR = 0;
+    private static final int TWO_DIGIT_YEAR = 1;
+    private static final int MONTH = 2;
+    private static final int DAY = 3;
+    private static final int HOUR = 4;
+    private static final int MINUTE = 5;
+    private static final int SECOND = 6;
+    private static final int FRACTION = 7;
+    // A dot followed by the nanoseconds without trailing zeros, as Timestamp.toString writes.
+    private static final int TRIMMED_FRACTION = 8;
+    private static final int LITERAL = 9;
+    private final int[] fields;
+    private final int[] widths;
+    private final String[] literals;
+    private final boolean builtIn;
+    private final String characters;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private long year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+    private ByteArrayOutputStream formatBytes;
+    private RunSqlOutputSink formatSink;
+
+    private RunSqlTemporalFormat(final List<Integer> fields, final List<Integer> widths,
+                                 final List<String> literals, final boolean builtIn) {
+        this.fields = fields.stream().mapToInt(Integer::intValue).toArray();
+        this.widths = widths.stream().mapToInt(Integer::intValue).toArray();
+        this.literals = literals.toArray(new String[0]);
+        this.builtIn = builtIn;
+        StringBuilder characters = new StringBuilder("0123456789-");
+        for (int i = 0; i < this.fields.length; i++) {
+            if (this.fields[i] == LITERAL) {
+                characters.append(this.literals[i]);
+            } else if (this.fields[i] == TRIMMED_FRACTION) {
+                characters.append('.');
+            }
+        }
+        this.characters = characters.toString();
+    }
+
+    /**
+     * Compiles a pattern.
+     *
+     * @param pattern   The pattern.
+     * @param parameter The option the pattern came from, for error messages.
+     * @return The format.
+     * @throws RunSqlParseException If the pattern uses an unsupported letter or has an unclosed
+     *                              quote.
+     */
+    static RunSqlTemporalFormat compile(final String pattern,
+                                        final Parameter parameter) throws RunSqlParseException {
+        List<Integer> fields = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                int end = i + 1;
+                while (true) {
+                    if (end == pattern.length()) {
+                        throw invalidPattern(parameter, pattern);
+                    }
+                    if (pattern.charAt(end) == '\'') {
+                        if (end + 1 < pattern.length() && pattern.charAt(end + 1) == '\'') {
+                            literal.append('\'');
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    literal.append(pattern.charAt(end++));
+                }
+                if (end == i + 1) {
+                    literal.append('\'');
+                }
+                i = end + 1;
+                continue;
+            }
+            if (!Character.isLetter(c)) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            int field;
+            switch (c) {
+                case 'y':
+                    field = count == 2 ? TWO_DIGIT_YEAR : YEAR;
+                    break;
+                case 'M':
+                    field = MONTH;
+                    break;
+                case 'd':
+                    field = DAY;
+                    break;
+                case 'H':
+                    field = HOUR;
+                    break;
+                case 'm':
+                    field = MINUTE;
+                    break;
+                case 's':
+                    field = SECOND;
+                    break;
+                case 'S':
+                    if (count > 9) {
+                        throw invalidPattern(parameter, pattern);
+                    }
+                    field = FRACTION;
+                    break;
+                default:
+                    throw invalidPattern(parameter, pattern);
+            }
+            addLiteral(literal, fields, widths, literals);
+            fields.add(field);
+            widths.add(count);
+            literals.add(null);
+            i += count;
+        }
+        addLiteral(literal, fields, widths, literals);
+        return new RunSqlTemporalFormat(fields, widths, literals, false);
+    }
+
+    /**
+     * Creates the format matching the toString method of the value read for the sql type.
+     */
+    static RunSqlTemporalFormat builtIn(final int sqlType) {
+        String pattern;
+        switch (sqlType) {
+            case Types.DATE:
+                pattern = "yyyy-MM-dd";
+                break;
+            case Types.TIME:
+                pattern = "HH:mm:ss";
+                break;
+            default:
+                pattern = "yyyy-MM-dd HH:mm:ss";
+        }
+        RunSqlTemporalFormat format = compile(pattern, null);
+        List<Integer> fields = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        for (int i = 0; i < format.fields.length; i++) {
+            fields.add(format.fields[i]);
+            widths.add(format.widths[i]);
+            literals.add(format.literals[i]);
+        }
+        if (sqlType == Types.TIMESTAMP) {
+            fields.add(TRIMMED_FRACTION);
+            widths.add(9);
+            literals.add(null);
+        }
+        return new RunSqlTemporalFormat(fields, widths, literals, true);
+    }
+
+    private static void addLiteral(final StringBuilder literal, final List<Integer> fields,
+                                   final List<Integer> widths, final List<String> literals) {
+        if (literal.length() > 0) {
+            fields.add(LITERAL);
+            widths.add(0);
+            literals.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    private static RunSqlParseException invalidPattern(final Parameter parameter,
+                                                       final String pattern) {
+        return new RunSqlParseException(
+                String.format("Invalid %s: %s.", parameter.getLongName(), pattern), null);
+    }
+
+    /**
+     * @return Every character a formatted value may contain.
+     */
+    String getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return False if the value must be written with its toString method instead.
+     */
+    boolean canFormat(final long epochMillis) {
+        return !builtIn || epochMillis >= GREGORIAN_CUTOVER_MILLIS;
+    }
+
+    void write(final RunSqlOutputSink outputSink, final long epochMillis, final int nanos) {
+        computeFields(epochMillis);
+        for (int i = 0; i < fields.length; i++) {
+            int width = widths[i];
+            switch (fields[i]) {
+                case YEAR:
+                    if (year < 0) {
+                        outputSink.writeByte('-');
+                    }
+                    outputSink.writePadded(Math.abs(year), width);
+                    break;
+                case TWO_DIGIT_YEAR:
+                    outputSink.writePadded(Math.floorMod(year, 100), 2);
+                    break;
+                case MONTH:
+                    outputSink.writePadded(month, width);
+                    break;
+                case DAY:
+                    outputSink.writePadded(day, width);
+                    break;
+                case HOUR:
+                    outputSink.writePadded(hour, width);
+                    break;
+                case MINUTE:
+                    outputSink.writePadded(minute, width);
+                    break;
+                case SECOND:
+                    outputSink.writePadded(second, width);
+                    break;
+                case FRACTION:
+                    outputSink.writePadded(nanos / NANOS_DIVISORS[width], width);
+                    break;
+                case TRIMMED_FRACTION:
+                    outputSink.writeByte('.');
+                    int digits = 9;
+                    int fraction = nanos;
+                    while (digits > 1 && fraction % 10 == 0) {
+                        fraction /= 10;
+                        digits--;
+                    }
+                    outputSink.writePadded(fraction, digits);
+                    break;
+                default:
+                    outputSink.write(literals[i]);
+            }
+        }
+    }
+
+    /**
+     * Formats the value into a String, for values that the processor has to quote or escape.
+     */
+    String format(final long epochMillis, final int nanos) {
+        if (formatSink == null) {
+            formatBytes = new ByteArrayOutputStream();
+            formatSink = new RunSqlOutputSink(formatBytes, 64, StandardCharsets.UTF_8);
+        }
+        formatBytes.reset();
+        write(formatSink, epochMillis, nanos);
+        formatSink.flush();
+        return new String(formatBytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits the instant into calendar fields in the default time zone, using the civil from
+     * days algorithm rather than a Calendar so that nothing is allocated.
+     */
+    private void computeFields(final long epochMillis) {
+        long localMillis = epochMillis + timeZone.getOffset(epochMillis);
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / 1000);
+        hour = secondOfDay / 3600;
+        minute = secondOfDay / 60 % 60;
+        second = secondOfDay % 60;
+        long days = epochDay + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    }
+}
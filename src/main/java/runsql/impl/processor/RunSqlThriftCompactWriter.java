@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A minimal writer for the Thrift compact protocol, enough to write Parquet page headers and file
+ * metadata without a dependency on the Thrift runtime.
+ * <p>
+ * Structs are written by calling the field methods in increasing field id order between {@link
+ * #structBegin()} and {@link #structEnd()}.
+ */
+class RunSqlThriftCompactWriter {
+    static final int TYPE_BOOLEAN_TRUE = 1;
+    static final int TYPE_BOOLEAN_FALSE = 2;
+    static final int TYPE_BYTE = 3;
+    static final int TYPE_I32 = 5;
+    static final int TYPE_I64 = 6;
+    static final int TYPE_BINARY = 8;
+    static final int TYPE_LIST = 9;
+    static final int TYPE_STRUCT = 12;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final Deque<Integer> lastFieldIds = new ArrayDeque<>();
+    private int lastFieldId;
+
+    byte[] toByteArray() {
+        return output.toByteArray();
+    }
+
+    void reset() {
+        output.reset();
+        lastFieldIds.clear();
+        lastFieldId = 0;
+    }
+
+    void structBegin() {
+        lastFieldIds.push(lastFieldId);
+        lastFieldId = 0;
+    }
+
+    void structEnd() {
+        output.write(0);
+        lastFieldId = lastFieldIds.pop();
+    }
+
+    void fieldBoolean(final int id, final boolean value) {
+        fieldHeader(id, value ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE);
+    }
+
+    void fieldByte(final int id, final int value) {
+        fieldHeader(id, TYPE_BYTE);
+        output.write(value);
+    }
+
+    void fieldI32(final int id, final int value) {
+        fieldHeader(id, TYPE_I32);
+        writeI32(value);
+    }
+
+    void fieldI64(final int id, final long value) {
+        fieldHeader(id, TYPE_I64);
+        writeI64(value);
+    }
+
+    void fieldString(final int id, final String value) {
+        fieldHeader(id, TYPE_BINARY);
+        writeString(value);
+    }
+
+    /**
+     * Starts a struct valued field. Close it with {@link #structEnd()}.
+     */
+    void fieldStructBegin(final int id) {
+        fieldHeader(id, TYPE_STRUCT);
+        structBegin();
+    }
+
+    /**
+     * Starts a list valued field. Write the elements with {@link #writeI32}, {@link
+     * #writeString} or {@link #structBegin()}.
+     */
+    void fieldListBegin(final int id, final int elementType, final int size) {
+        fieldHeader(id, TYPE_LIST);
+        if (size < 15) {
+            output.write(size << 4 | elementType);
+        } else {
+            output.write(0xf0 | elementType);
+            writeVarint(size);
+        }
+    }
+
+    void writeI32(final int value) {
+        writeVarint((long) (value << 1 ^ value >> 31) & 0xffffffffL);
+    }
+
+    void writeI64(final long value) {
+        writeVarint(value << 1 ^ value >> 63);
+    }
+
+    void writeString(final String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private void fieldHeader(final int id, final int type) {
+        int delta = id - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            output.write(delta << 4 | type);
+        } else {
+            output.write(type);
+            writeI32(id);
+        }
+        lastFieldId = id;
+    }
+
+    private void writeVarint(final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7fL) != 0) {
+            output.write((int) (remaining & 0x7f | 0x80));
+            remaining >>>= 7;
+        }
+        output.write((int) remaining);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.util;
+
+import runsql.impl.arguments.Parameter;
+import runsql.impl.exceptions.RunSqlParseException;
+
+/**
+ * When printing results, controls how binary values are written.
+ * <p>
+ * ARRAY writes the bytes as a list of signed decimal numbers, such as [1, -2].
+ * <p>
+ * HEX writes two lowercase hexadecimal digits per byte.
+ * <p>
+ * BASE64 writes the bytes in standard base64 with padding.
+ * <p>
+ * HEX and BASE64 values are read from the result set as a stream and encoded in fixed size
+ * chunks, so large values do not need to fit in memory.
+ */
+public enum BinaryFormat {
+    ARRAY, HEX, BASE64;
+
+    public static BinaryFormat getBinaryFormat(
+            final String binaryFormatString) throws RunSqlParseException {
+        for (BinaryFormat binaryFormat : BinaryFormat.values()) {
+            if (binaryFormat.toString().equalsIgnoreCase(binaryFormatString)) {
+                return binaryFormat;
+            }
+        }
+        throw new RunSqlParseException(
+                String.format("Invalid %s: %s.", Parameter.BINARY_FORMAT.getLongName(),
+                              binaryFormatString), null);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.util;
+
+import runsql.impl.arguments.Parameter;
+import runsql.impl.exceptions.RunSqlParseException;
+
+/**
+ * Controls how RunSQL compresses the results it writes.
+ * <p>
+ * NONE writes the results as is.
+ * <p>
+ * GZIP compresses blocks of the output in parallel and writes them as a series of concatenated
+ * gzip members, which standard gzip tools read as a single file.
+ */
+public enum CompressionMode {
+    NONE, GZIP;
+
+    public static CompressionMode getCompressionMode(
+            final String compressionModeString) throws RunSqlParseException {
+        for (CompressionMode compressionMode : CompressionMode.values()) {
+            if (compressionMode.toString().equalsIgnoreCase(compressionModeString)) {
+                return compressionMode;
+            }
+        }
+        throw new RunSqlParseException(
+                String.format("Invalid %s: %s.", Parameter.COMPRESS.getLongName(),
+                              compressionModeString), null);
+    }
+}
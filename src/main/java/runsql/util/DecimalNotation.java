@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.util;
+
+import runsql.impl.arguments.Parameter;
+import runsql.impl.exceptions.RunSqlParseException;
+
+/**
+ * When printing results, controls how DECIMAL and NUMERIC values are written.
+ * <p>
+ * DEFAULT writes the value as {@link java.math.BigDecimal#toString()} does, which uses an
+ * exponent for very small values and values with a negative scale, such as 1E+3.
+ * <p>
+ * PLAIN never uses an exponent, such as 1000 or 0.00000001.
+ * <p>
+ * SCIENTIFIC always uses an exponent with one digit before the decimal point, keeping every
+ * digit of the value, such as 1.2340E+2 for 123.40.
+ */
+public enum DecimalNotation {
+    DEFAULT, PLAIN, SCIENTIFIC;
+
+    public static DecimalNotation getDecimalNotation(
+            final String decimalNotationString) throws RunSqlParseException {
+        for (DecimalNotation decimalNotation : DecimalNotation.values()) {
+            if (decimalNotation.toString().equalsIgnoreCase(decimalNotationString)) {
+                return decimalNotation;
+            }
+        }
+        throw new RunSqlParseException(
+                String.format("Invalid %s: %s.", Parameter.DECIMAL_NOTATION.getLongName(),
+                              decimalNotationString), null);
+    }
+}
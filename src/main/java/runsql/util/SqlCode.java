@@ -27,7 +27,19 @@ public final class SqlCode {
     public static String createInsertSql(final String insertTableName,
                                          final String[] insertColumnNames,
                                          final int numberOfColumnsToInsert) {
+        return createInsertSql(insertTableName, insertColumnNames, numberOfColumnsToInsert, 1);
+    }
+
+    /**
+     * Creates an insert statement with a multi-row values list, such as {@code insert into table
+     * values (?, ?), (?, ?)} for two columns and two rows.
+     */
+    public static String createInsertSql(final String insertTableName,
+                                         final String[] insertColumnNames,
+                                         final int numberOfColumnsToInsert,
+                                         final int numberOfRows) {
         assert numberOfColumnsToInsert > 0;
+        assert numberOfRows > 0;
         assert insertTableName != null;
         StringBuilder stringBuilder = new StringBuilder("insert into ");
         stringBuilder.append(insertTableName);
@@ -43,14 +55,20 @@ public final class SqlCode {
             }
             stringBuilder.append(") ");
         }
-        stringBuilder.append("values (");
-        for (int i = 0; i < numberOfColumnsToInsert; i++) {
-            stringBuilder.append("?");
-            if (i < numberOfColumnsToInsert - 1) {
+        stringBuilder.append("values ");
+        for (int row = 0; row < numberOfRows; row++) {
+            if (row > 0) {
                 stringBuilder.append(", ");
             }
+            stringBuilder.append("(");
+            for (int i = 0; i < numberOfColumnsToInsert; i++) {
+                stringBuilder.append("?");
+                if (i < numberOfColumnsToInsert - 1) {
+                    stringBuilder.append(", ");
+                }
+            }
+            stringBuilder.append(")");
         }
-        stringBuilder.append(")");
         return stringBuilder.toString();
     }
 }
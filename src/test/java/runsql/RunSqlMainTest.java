@@ -22,6 +22,7 @@ package runsql;
 
 import runsql.impl.exceptions.RequiredArgumentException;
 import runsql.impl.exceptions.RunSqlParseException;
+import runsql.impl.processor.RunSqlPgCopyBinaryProcessorTest;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,19 +30,28 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -156,6 +166,26 @@ public class RunSqlMainTest {
         file.delete();
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {2, 4, 8})
+    public void testMultipleSqlStatementsMultipleJobsInOrder(final int numberOfJobs)
+            throws Exception {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            sql.append(i % 3 == 0 ? "select * from person;" : i % 3 == 1 ?
+                    "select last_name, " + i + " n from person;" : "set schema public;");
+        }
+        File expectedFile = File.createTempFile("multiple-jobs", "tmp");
+        File file = File.createTempFile("multiple-jobs", "tmp");
+        callRunSqlMain("-outputfilepath", expectedFile.getAbsolutePath(), "-sql", sql.toString());
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql", sql.toString(),
+                       "-numberofjobs", String.valueOf(numberOfJobs), "-spillthreshold", "64");
+        assertArrayEquals(Files.readAllBytes(expectedFile.toPath()),
+                          Files.readAllBytes(file.toPath()));
+        expectedFile.delete();
+        file.delete();
+    }
+
     @Test
     public void testMultipleSqlStatementsWithSplitter() throws Exception {
         File file = File.createTempFile("multiple-sql-statements", "tmp");
@@ -243,6 +273,222 @@ public class RunSqlMainTest {
         file.delete();
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    public void testCompressGzip(final int compressThreads) throws Exception {
+        File file = File.createTempFile("gzip-test", "tmp");
+        File uncompressedFile = File.createTempFile("gzip-test", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        callRunSqlMain("-outputfilepath", outputFilePath, "-sql",
+                       "select person.*, 'escaped \" quote' x from person;",
+                       "-fileformat", "csv", "-compress", "gzip", "-compressblocksize", "16",
+                       "-compressthreads", String.valueOf(compressThreads));
+        try (InputStream inputStream = new GZIPInputStream(new FileInputStream(file));
+             OutputStream outputStream = new FileOutputStream(uncompressedFile)) {
+            IOUtils.copy(inputStream, outputStream);
+        }
+        assertTrue(TestUtils.doesFileMatchResourceFile(uncompressedFile.getAbsolutePath(),
+                                                       "MainTestCsvExpectedResults.csv"));
+        file.delete();
+        uncompressedFile.delete();
+    }
+
+    @Test
+    public void testWriterStatistics() throws Exception {
+        File file = File.createTempFile("writer-statistics-test", "tmp");
+        PrintStream err = System.err;
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(byteArrayOutputStream, true));
+        try {
+            callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                           "select * from person;", "-fileformat", "csv", "-writerbuffers", "2",
+                           "-writerstatistics", "t");
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(byteArrayOutputStream.toString().startsWith("Writer wrote "));
+        file.delete();
+    }
+
+    @Test
+    public void testWriterBuffers() throws Exception {
+        File file = File.createTempFile("writer-test", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        callRunSqlMain("-outputfilepath", outputFilePath, "-sql",
+                       "select person.*, 'escaped \" quote' x from person;",
+                       "-fileformat", "csv", "-writerbuffers", "2", "-writerbuffersize", "16");
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "MainTestCsvExpectedResults.csv"));
+        file.delete();
+    }
+
+    @Test
+    public void testWriterBuffersTooFew() {
+        assertThrows(RunSqlParseException.class,
+                     () -> callRunSqlMain("-sql", "select * from person;", "-writerbuffers", "1"));
+    }
+
+    @Test
+    public void testSplitRows() throws Exception {
+        File directory = Files.createTempDirectory("split-test").toFile();
+        String outputFilePath = new File(directory, "people.csv").getAbsolutePath();
+        callRunSqlMain("-outputfilepath", outputFilePath, "-sql",
+                       "select person.*, 'escaped \" quote' x from person;",
+                       "-fileformat", "csv", "-splitrows", "1");
+        List<String> expectedLines;
+        try (InputStream inputStream = TestUtils.class
+                .getResourceAsStream("MainTestCsvExpectedResults.csv")) {
+            expectedLines = IOUtils.readLines(inputStream, Charset.defaultCharset());
+        }
+        for (int part = 1; part <= 2; part++) {
+            File partFile = new File(directory, String.format("people.%05d.csv", part));
+            List<String> lines;
+            try (InputStream inputStream = new FileInputStream(partFile)) {
+                lines = IOUtils.readLines(inputStream, Charset.defaultCharset());
+            }
+            assertEquals(Arrays.asList(expectedLines.get(0), expectedLines.get(part)), lines);
+            partFile.delete();
+        }
+        assertEquals(0, directory.list().length);
+        directory.delete();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2})
+    public void testOutputFilePerStatement(final int numberOfJobs) throws Exception {
+        File directory = Files.createTempDirectory("per-statement-test").toFile();
+        String outputFilePath = new File(directory, "people_{n}.csv").getAbsolutePath();
+        String sql = "select person.*, 'escaped \" quote' x from person;";
+        callRunSqlMain("-outputfilepath", outputFilePath, "-sql",
+                       sql + "set schema public;" + sql, "-fileformat", "csv",
+                       "-numberofjobs", String.valueOf(numberOfJobs));
+        for (int statement : new int[]{1, 3}) {
+            File statementFile = new File(directory, "people_" + statement + ".csv");
+            assertTrue(TestUtils.doesFileMatchResourceFile(statementFile.getAbsolutePath(),
+                                                           "MainTestCsvExpectedResults.csv"));
+            statementFile.delete();
+        }
+        assertEquals(0, directory.list().length);
+        directory.delete();
+    }
+
+    @Test
+    public void testBinaryFormatHex() throws Exception {
+        File file = File.createTempFile("binary-format-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select cast(X'00ff10' as varbinary(10)) b from person where person_id = 1;",
+                       "-fileformat", "csv", "-binaryformat", "hex");
+        assertEquals(Arrays.asList("\"B\"", "\"00ff10\""), Files.readAllLines(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testClobStreaming() throws Exception {
+        File file = File.createTempFile("clob-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select cast(repeat('a\"b,', 30000) as clob) c from person " +
+                               "where person_id = 1;", "-fileformat", "csv");
+        StringBuilder expected = new StringBuilder("\"");
+        for (int i = 0; i < 30000; i++) {
+            expected.append("a\"\"b,");
+        }
+        expected.append('"');
+        assertEquals(Arrays.asList("\"C\"", expected.toString()),
+                     Files.readAllLines(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        File file = File.createTempFile("jsonl-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select person_id, first_name, is_employed, last_login from person;",
+                       "-fileformat", "jsonl");
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(Arrays.asList(
+                "{\"PERSON_ID\":1,\"FIRST_NAME\":\"firstone\",\"IS_EMPLOYED\":true," +
+                        "\"LAST_LOGIN\":null}",
+                "{\"PERSON_ID\":2,\"FIRST_NAME\":\"firsttwo\",\"IS_EMPLOYED\":true," +
+                        "\"LAST_LOGIN\":\"2008-08-08 20:08:08.0\"}"), lines);
+        file.delete();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"array", "hex", "base64"})
+    public void testJsonLinesBlob(final String binaryFormat) throws Exception {
+        File file = File.createTempFile("jsonl-blob-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select cast(X'0102ff' as blob) b from person where person_id = 1;",
+                       "-fileformat", "jsonl", "-binaryformat", binaryFormat);
+        assertEquals(Arrays.asList("{\"B\":\"AQL/\"}"), Files.readAllLines(file.toPath()));
+        file.delete();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"array", "hex", "base64"})
+    public void testPgCopyBlob(final String binaryFormat) throws Exception {
+        File file = File.createTempFile("pgcopy-blob-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select cast(X'0102ff' as blob) b from person where person_id = 1;",
+                       "-fileformat", "pgcopy", "-binaryformat", binaryFormat);
+        assertEquals(Arrays.asList("\\\\x0102ff"), Files.readAllLines(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testPgCopy() throws Exception {
+        File file = File.createTempFile("pgcopy-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql", "select * from person;",
+                       "-fileformat", "pgcopy");
+        assertEquals(Arrays.asList("1\tfirstone\tlastone\t2000-01-01\tt\t\\N",
+                                   "2\tfirsttwo\tlasttwo\t2000-02-01\tt\t2008-08-08 20:08:08.0"),
+                     Files.readAllLines(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testPgCopyBinary() throws Exception {
+        File file = File.createTempFile("pgcopybinary-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql", "select * from person;",
+                       "-fileformat", "pgcopybinary");
+        List<byte[][]> rows =
+                RunSqlPgCopyBinaryProcessorTest.readPgCopy(Files.readAllBytes(file.toPath()));
+        assertEquals(2, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(6, rows.get(i).length);
+            assertEquals(i + 1, ByteBuffer.wrap(rows.get(i)[0]).getInt());
+        }
+        assertEquals("firsttwo", new String(rows.get(1)[1], StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[]{1}, rows.get(1)[4]);
+        assertEquals(null, rows.get(0)[5]);
+        file.delete();
+    }
+
+    @Test
+    public void testArrow() throws Exception {
+        File file = File.createTempFile("arrow-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql", "select * from person;",
+                       "-fileformat", "arrow", "-arrowbatchsize", "1");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertArrayEquals(new byte[]{-1, -1, -1, -1}, Arrays.copyOfRange(bytes, 0, 4));
+        assertArrayEquals(new byte[]{-1, -1, -1, -1, 0, 0, 0, 0},
+                          Arrays.copyOfRange(bytes, bytes.length - 8, bytes.length));
+        assertEquals(0, bytes.length % 8);
+        file.delete();
+    }
+
+    @Test
+    public void testParquet() throws Exception {
+        File file = File.createTempFile("parquet-test", "tmp");
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql", "select * from person;",
+                       "-fileformat", "parquet", "-parquetrowgroupsize", "1");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] magic = "PAR1".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(magic, Arrays.copyOfRange(bytes, 0, 4));
+        assertArrayEquals(magic, Arrays.copyOfRange(bytes, bytes.length - 4, bytes.length));
+        file.delete();
+    }
+
     @Test
     public void testCsvOverride() throws Exception {
         File file = File.createTempFile("csv-test", "tmp");
@@ -313,6 +559,27 @@ public class RunSqlMainTest {
         file.delete();
     }
 
+    @Test
+    public void testInsertsRowsPerInsert() throws Exception {
+        File insertsFile = File.createTempFile("rows-per-insert", "tmp");
+        File file = File.createTempFile("rows-per-insert-csv", "tmp");
+        callRunSqlMain("-tablename", "person", "-outputfilepath", insertsFile.getAbsolutePath(),
+                       "-fileformat", "inserts", "-rowsperinsert", "2");
+        List<String> lines = Files.readAllLines(insertsFile.toPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(","));
+        assertTrue(lines.get(1).endsWith(";"));
+        callRunSqlMain("-sql", "delete from person;");
+        callRunSqlMain("-inputfilepath", insertsFile.getAbsolutePath());
+        callRunSqlMain("-outputfilepath", file.getAbsolutePath(), "-sql",
+                       "select person.*, 'escaped \" quote' x from person order by person_id;",
+                       "-fileformat", "csv");
+        assertTrue(TestUtils.doesFileMatchResourceFile(file.getAbsolutePath(),
+                                                       "MainTestCsvExpectedResults.csv"));
+        insertsFile.delete();
+        file.delete();
+    }
+
     @Test
     public void testPrintSqlStream() throws Exception {
         File file = File.createTempFile("print-sql", "tmp");
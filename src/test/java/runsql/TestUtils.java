@@ -48,6 +48,7 @@ public class TestUtils {
             {
                 final int colNum = 1;
                 Mockito.when(resultSetMetaData.getColumnType(colNum)).thenReturn(Types.INTEGER);
+                Mockito.when(resultSetMetaData.isSigned(colNum)).thenReturn(true);
                 final String colName = "id";
                 Mockito.when(resultSetMetaData.getColumnName(colNum)).thenReturn(colName);
                 final int returnVal = 1;
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RunSqlPartitionedJobProducerTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void testGetNumericBounds() {
+        assertEquals(Arrays.asList("3", "5"), RunSqlPartitionedJobProducer
+                .getNumericBounds(BigDecimal.ONE, BigDecimal.valueOf(7), 3));
+        // Ranges narrower than one are dropped for integer keys.
+        assertEquals(Arrays.asList("2", "3"), RunSqlPartitionedJobProducer
+                .getNumericBounds(BigDecimal.ONE, BigDecimal.valueOf(3), 5));
+        assertEquals(Collections.emptyList(), RunSqlPartitionedJobProducer
+                .getNumericBounds(BigDecimal.TEN, BigDecimal.TEN, 4));
+        assertEquals(Arrays.asList("-0.50", "0.00", "0.50"), RunSqlPartitionedJobProducer
+                .getNumericBounds(new BigDecimal("-1.00"), BigDecimal.ONE, 4));
+    }
+
+    @Test
+    public void testGetTemporalBounds() {
+        assertEquals(Arrays.asList("{d '2000-01-03'}", "{d '2000-01-05'}"),
+                     RunSqlPartitionedJobProducer.getTemporalBounds(
+                             Date.valueOf("2000-01-01"), Date.valueOf("2000-01-06"), DAY, 3,
+                             bound -> "{d '" + new Date(bound) + "'}"));
+        assertEquals(Collections.singletonList("{d '2000-01-02'}"),
+                     RunSqlPartitionedJobProducer.getTemporalBounds(
+                             Date.valueOf("2000-01-01"), Date.valueOf("2000-01-02"), DAY, 8,
+                             bound -> "{d '" + new Date(bound) + "'}"));
+        assertEquals(Collections.emptyList(), RunSqlPartitionedJobProducer
+                .getTemporalBounds(null, null, 1, 3, Long::toString));
+    }
+
+    @Test
+    public void testCreatePredicates() {
+        assertEquals(Arrays.asList("(id < 3 or id is null)", "id >= 3 and id < 5", "id >= 5"),
+                     RunSqlPartitionedJobProducer.createPredicates("id", Arrays.asList("3", "5")));
+        assertEquals(Collections.emptyList(), RunSqlPartitionedJobProducer
+                .createPredicates("id", Collections.emptyList()));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlAsyncOutputStreamTest {
+    @Test
+    public void testWriteInOrder() throws IOException {
+        Random random = new Random(11);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlAsyncOutputStream asyncOutputStream =
+                new RunSqlAsyncOutputStream(byteArrayOutputStream, 3, 100);
+        for (int i = 0; i < 5000; i++) {
+            byte[] row = ("row " + i + "," + random.nextInt() + "\n").getBytes();
+            asyncOutputStream.write(row);
+            expected.write(row);
+            if (i % 7 == 0) {
+                int b = random.nextInt(256);
+                asyncOutputStream.write(b);
+                expected.write(b);
+            }
+            if (i % 500 == 0) {
+                asyncOutputStream.flush();
+                assertArrayEquals(expected.toByteArray(), byteArrayOutputStream.toByteArray());
+            }
+        }
+        byte[] large = new byte[1000];
+        random.nextBytes(large);
+        asyncOutputStream.write(large);
+        expected.write(large);
+        asyncOutputStream.finish();
+        assertArrayEquals(expected.toByteArray(), byteArrayOutputStream.toByteArray());
+        assertEquals(expected.size(), asyncOutputStream.getBytesWritten());
+    }
+
+    @Test
+    public void testStallWhenWriterIsSlow() throws IOException {
+        OutputStream slowOutputStream = new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) {
+                try {
+                    Thread.sleep(20);
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        RunSqlAsyncOutputStream asyncOutputStream =
+                new RunSqlAsyncOutputStream(slowOutputStream, 2, 4);
+        asyncOutputStream.write(new byte[20]);
+        asyncOutputStream.finish();
+        // Five buffers at 20 ms each, only one of which overlaps with filling the next buffer.
+        assertTrue(asyncOutputStream.getStallNanos() >= 60_000_000L);
+        assertTrue(asyncOutputStream.getWriterBusyNanos() >= 100_000_000L);
+        assertEquals(20, asyncOutputStream.getBytesWritten());
+    }
+
+    @Test
+    public void testWriterException() throws IOException {
+        OutputStream failingOutputStream = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        RunSqlAsyncOutputStream asyncOutputStream =
+                new RunSqlAsyncOutputStream(failingOutputStream, 2, 8);
+        asyncOutputStream.write(new byte[8]);
+        IOException exception = assertThrows(IOException.class, asyncOutputStream::flush);
+        assertEquals("disk full", exception.getMessage());
+        assertThrows(IOException.class, () -> asyncOutputStream.write(new byte[100]));
+    }
+
+    @Test
+    public void testFinishAndClose() throws IOException {
+        boolean[] closed = new boolean[1];
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        RunSqlAsyncOutputStream asyncOutputStream =
+                new RunSqlAsyncOutputStream(byteArrayOutputStream, 2, 1024);
+        asyncOutputStream.write("abc".getBytes());
+        assertEquals(0, byteArrayOutputStream.size());
+        asyncOutputStream.finish();
+        assertEquals("abc", byteArrayOutputStream.toString());
+        assertFalse(closed[0]);
+        asyncOutputStream.finish();
+        asyncOutputStream.close();
+        assertTrue(closed[0]);
+    }
+}
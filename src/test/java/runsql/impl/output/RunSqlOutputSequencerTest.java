@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlOutputSequencerTest {
+    private static RunSqlSpillOutputStream buffer(final RunSqlOutputSequencer outputSequencer,
+                                                  final String string) throws IOException {
+        RunSqlSpillOutputStream spillOutputStream = outputSequencer.createSpillOutputStream();
+        RunSqlOutputSink outputSink = outputSequencer.createOutputSink(spillOutputStream);
+        outputSink.write(string);
+        outputSink.flush();
+        return spillOutputStream;
+    }
+
+    @Test
+    public void testWriteInSequence() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSequencer outputSequencer = new RunSqlOutputSequencer(
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8), 32, 8);
+        outputSequencer.complete(3, buffer(outputSequencer, "three,"));
+        outputSequencer.complete(2, null);
+        assertEquals(0, byteArrayOutputStream.size());
+        outputSequencer.complete(1, buffer(outputSequencer, "one,"));
+        assertEquals("one,three,", byteArrayOutputStream.toString());
+        outputSequencer.complete(5, buffer(outputSequencer, "five,"));
+        outputSequencer.complete(4, buffer(outputSequencer, "four,"));
+        assertEquals("one,three,four,five,", byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testFinishSkipsMissing() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSequencer outputSequencer = new RunSqlOutputSequencer(
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8), 32, 1024);
+        outputSequencer.complete(4, buffer(outputSequencer, "four,"));
+        outputSequencer.complete(2, buffer(outputSequencer, "two,"));
+        outputSequencer.finish();
+        assertEquals("two,four,", byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testConcurrentJobs() throws Exception {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSequencer outputSequencer = new RunSqlOutputSequencer(
+                new RunSqlOutputSink(byteArrayOutputStream, 64, StandardCharsets.UTF_8), 64, 100);
+        List<Integer> sequenceNumbers = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= 500; i++) {
+            sequenceNumbers.add(i);
+            for (int j = 0; j < i % 17; j++) {
+                expected.append("statement ").append(i).append(" row ").append(j).append('\n');
+            }
+        }
+        Collections.shuffle(sequenceNumbers);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int sequenceNumber : sequenceNumbers) {
+            executorService.submit(() -> {
+                StringBuilder rows = new StringBuilder();
+                for (int j = 0; j < sequenceNumber % 17; j++) {
+                    rows.append("statement ").append(sequenceNumber).append(" row ").append(j)
+                        .append('\n');
+                }
+                outputSequencer.complete(sequenceNumber, rows.length() == 0 ? null :
+                        buffer(outputSequencer, rows.toString()));
+                return null;
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        outputSequencer.finish();
+        assertEquals(expected.toString(), byteArrayOutputStream.toString());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RunSqlOutputSinkTest {
+    @Test
+    public void testWriteUtf8() {
+        final String string = "abc \u00e9\u00df \u20ac \ud83d\ude00 \ud83d end";
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8);
+        for (int i = 0; i < 10; i++) {
+            outputSink.write(string);
+        }
+        outputSink.flush();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            expected.append(string);
+        }
+        assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8),
+                          byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    public void testWriteOtherCharset() {
+        final String string = "caf\u00e9 \u20ac";
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.ISO_8859_1);
+        outputSink.write(string);
+        outputSink.write('\u00e9');
+        outputSink.flush();
+        assertArrayEquals((string + "\u00e9").getBytes(StandardCharsets.ISO_8859_1),
+                          byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    public void testWriteLong() {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8);
+        long[] values = {0, 7, -7, 10, 99, 100, 123456789, -1000000000000000000L,
+                         Long.MAX_VALUE, Long.MIN_VALUE};
+        StringBuilder expected = new StringBuilder();
+        for (long value : values) {
+            outputSink.write(value);
+            outputSink.write(',');
+            expected.append(value).append(',');
+        }
+        outputSink.flush();
+        assertEquals(expected.toString(),
+                     new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFlush() {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 1024, StandardCharsets.UTF_8);
+        outputSink.write("abc");
+        assertEquals(0, byteArrayOutputStream.size());
+        outputSink.flush();
+        assertEquals("abc", byteArrayOutputStream.toString());
+        byte[] large = new byte[4096];
+        outputSink.write(large);
+        assertEquals(3 + large.length, byteArrayOutputStream.size());
+    }
+
+    @Test
+    public void testWriteHexAndBase64() {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 37);
+        }
+        for (int length = 0; length <= 10; length++) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            RunSqlOutputSink outputSink =
+                    new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8);
+            outputSink.writeHex(bytes, 0, bytes.length);
+            outputSink.write(',');
+            // Encode in chunks of three bytes followed by a remainder of the given length.
+            outputSink.writeBase64(bytes, 0, 99);
+            outputSink.writeBase64(bytes, 99, 1);
+            outputSink.write(',');
+            outputSink.writeBase64(bytes, 0, length);
+            outputSink.flush();
+            StringBuilder hex = new StringBuilder();
+            for (byte b : bytes) {
+                hex.append(String.format("%02x", b));
+            }
+            Base64.Encoder encoder = Base64.getEncoder();
+            assertEquals(hex + "," + encoder.encodeToString(bytes) + "," +
+                                 encoder.encodeToString(Arrays.copyOf(bytes, length)),
+                         new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+}
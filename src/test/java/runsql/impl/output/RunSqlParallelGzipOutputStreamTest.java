@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlParallelGzipOutputStreamTest {
+    private static byte[] gunzip(final byte[] bytes) throws IOException {
+        try (GZIPInputStream gzipInputStream =
+                     new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toByteArray(gzipInputStream);
+        }
+    }
+
+    @Test
+    public void testCompressBlocksInOrder() throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (RunSqlParallelGzipOutputStream gzipOutputStream =
+                     new RunSqlParallelGzipOutputStream(byteArrayOutputStream, 1000, 4)) {
+            for (int i = 0; i < 5000; i++) {
+                byte[] row = ("row " + i + "," + random.nextInt() + "\n").getBytes();
+                gzipOutputStream.write(row);
+                expected.write(row);
+                if (i % 7 == 0) {
+                    int b = random.nextInt(256);
+                    gzipOutputStream.write(b);
+                    expected.write(b);
+                    gzipOutputStream.flush();
+                }
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), gunzip(byteArrayOutputStream.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(7);
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            // Mix compressible text with random bytes.
+            data[i] = (byte) (i % 3 == 0 ? random.nextInt(256) : 'a' + i % 26);
+        }
+        for (int blockSize : new int[]{1, 333, 4096, 1 << 20}) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            RunSqlParallelGzipOutputStream gzipOutputStream =
+                    new RunSqlParallelGzipOutputStream(byteArrayOutputStream, blockSize, 3);
+            gzipOutputStream.write(data, 0, 500);
+            gzipOutputStream.write(data[500]);
+            gzipOutputStream.write(data, 501, data.length - 501);
+            gzipOutputStream.finish();
+            assertArrayEquals(data, gunzip(byteArrayOutputStream.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlParallelGzipOutputStream(byteArrayOutputStream, 1024, 2).close();
+        assertTrue(byteArrayOutputStream.size() > 0);
+        assertEquals(0, gunzip(byteArrayOutputStream.toByteArray()).length);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlSpillOutputStreamTest {
+    private static byte[] copy(final RunSqlSpillOutputStream spillOutputStream) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8);
+        spillOutputStream.writeTo(outputSink);
+        outputSink.flush();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Test
+    public void testSpillToFile() throws IOException {
+        byte[] bytes = new byte[100000];
+        new Random(3).nextBytes(bytes);
+        RunSqlSpillOutputStream spillOutputStream = new RunSqlSpillOutputStream(1000);
+        spillOutputStream.write(bytes, 0, 999);
+        spillOutputStream.write(bytes[999]);
+        assertFalse(spillOutputStream.isSpilled());
+        assertArrayEquals(Arrays.copyOf(bytes, 1000), copy(spillOutputStream));
+        spillOutputStream.write(bytes, 1000, bytes.length - 1000);
+        assertTrue(spillOutputStream.isSpilled());
+        assertEquals(bytes.length, spillOutputStream.size());
+        assertArrayEquals(bytes, copy(spillOutputStream));
+        spillOutputStream.close();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RunSqlSplittingOutputSinkTest {
+    private static List<String> toStrings(final List<ByteArrayOutputStream> parts) {
+        List<String> strings = new ArrayList<>();
+        for (ByteArrayOutputStream part : parts) {
+            strings.add(new String(part.toByteArray(), StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static RunSqlSplittingOutputSink createOutputSink(
+            final List<ByteArrayOutputStream> parts, final long maximumRows,
+            final long maximumBytes) {
+        return new RunSqlSplittingOutputSink(partNumber -> {
+            assertEquals(parts.size() + 1, partNumber);
+            ByteArrayOutputStream part = new ByteArrayOutputStream();
+            parts.add(part);
+            return part;
+        }, maximumRows, maximumBytes, 64, StandardCharsets.UTF_8);
+    }
+
+    private static void writeRows(final RunSqlOutputSink outputSink, final String header,
+                                  final String... rows) {
+        outputSink.startHeader();
+        outputSink.write(header);
+        outputSink.endHeader();
+        for (String row : rows) {
+            outputSink.write(row);
+            outputSink.endRow();
+        }
+    }
+
+    @Test
+    public void testSplitByRowsRepeatsHeader() {
+        List<ByteArrayOutputStream> parts = new ArrayList<>();
+        RunSqlSplittingOutputSink outputSink = createOutputSink(parts, 2, 0);
+        writeRows(outputSink, "h1\n", "a\n", "b\n", "c\n", "d\n");
+        outputSink.flush();
+        // The first two parts are complete, the third has not been opened yet.
+        assertEquals(2, parts.size());
+        writeRows(outputSink, "h2\n", "e\n");
+        writeRows(outputSink, "", "f\n", "g\n");
+        outputSink.close();
+        assertEquals(Arrays.asList("h1\na\nb\n", "h1\nc\nd\n", "h2\ne\nf\n", "g\n"), toStrings(parts));
+    }
+
+    @Test
+    public void testSplitByBytes() {
+        List<ByteArrayOutputStream> parts = new ArrayList<>();
+        RunSqlSplittingOutputSink outputSink = createOutputSink(parts, 0, 10);
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            row.append('x');
+        }
+        row.append('\n');
+        writeRows(outputSink, "head\n", "1234\n", "5678\n", row.toString(), "9\n");
+        outputSink.close();
+        assertEquals(Arrays.asList("head\n1234\n", "head\n5678\n", "head\n" + row, "head\n9\n"),
+                     toStrings(parts));
+    }
+
+    @Test
+    public void testEmptyOutputCreatesOnePart() {
+        List<ByteArrayOutputStream> parts = new ArrayList<>();
+        createOutputSink(parts, 1, 0).close();
+        assertEquals(1, parts.size());
+        assertEquals(0, parts.get(0).size());
+    }
+
+    @Test
+    public void testPartFilePath() {
+        assertEquals("results.00001.csv", RunSqlSplittingOutputSink.partFilePath("results.csv", 1));
+        assertEquals("/tmp/a.b/results.00012.csv.gz",
+                     RunSqlSplittingOutputSink.partFilePath("/tmp/a.b/results.csv.gz", 12));
+        assertEquals("results.00003", RunSqlSplittingOutputSink.partFilePath("results", 3));
+        assertEquals(".hidden.00002", RunSqlSplittingOutputSink.partFilePath(".hidden", 2));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlArrowProcessorTest {
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private ResultSetMetaData resultSetMetaData;
+
+    @Test
+    public void testProcess() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(5);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        Mockito.when(resultSetMetaData.isSigned(1)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnName(1)).thenReturn("id");
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        Mockito.when(resultSetMetaData.getColumnName(2)).thenReturn("name");
+        Mockito.when(resultSetMetaData.getColumnType(3)).thenReturn(Types.DECIMAL);
+        Mockito.when(resultSetMetaData.getPrecision(3)).thenReturn(10);
+        Mockito.when(resultSetMetaData.getScale(3)).thenReturn(2);
+        Mockito.when(resultSetMetaData.getColumnName(3)).thenReturn("amount");
+        Mockito.when(resultSetMetaData.getColumnType(4)).thenReturn(Types.BOOLEAN);
+        Mockito.when(resultSetMetaData.getColumnName(4)).thenReturn("flag");
+        Mockito.when(resultSetMetaData.getColumnType(5)).thenReturn(Types.DATE);
+        Mockito.when(resultSetMetaData.getColumnName(5)).thenReturn("day");
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, true, false);
+        Mockito.when(resultSet.getInt(1)).thenReturn(1, 0, 3);
+        Mockito.when(resultSet.getString(2)).thenReturn("joe", null, "\u00e9");
+        Mockito.when(resultSet.getBigDecimal(3))
+               .thenReturn(new BigDecimal("123.34"), new BigDecimal("-5.5"), null);
+        Mockito.when(resultSet.getBoolean(4)).thenReturn(true, false, false);
+        Mockito.when(resultSet.getDate(5))
+               .thenReturn(Date.valueOf("2010-02-01"), null, Date.valueOf("1970-01-02"));
+        Mockito.when(resultSet.wasNull()).thenReturn(false, false, true, false, false, true);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlArrowProcessor.Builder().outputSink(new RunSqlOutputSink(byteArrayOutputStream))
+                                          .batchSize(2).build().process(resultSet);
+        ByteBuffer stream =
+                ByteBuffer.wrap(byteArrayOutputStream.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Schema.
+        FlatBuffer schemaMessage = readMessage(stream);
+        assertEquals(4, schemaMessage.getShort(0));
+        assertEquals(1, schemaMessage.getByte(1));
+        FlatBuffer schema = schemaMessage.getTable(2);
+        FlatBuffer[] fields = schema.getTables(1);
+        assertEquals(5, fields.length);
+        String[] names = new String[5];
+        int[] types = new int[5];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getString(0);
+            types[i] = fields[i].getByte(2);
+            assertEquals(0, fields[i].getTables(5).length);
+        }
+        assertArrayEquals(new String[]{"id", "name", "amount", "flag", "day"}, names);
+        // Int, Utf8, Decimal, Bool, Date.
+        assertArrayEquals(new int[]{2, 5, 7, 6, 8}, types);
+        assertEquals(32, fields[0].getTable(3).getInt(0));
+        assertEquals(10, fields[2].getTable(3).getInt(0));
+        assertEquals(2, fields[2].getTable(3).getInt(1));
+        assertEquals(0, fields[4].getTable(3).getShort(0));
+
+        // First batch of two rows.
+        FlatBuffer batchMessage = readMessage(stream);
+        assertEquals(3, batchMessage.getByte(1));
+        FlatBuffer batch = batchMessage.getTable(2);
+        assertEquals(2, batch.getLong(0));
+        ByteBuffer body = readBody(stream, batchMessage.getLong(3));
+        long[] nodes = batch.getLongPairs(1);
+        assertArrayEquals(new long[]{2, 1, 2, 1, 2, 0, 2, 0, 2, 1}, nodes);
+        long[] buffers = batch.getLongPairs(2);
+        // Validity and values for id, validity, offsets and data for name, and so on.
+        assertEquals(2 * (2 + 3 + 2 + 2 + 2), buffers.length);
+        assertEquals(1, body.get((int) buffers[0]));
+        assertEquals(1, body.getInt((int) buffers[2]));
+        assertEquals(3, body.getInt((int) buffers[6] + 8));
+        assertEquals("joe", string(body, (int) buffers[8], 3));
+        assertEquals(BigInteger.valueOf(12334), decimal(body, (int) buffers[12]));
+        assertEquals(BigInteger.valueOf(-550), decimal(body, (int) buffers[12] + 16));
+        assertEquals(1, body.get((int) buffers[16]));
+        assertEquals(LocalDate.of(2010, 2, 1).toEpochDay(), body.getInt((int) buffers[20]));
+
+        // Second batch with the last row.
+        batchMessage = readMessage(stream);
+        batch = batchMessage.getTable(2);
+        assertEquals(1, batch.getLong(0));
+        body = readBody(stream, batchMessage.getLong(3));
+        assertArrayEquals(new long[]{1, 0, 1, 0, 1, 1, 1, 1, 1, 0}, batch.getLongPairs(1));
+        buffers = batch.getLongPairs(2);
+        assertEquals(3, body.getInt((int) buffers[2]));
+        assertEquals("\u00e9", string(body, (int) buffers[8], (int) buffers[9]));
+        assertEquals(1, body.getInt((int) buffers[20]));
+
+        // End of stream.
+        assertEquals(-1, stream.getInt());
+        assertEquals(0, stream.getInt());
+        assertEquals(0, stream.remaining());
+    }
+
+    private static FlatBuffer readMessage(final ByteBuffer stream) {
+        assertEquals(-1, stream.getInt());
+        int length = stream.getInt();
+        assertEquals(0, (8 + length) % 8);
+        ByteBuffer metadata = stream.slice().order(ByteOrder.LITTLE_ENDIAN);
+        metadata.limit(length);
+        stream.position(stream.position() + length);
+        return new FlatBuffer(metadata, metadata.getInt(0));
+    }
+
+    private static ByteBuffer readBody(final ByteBuffer stream, final long length) {
+        assertEquals(0, length % 8);
+        ByteBuffer body = stream.slice().order(ByteOrder.LITTLE_ENDIAN);
+        body.limit((int) length);
+        stream.position(stream.position() + (int) length);
+        return body;
+    }
+
+    private static String string(final ByteBuffer body, final int offset, final int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = body.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigInteger decimal(final ByteBuffer body, final int offset) {
+        byte[] bigEndian = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            bigEndian[15 - i] = body.get(offset + i);
+        }
+        return new BigInteger(bigEndian);
+    }
+
+    /**
+     * Just enough of a FlatBuffers reader to check the metadata the processor writes.
+     */
+    private static class FlatBuffer {
+        private final ByteBuffer buffer;
+        private final int position;
+
+        FlatBuffer(final ByteBuffer buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private int field(final int id) {
+            int vtable = position - buffer.getInt(position);
+            int vtableLength = buffer.getShort(vtable);
+            if (4 + 2 * id >= vtableLength) {
+                return 0;
+            }
+            int offset = buffer.getShort(vtable + 4 + 2 * id);
+            return offset == 0 ? 0 : position + offset;
+        }
+
+        private int indirect(final int id) {
+            int field = field(id);
+            return field + buffer.getInt(field);
+        }
+
+        int getByte(final int id) {
+            return buffer.get(field(id));
+        }
+
+        int getShort(final int id) {
+            return buffer.getShort(field(id));
+        }
+
+        int getInt(final int id) {
+            return buffer.getInt(field(id));
+        }
+
+        long getLong(final int id) {
+            return buffer.getLong(field(id));
+        }
+
+        String getString(final int id) {
+            int string = indirect(id);
+            return RunSqlArrowProcessorTest.string(buffer, string + 4, buffer.getInt(string));
+        }
+
+        FlatBuffer getTable(final int id) {
+            return new FlatBuffer(buffer, indirect(id));
+        }
+
+        FlatBuffer[] getTables(final int id) {
+            int vector = indirect(id);
+            List<FlatBuffer> tables = new ArrayList<>();
+            for (int i = 0; i < buffer.getInt(vector); i++) {
+                int element = vector + 4 + 4 * i;
+                tables.add(new FlatBuffer(buffer, element + buffer.getInt(element)));
+            }
+            return tables.toArray(new FlatBuffer[0]);
+        }
+
+        long[] getLongPairs(final int id) {
+            int vector = indirect(id);
+            assertEquals(0, (vector + 4) % 8);
+            long[] values = new long[2 * buffer.getInt(vector)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buffer.getLong(vector + 4 + 8 * i);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.QuoteMode;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Random;
+
+/**
+ * Compares the msdoscsv number detection against the previous implementation, which called
+ * {@link NumberUtils#isParsable(String)} and concatenated the quoted value. Not run by the test
+ * suite; run the main method from the test classpath.
+ */
+public class RunSqlCsvMsDosProcessorBenchmark {
+    private static final int VALUES = 1 << 16;
+    private static final int ROUNDS = 20;
+    private static final int PASSES = 30;
+
+    private static RunSqlCsvMsDosProcessor.Builder createBuilder() {
+        RunSqlCsvMsDosProcessor.Builder builder = new RunSqlCsvMsDosProcessor.Builder();
+        builder.outputSink(new RunSqlOutputSink(new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+            }
+        }, RunSqlOutputSink.DEFAULT_BUFFER_SIZE, StandardCharsets.UTF_8));
+        builder.columnSeparator(",");
+        builder.escapeString("\"");
+        builder.quoteString("\"");
+        builder.quoteMode(QuoteMode.TEXT);
+        return builder;
+    }
+
+    private static long time(final RunSqlCsvMsDosProcessor processor, final String[] values) {
+        processor.currentSqlType = Types.VARCHAR;
+        long start = System.nanoTime();
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (String value : values) {
+                processor.printString(value);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(final String[] args) {
+        // A mix of codes with leading zeros, amounts and plain text.
+        Random random = new Random(1);
+        String[] values = new String[VALUES];
+        for (int i = 0; i < values.length; i++) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    values[i] = String.format("%08d", random.nextInt(100000000));
+                    break;
+                case 1:
+                    values[i] = String.format("%d.%02d", random.nextInt(100000), random.nextInt(100));
+                    break;
+                default:
+                    values[i] = "customer " + random.nextInt(100000);
+            }
+        }
+        RunSqlCsvMsDosProcessor current = createBuilder().build();
+        RunSqlCsvMsDosProcessor previous = new RunSqlCsvMsDosProcessor(createBuilder()) {
+            @Override
+            protected void printString(final String string) {
+                if (isStringSqlType() && NumberUtils.isParsable(string)) {
+                    print("=" + quoteString + string + quoteString);
+                } else {
+                    super.printString(string);
+                }
+            }
+        };
+        for (int round = 0; round < ROUNDS; round++) {
+            long previousNanos = time(previous, values);
+            long currentNanos = time(current, values);
+            System.out.printf("round %2d: previous %6.1f ns/value, current %6.1f ns/value%n", round,
+                              (double) previousNanos / VALUES / PASSES,
+                              (double) currentNanos / VALUES / PASSES);
+        }
+    }
+}
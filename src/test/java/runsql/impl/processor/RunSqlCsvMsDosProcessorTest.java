@@ -22,6 +22,7 @@ package runsql.impl.processor;
 
 import runsql.TestUtils;
 import runsql.util.QuoteMode;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -36,6 +37,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -82,4 +84,26 @@ public class RunSqlCsvMsDosProcessorTest {
             assertEquals(expectedDataRow, byteArrayOutputStream.toString());
         }
     }
+
+    @Test
+    public void testIsParsableNumber() {
+        String[] values = {"", "-", ".", "-.", "0", "007", "-12", "1.5", ".5", "-.5", "5.", "1.2.3",
+                           "1-2", "+1", "1e5", " 1", "abc", "12a", "\u0661\u0662", "1\u00bd",
+                           "0x1f", "--1"};
+        for (String value : values) {
+            assertEquals(NumberUtils.isParsable(value),
+                         RunSqlCsvMsDosProcessor.isParsableNumber(value), value);
+        }
+        Random random = new Random(42);
+        char[] characters = {'0', '1', '9', '-', '.', 'a', '+', ' '};
+        for (int i = 0; i < 10000; i++) {
+            char[] value = new char[random.nextInt(6)];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = characters[random.nextInt(characters.length)];
+            }
+            String string = new String(value);
+            assertEquals(NumberUtils.isParsable(string),
+                         RunSqlCsvMsDosProcessor.isParsableNumber(string), string);
+        }
+    }
 }
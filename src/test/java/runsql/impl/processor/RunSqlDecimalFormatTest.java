@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.DecimalNotation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RunSqlDecimalFormatTest {
+    private static String write(final BigDecimal value, final DecimalNotation decimalNotation) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        RunSqlOutputSink outputSink =
+                new RunSqlOutputSink(byteArrayOutputStream, 16, StandardCharsets.UTF_8);
+        RunSqlDecimalFormat.write(outputSink, value, decimalNotation);
+        outputSink.flush();
+        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWrite() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            BigInteger unscaled = new BigInteger(1 + random.nextInt(80), random);
+            if (random.nextBoolean()) {
+                unscaled = unscaled.negate();
+            }
+            BigDecimal value = new BigDecimal(unscaled, random.nextInt(50) - 20);
+            String expectedScientific = RunSqlDecimalFormat.format(value,
+                                                                   DecimalNotation.SCIENTIFIC);
+            assertEquals(value.toString(), write(value, DecimalNotation.DEFAULT));
+            assertEquals(value.toPlainString(), write(value, DecimalNotation.PLAIN));
+            assertEquals(expectedScientific, write(value, DecimalNotation.SCIENTIFIC));
+            assertEquals(0, value.compareTo(new BigDecimal(expectedScientific)));
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("1.2340E+2",
+                     RunSqlDecimalFormat.format(new BigDecimal("123.40"),
+                                                DecimalNotation.SCIENTIFIC));
+        assertEquals("-5E-3",
+                     RunSqlDecimalFormat.format(new BigDecimal("-0.005"),
+                                                DecimalNotation.SCIENTIFIC));
+        assertEquals("1000",
+                     RunSqlDecimalFormat.format(new BigDecimal("1E+3"), DecimalNotation.PLAIN));
+        assertEquals("1E+3",
+                     RunSqlDecimalFormat.format(new BigDecimal("1E+3"), DecimalNotation.DEFAULT));
+        assertEquals("0.00000001", write(new BigDecimal("1E-8"), DecimalNotation.PLAIN));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlImportQueueTest {
+    private static RunSqlRowBuffer createChunk(final long bytes) {
+        RunSqlRowBuffer chunk = createEmptyChunk();
+        chunk.rows = 1;
+        chunk.bytes = bytes;
+        return chunk;
+    }
+
+    private static RunSqlRowBuffer createEmptyChunk() {
+        return new RunSqlRowBuffer(new RunSqlParameterBinder[] {RunSqlParameterBinder.LONG}, 1,
+                                   false);
+    }
+
+    @Test
+    public void testPutWaitsForRelease() throws Exception {
+        RunSqlImportQueue queue = new RunSqlImportQueue(100);
+        RunSqlRowBuffer first = createChunk(60);
+        RunSqlRowBuffer second = createChunk(60);
+        assertTrue(queue.put(first));
+        CountDownLatch putDone = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(second);
+                putDone.countDown();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        assertFalse(putDone.await(200, TimeUnit.MILLISECONDS));
+        // Taking the chunk is not enough, the import thread must have inserted it.
+        assertSame(first, queue.take());
+        assertFalse(putDone.await(100, TimeUnit.MILLISECONDS));
+        queue.release(first);
+        assertTrue(putDone.await(10, TimeUnit.SECONDS));
+        producer.join();
+        assertSame(second, queue.take());
+        assertEquals(2, queue.getChunksPut());
+        assertEquals(60, queue.getPeakBytesInFlight());
+        assertTrue(queue.getStallNanos() >= TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    public void testLargeChunkAcceptedWhenEmpty() throws Exception {
+        RunSqlImportQueue queue = new RunSqlImportQueue(100);
+        RunSqlRowBuffer large = createChunk(1000);
+        assertTrue(queue.put(large));
+        // End of input markers never wait.
+        assertTrue(queue.put(createEmptyChunk()));
+        assertSame(large, queue.take());
+        assertNull(queue.reuse());
+        queue.release(large);
+        assertEquals(1000, queue.getPeakBytesInFlight());
+        assertEquals(0, queue.getStallNanos());
+        // Released chunks are emptied and handed back for reuse.
+        assertSame(large, queue.reuse());
+        assertEquals(0, large.rows);
+        assertEquals(0, large.bytes);
+        assertNull(queue.reuse());
+    }
+
+    @Test
+    public void testSharedLimit() throws Exception {
+        RunSqlImportLimit limit = new RunSqlImportLimit(100);
+        RunSqlImportQueue firstQueue = new RunSqlImportQueue(limit);
+        RunSqlImportQueue secondQueue = new RunSqlImportQueue(limit);
+        RunSqlRowBuffer first = createChunk(60);
+        assertTrue(firstQueue.put(first));
+        CountDownLatch putDone = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                secondQueue.put(createChunk(60));
+                putDone.countDown();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        // The second queue waits for the bytes in flight in the first.
+        assertFalse(putDone.await(200, TimeUnit.MILLISECONDS));
+        firstQueue.release(firstQueue.take());
+        assertTrue(putDone.await(10, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(1, secondQueue.getChunksPut());
+        assertEquals(60, limit.getPeakBytesInFlight());
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        RunSqlImportLimit limit = new RunSqlImportLimit(100);
+        RunSqlImportQueue queue = new RunSqlImportQueue(limit);
+        assertTrue(queue.put(createChunk(100)));
+        AtomicBoolean result = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            try {
+                result.set(queue.put(createChunk(100)));
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        queue.abort();
+        producer.join(10000);
+        assertFalse(producer.isAlive());
+        assertFalse(result.get());
+        // Chunks no import thread took are dropped and no longer count against the limit.
+        RunSqlRowBuffer poisonPill = createEmptyChunk();
+        assertTrue(queue.put(poisonPill));
+        assertSame(poisonPill, queue.take());
+        assertFalse(queue.put(createChunk(100)));
+        RunSqlImportQueue otherQueue = new RunSqlImportQueue(limit);
+        assertTrue(assertTimeoutPreemptively(Duration.ofSeconds(10),
+                                             () -> otherQueue.put(createChunk(100))));
+    }
+}
@@ -25,6 +25,7 @@ import runsql.util.QuoteMode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -70,4 +71,52 @@ public class RunSqlInsertsProcessorTest {
             assertEquals(expectedDataRow, byteArrayOutputStream.toString());
         }
     }
+
+    @Test
+    public void testProcessRowsPerInsert() throws SQLException, ClassNotFoundException {
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, true, false);
+        RunSqlInsertsProcessor.Builder builder = new RunSqlInsertsProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator(",");
+        builder.escapeString("\\");
+        builder.quoteString("'");
+        builder.outputColumnNames(false);
+        builder.quoteMode(QuoteMode.NEVER);
+        builder.rowSeparator("\n");
+        builder.trueValue("true");
+        builder.falseValue("false");
+        builder.tableName("mytab");
+        builder.rowsPerInsert(2);
+        builder.build().process(resultSet);
+        final String prefix = "insert into mytab (id,name,amount,bool,date,time,timestamp) values ";
+        final String values = "(1,joe,123.34,true,2010-02-01,12:00:00,2010-05-20 10:09:00.0)";
+        assertEquals(prefix + values + ",\n" + values + ";\n" + prefix + values + ";\n",
+                     byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testProcessColumnNames() throws SQLException, ClassNotFoundException {
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+        RunSqlInsertsProcessor.Builder builder = new RunSqlInsertsProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator(",");
+        builder.escapeString("\\");
+        builder.quoteString("'");
+        builder.outputColumnNames(true);
+        builder.quoteMode(QuoteMode.NEVER);
+        builder.rowSeparator("\n");
+        builder.trueValue("true");
+        builder.falseValue("false");
+        builder.tableName("mytab");
+        builder.rowsPerInsert(2);
+        builder.build().process(resultSet);
+        final String prefix = "insert into mytab (id,name,amount,bool,date,time,timestamp) values ";
+        final String values = "(1,joe,123.34,true,2010-02-01,12:00:00,2010-05-20 10:09:00.0)";
+        assertEquals("-- id,name,amount,bool,date,time,timestamp\n" + prefix + values + ",\n"
+                             + values + ";\n", byteArrayOutputStream.toString());
+    }
 }
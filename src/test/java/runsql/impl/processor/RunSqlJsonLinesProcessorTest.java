@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.TestUtils;
+import runsql.impl.output.RunSqlOutputSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlJsonLinesProcessorTest {
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private ResultSetMetaData resultSetMetaData;
+
+    @Test
+    public void testProcess() throws SQLException, ClassNotFoundException {
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlJsonLinesProcessor.Builder().printStream(new PrintStream(byteArrayOutputStream))
+                                              .rowSeparator("\n").nullValue("NULL")
+                                              .trueValue("yes").falseValue("no").build()
+                                              .process(resultSet);
+        assertEquals("{\"id\":1,\"name\":\"joe\",\"amount\":123.34,\"bool\":true," +
+                             "\"date\":\"2010-02-01\",\"time\":\"12:00:00\"," +
+                             "\"timestamp\":\"2010-05-20 10:09:00.0\"}\n",
+                     byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testProcessNullsAndEscapes() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(4);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.VARCHAR);
+        Mockito.when(resultSetMetaData.getColumnName(1)).thenReturn("na\"me");
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.DOUBLE);
+        Mockito.when(resultSetMetaData.getColumnName(2)).thenReturn("d");
+        Mockito.when(resultSetMetaData.getColumnType(3)).thenReturn(Types.VARBINARY);
+        Mockito.when(resultSetMetaData.getColumnName(3)).thenReturn("b");
+        Mockito.when(resultSetMetaData.getColumnType(4)).thenReturn(Types.BIGINT);
+        Mockito.when(resultSetMetaData.isSigned(4)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnName(4)).thenReturn("l");
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+        Mockito.when(resultSet.getString(1)).thenReturn("a\"b\\c\n\u0001\u00e9", null);
+        Mockito.when(resultSet.getDouble(2)).thenReturn(1.5, Double.NaN);
+        Mockito.when(resultSet.getBinaryStream(3))
+               .thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}), null);
+        Mockito.when(resultSet.getLong(4)).thenReturn(Long.MIN_VALUE, 0L);
+        Mockito.when(resultSet.wasNull()).thenReturn(false, false, false, true);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlJsonLinesProcessor.Builder()
+                .outputSink(new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8))
+                .rowSeparator("\n").build().process(resultSet);
+        assertEquals("{\"na\\\"me\":\"a\\\"b\\\\c\\n\\u0001\u00e9\",\"d\":1.5,\"b\":\"AQID\"," +
+                             "\"l\":-9223372036854775808}\n" +
+                             "{\"na\\\"me\":null,\"d\":\"NaN\",\"b\":null,\"l\":null}\n",
+                     new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testProcessBlob() throws SQLException, ClassNotFoundException {
+        // Longer than one chunk, so the base64 of each chunk has to join up.
+        byte[] bytes = new byte[30001];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(1);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.BLOB);
+        Mockito.when(resultSetMetaData.getColumnName(1)).thenReturn("b");
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+        Mockito.when(resultSet.getBinaryStream(1))
+               .thenReturn(new ByteArrayInputStream(bytes), null);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlJsonLinesProcessor.Builder()
+                .outputSink(new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8))
+                .rowSeparator("\n").build().process(resultSet);
+        assertEquals("{\"b\":\"" + Base64.getEncoder().encodeToString(bytes) + "\"}\n" +
+                             "{\"b\":null}\n",
+                     new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
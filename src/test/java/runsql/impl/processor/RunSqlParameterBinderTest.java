@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlParameterBinderTest {
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Test
+    public void testForType() {
+        assertEquals(RunSqlParameterBinder.LONG,
+                     RunSqlParameterBinder.forType(Types.INTEGER, true));
+        assertEquals(RunSqlParameterBinder.LONG,
+                     RunSqlParameterBinder.forType(Types.BIGINT, true));
+        assertEquals(RunSqlParameterBinder.OBJECT,
+                     RunSqlParameterBinder.forType(Types.BIGINT, false));
+        assertEquals(RunSqlParameterBinder.DOUBLE, RunSqlParameterBinder.forType(Types.REAL, true));
+        assertEquals(RunSqlParameterBinder.DECIMAL,
+                     RunSqlParameterBinder.forType(Types.NUMERIC, true));
+        assertEquals(RunSqlParameterBinder.STRING,
+                     RunSqlParameterBinder.forType(Types.NVARCHAR, true));
+        assertEquals(RunSqlParameterBinder.BYTES,
+                     RunSqlParameterBinder.forType(Types.VARBINARY, true));
+        assertEquals(RunSqlParameterBinder.TIMESTAMP,
+                     RunSqlParameterBinder.forType(Types.TIMESTAMP, true));
+        assertEquals(RunSqlParameterBinder.OBJECT,
+                     RunSqlParameterBinder.forType(Types.CLOB, true));
+    }
+
+    @Test
+    public void testReadAndBind() throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf("2010-05-20 10:09:00.123456789");
+        Mockito.when(resultSet.getLong(1)).thenReturn(42L, 0L);
+        Mockito.when(resultSet.getTimestamp(2)).thenReturn(timestamp);
+        Mockito.when(resultSet.getBigDecimal(3)).thenReturn(null, new BigDecimal("-12.345"));
+        Mockito.when(resultSet.getString(4)).thenReturn("abc\u00e9");
+        Mockito.when(resultSet.wasNull()).thenReturn(false, true);
+        RunSqlParameterBinder[] binders =
+                {RunSqlParameterBinder.LONG, RunSqlParameterBinder.TIMESTAMP,
+                 RunSqlParameterBinder.DECIMAL, RunSqlParameterBinder.STRING};
+        RunSqlRowBuffer buffer = new RunSqlRowBuffer(binders, 2, false);
+        RunSqlParameterBinder.LONG.read(resultSet, 1, buffer, 0);
+        RunSqlParameterBinder.TIMESTAMP.read(resultSet, 2, buffer, 0);
+        RunSqlParameterBinder.DECIMAL.read(resultSet, 3, buffer, 0);
+        RunSqlParameterBinder.STRING.read(resultSet, 4, buffer, 0);
+        RunSqlParameterBinder.LONG.read(resultSet, 1, buffer, 1);
+        RunSqlParameterBinder.DECIMAL.read(resultSet, 3, buffer, 1);
+        RunSqlParameterBinder.LONG.bind(preparedStatement, 1, buffer, 0, 0, Types.BIGINT);
+        RunSqlParameterBinder.TIMESTAMP.bind(preparedStatement, 2, buffer, 0, 1, Types.TIMESTAMP);
+        RunSqlParameterBinder.DECIMAL.bind(preparedStatement, 3, buffer, 0, 2, Types.DECIMAL);
+        RunSqlParameterBinder.STRING.bind(preparedStatement, 4, buffer, 0, 3, Types.VARCHAR);
+        RunSqlParameterBinder.LONG.bind(preparedStatement, 5, buffer, 1, 0, Types.INTEGER);
+        RunSqlParameterBinder.DECIMAL.bind(preparedStatement, 6, buffer, 1, 2, Types.DECIMAL);
+        Mockito.verify(preparedStatement).setLong(1, 42L);
+        Mockito.verify(preparedStatement).setTimestamp(2, timestamp);
+        Mockito.verify(preparedStatement).setNull(3, Types.DECIMAL);
+        Mockito.verify(preparedStatement).setString(4, "abc\u00e9");
+        Mockito.verify(preparedStatement).setNull(5, Types.INTEGER);
+        Mockito.verify(preparedStatement).setBigDecimal(6, new BigDecimal("-12.345"));
+        Mockito.verify(preparedStatement, Mockito.never())
+               .setObject(Mockito.anyInt(), Mockito.any());
+    }
+
+    @Test
+    public void testBindObject() throws SQLException {
+        RunSqlParameterBinder[] binders =
+                {RunSqlParameterBinder.DOUBLE, RunSqlParameterBinder.DECIMAL};
+        RunSqlRowBuffer buffer = new RunSqlRowBuffer(binders, 1, false);
+        buffer.setDouble(0, 0, 1.5);
+        buffer.setNull(0, 1, true);
+        RunSqlRowBuffer copy = new RunSqlRowBuffer(binders, 3, false);
+        buffer.copyRowTo(0, copy, 2);
+        RunSqlParameterBinder.DOUBLE.bindObject(preparedStatement, 1, copy, 2, 0);
+        RunSqlParameterBinder.DECIMAL.bindObject(preparedStatement, 2, copy, 2, 1);
+        Mockito.verify(preparedStatement).setObject(1, 1.5);
+        Mockito.verify(preparedStatement).setObject(2, (Object) null);
+        Mockito.verify(preparedStatement, Mockito.never())
+               .setBigDecimal(Mockito.anyInt(), Mockito.any(BigDecimal.class));
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlParquetProcessorTest {
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private ResultSetMetaData resultSetMetaData;
+
+    private static int indexOf(final byte[] bytes, final byte[] target, final int from) {
+        for (int i = from; i <= bytes.length - target.length; i++) {
+            if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testProcess() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(1);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        Mockito.when(resultSetMetaData.isSigned(1)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnName(1)).thenReturn("id");
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, true, false);
+        Mockito.when(resultSet.getInt(1)).thenReturn(1, 0, 3);
+        Mockito.when(resultSet.wasNull()).thenReturn(false, true, false);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlParquetProcessor.Builder()
+                .outputSink(new RunSqlOutputSink(byteArrayOutputStream)).rowGroupSize(2)
+                .codec(RunSqlParquetProcessor.Codec.UNCOMPRESSED).build().process(resultSet);
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(bytes, 0, 4));
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(bytes, bytes.length - 4, bytes.length));
+        int footerLength = ByteBuffer.wrap(bytes, bytes.length - 8, 4)
+                                     .order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int footerStart = bytes.length - 8 - footerLength;
+        assertTrue(indexOf(bytes, "id".getBytes(StandardCharsets.US_ASCII), footerStart) > 0);
+
+        // Each page holds the length prefixed definition levels followed by the plain values.
+        int firstPage = indexOf(bytes, new byte[]{2, 0, 0, 0, 3, 1, 1, 0, 0, 0}, 4);
+        assertTrue(firstPage > 0);
+        int secondPage = indexOf(bytes, new byte[]{2, 0, 0, 0, 3, 1, 3, 0, 0, 0}, firstPage);
+        assertTrue(secondPage > firstPage);
+        assertTrue(secondPage < footerStart);
+    }
+
+    @Test
+    public void testProcessDictionaryAndGzip()
+            throws SQLException, ClassNotFoundException, IOException {
+        String[] names = {"status", "amount", "created", "flag"};
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(names.length);
+        for (int i = 0; i < names.length; i++) {
+            Mockito.when(resultSetMetaData.getColumnName(i + 1)).thenReturn(names[i]);
+        }
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.VARCHAR);
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.DECIMAL);
+        Mockito.when(resultSetMetaData.getPrecision(2)).thenReturn(20);
+        Mockito.when(resultSetMetaData.getScale(2)).thenReturn(2);
+        Mockito.when(resultSetMetaData.getColumnType(3)).thenReturn(Types.TIMESTAMP);
+        Mockito.when(resultSetMetaData.getColumnType(4)).thenReturn(Types.BOOLEAN);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next())
+               .thenReturn(true, true, true, true, true, true, true, true, false);
+        String[] statuses = {"open", "closed", "open", "open", null, "open", "closed", "open"};
+        Mockito.when(resultSet.getString(1))
+               .thenReturn(statuses[0], Arrays.copyOfRange(statuses, 1, statuses.length));
+        BigDecimal[] amounts = {new BigDecimal("123.45"), new BigDecimal("-5.5"), null,
+                                BigDecimal.ZERO, new BigDecimal("99999999999999999.99"),
+                                new BigDecimal("0.01"), new BigDecimal("-0.01"),
+                                new BigDecimal("7")};
+        Mockito.when(resultSet.getBigDecimal(2))
+               .thenReturn(amounts[0], Arrays.copyOfRange(amounts, 1, amounts.length));
+        Timestamp[] timestamps = new Timestamp[8];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = Timestamp
+                    .valueOf(LocalDateTime.of(2020, 1, 2, 3, 4, 5, 123456000).plusHours(i));
+        }
+        timestamps[1] = null;
+        timestamps[2] = Timestamp.valueOf("1969-12-31 23:59:59.5");
+        Mockito.when(resultSet.getTimestamp(3))
+               .thenReturn(timestamps[0], Arrays.copyOfRange(timestamps, 1, timestamps.length));
+        Mockito.when(resultSet.getBoolean(4))
+               .thenReturn(true, false, true, true, false, false, true, true);
+        Mockito.when(resultSet.wasNull())
+               .thenReturn(false, false, false, false, false, true, false, false);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlParquetProcessor.Builder()
+                .outputSink(new RunSqlOutputSink(byteArrayOutputStream))
+                .codec(RunSqlParquetProcessor.Codec.GZIP).build().process(resultSet);
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+        ByteBuffer file = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Footer.
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(bytes, 0, 4));
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(bytes, bytes.length - 4, bytes.length));
+        int footerLength = file.getInt(bytes.length - 8);
+        file.position(bytes.length - 8 - footerLength);
+        ThriftStruct fileMetaData = ThriftStruct.read(file);
+        assertEquals(bytes.length - 8, file.position());
+        assertEquals(8, fileMetaData.getLong(3));
+        List<ThriftStruct> schema = fileMetaData.getStructs(2);
+        assertEquals(5, schema.size());
+        assertEquals(4, schema.get(0).getLong(5));
+        // BYTE_ARRAY, FIXED_LEN_BYTE_ARRAY, INT64, BOOLEAN.
+        long[] physicalTypes = new long[4];
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], schema.get(i + 1).getString(4));
+            physicalTypes[i] = schema.get(i + 1).getLong(1);
+        }
+        assertArrayEquals(new long[]{6, 7, 2, 0}, physicalTypes);
+        assertEquals(0, schema.get(1).getLong(6));
+        ThriftStruct amount = schema.get(2);
+        assertEquals(9, amount.getLong(2));
+        assertEquals(5, amount.getLong(6));
+        assertEquals(2, amount.getLong(7));
+        assertEquals(20, amount.getLong(8));
+        ThriftStruct timestamp = schema.get(3).getStruct(10).getStruct(8);
+        assertFalse(timestamp.getBoolean(1));
+        assertTrue(timestamp.getStruct(2).has(2));
+
+        List<ThriftStruct> rowGroups = fileMetaData.getStructs(4);
+        assertEquals(1, rowGroups.size());
+        assertEquals(8, rowGroups.get(0).getLong(3));
+        assertEquals(4, rowGroups.get(0).getLong(5));
+        List<ThriftStruct> columnChunks = rowGroups.get(0).getStructs(1);
+        assertEquals(4, columnChunks.size());
+        ThriftStruct[] metaData = new ThriftStruct[4];
+        for (int i = 0; i < names.length; i++) {
+            metaData[i] = columnChunks.get(i).getStruct(3);
+            assertEquals(physicalTypes[i], metaData[i].getLong(1));
+            assertEquals(names[i], new String((byte[]) metaData[i].getList(3).get(0),
+                                              StandardCharsets.UTF_8));
+            // Gzip.
+            assertEquals(2, metaData[i].getLong(4));
+            assertEquals(8, metaData[i].getLong(5));
+            assertEquals(i == 0, metaData[i].has(11));
+        }
+        assertEquals(Arrays.asList(0L, 3L, 8L), metaData[0].getList(2));
+        assertEquals(Arrays.asList(0L, 3L), metaData[1].getList(2));
+
+        // The low cardinality strings get a dictionary page and an RLE_DICTIONARY data page.
+        file.position((int) metaData[0].getLong(11));
+        ThriftStruct header = ThriftStruct.read(file);
+        assertEquals(2, header.getLong(1));
+        assertEquals(2, header.getStruct(7).getLong(1));
+        assertEquals(0, header.getStruct(7).getLong(2));
+        ByteBuffer page = readPage(file, header);
+        assertEquals("open", readString(page));
+        assertEquals("closed", readString(page));
+        assertEquals(0, page.remaining());
+        ByteBuffer dataPage = readDataPage(file, metaData[0], 8, new int[]{1, 1, 1, 1, 0, 1, 1, 1});
+        assertEquals(1, dataPage.get());
+        assertArrayEquals(new int[]{0, 1, 0, 0, 0, 1, 0}, readHybrid(dataPage, 1, 7));
+        assertEquals(0, dataPage.remaining());
+        assertChunkSize(file, metaData[0]);
+
+        // Decimals are 9 byte big endian two's complement values.
+        page = readDataPage(file, metaData[1], 0, new int[]{1, 1, 0, 1, 1, 1, 1, 1});
+        for (BigDecimal expected : amounts) {
+            if (expected != null) {
+                byte[] bigEndian = new byte[9];
+                page.get(bigEndian);
+                assertEquals(expected.setScale(2), new BigDecimal(new BigInteger(bigEndian), 2));
+            }
+        }
+        assertEquals(0, page.remaining());
+        assertChunkSize(file, metaData[1]);
+
+        // Timestamps are microseconds of the wall clock time.
+        page = readDataPage(file, metaData[2], 0, new int[]{1, 0, 1, 1, 1, 1, 1, 1});
+        assertEquals(LocalDateTime.of(2020, 1, 2, 3, 4, 5).toEpochSecond(ZoneOffset.UTC)
+                             * 1000000L + 123456, page.getLong());
+        assertEquals(-500000, page.getLong());
+        assertEquals(LocalDateTime.of(2020, 1, 2, 6, 4, 5).toEpochSecond(ZoneOffset.UTC)
+                             * 1000000L + 123456, page.getLong());
+        assertEquals(4 * 8, page.remaining());
+        assertChunkSize(file, metaData[2]);
+
+        // Booleans are bit-packed.
+        page = readDataPage(file, metaData[3], 0, new int[]{1, 1, 1, 1, 1, 0, 1, 1});
+        assertEquals(0b1101101, page.get());
+        assertEquals(0, page.remaining());
+        assertChunkSize(file, metaData[3]);
+        assertEquals(bytes.length - 8 - footerLength, file.position());
+    }
+
+    /**
+     * Reads the data page at the file's position, checks its header and definition levels, and
+     * returns the page positioned at the values.
+     */
+    private static ByteBuffer readDataPage(final ByteBuffer file, final ThriftStruct metaData,
+                                           final int encoding, final int[] definitionLevels)
+            throws IOException {
+        assertEquals(metaData.getLong(9), file.position());
+        ThriftStruct header = ThriftStruct.read(file);
+        assertEquals(0, header.getLong(1));
+        ThriftStruct dataPageHeader = header.getStruct(5);
+        assertEquals(definitionLevels.length, dataPageHeader.getLong(1));
+        assertEquals(encoding, dataPageHeader.getLong(2));
+        assertEquals(3, dataPageHeader.getLong(3));
+        ByteBuffer page = readPage(file, header);
+        int length = page.getInt();
+        assertArrayEquals(definitionLevels, readHybrid(page, 1, definitionLevels.length));
+        assertEquals(4 + length, page.position());
+        return page;
+    }
+
+    private static ByteBuffer readPage(final ByteBuffer file, final ThriftStruct header)
+            throws IOException {
+        byte[] compressed = new byte[(int) header.getLong(3)];
+        file.get(compressed);
+        byte[] page;
+        try (InputStream inputStream =
+                     new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            page = inputStream.readAllBytes();
+        }
+        assertEquals(header.getLong(2), page.length);
+        return ByteBuffer.wrap(page).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void assertChunkSize(final ByteBuffer file, final ThriftStruct metaData) {
+        long start = metaData.has(11) ? metaData.getLong(11) : metaData.getLong(9);
+        assertEquals(metaData.getLong(7), file.position() - start);
+    }
+
+    private static String readString(final ByteBuffer page) {
+        byte[] bytes = new byte[page.getInt()];
+        page.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readHybrid(final ByteBuffer page, final int bitWidth, final int count) {
+        int[] values = new int[count];
+        int i = 0;
+        while (i < count) {
+            int header = (int) readVarint(page);
+            if ((header & 1) == 0) {
+                int value = 0;
+                for (int b = 0; b < (bitWidth + 7) / 8; b++) {
+                    value |= (page.get() & 0xff) << 8 * b;
+                }
+                for (int run = header >>> 1; run > 0; run--) {
+                    values[i++] = value;
+                }
+                continue;
+            }
+            long bits = 0;
+            int bitCount = 0;
+            for (int j = 0; j < (header >>> 1) * 8; j++) {
+                while (bitCount < bitWidth) {
+                    bits |= (long) (page.get() & 0xff) << bitCount;
+                    bitCount += 8;
+                }
+                // The last group is padded with zeros.
+                if (i < count) {
+                    values[i++] = (int) (bits & (1L << bitWidth) - 1);
+                }
+                bits >>>= bitWidth;
+                bitCount -= bitWidth;
+            }
+        }
+        return values;
+    }
+
+    private static long readVarint(final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Test
+    public void testWriteHybrid() {
+        RunSqlParquetProcessor.ByteArray output = new RunSqlParquetProcessor.ByteArray(16);
+        int[] run = new int[10];
+        Arrays.fill(run, 5);
+        RunSqlParquetProcessor.writeHybrid(run, run.length, 3, output);
+        assertArrayEquals(new byte[]{20, 5}, Arrays.copyOf(output.bytes, output.length));
+
+        output.length = 0;
+        RunSqlParquetProcessor.writeHybrid(new int[]{1, 2, 3}, 3, 2, output);
+        assertArrayEquals(new byte[]{3, 57, 0}, Arrays.copyOf(output.bytes, output.length));
+    }
+
+    /**
+     * Just enough of a Thrift compact protocol reader to check the page headers and the footer
+     * the processor writes. Integers are read as longs, binaries as byte arrays.
+     */
+    private static class ThriftStruct {
+        private final Map<Integer, Object> fields = new HashMap<>();
+
+        static ThriftStruct read(final ByteBuffer buffer) {
+            ThriftStruct struct = new ThriftStruct();
+            int fieldId = 0;
+            int header;
+            while ((header = buffer.get() & 0xff) != 0) {
+                int delta = header >>> 4;
+                fieldId = delta == 0 ? (int) readZigZag(buffer) : fieldId + delta;
+                struct.fields.put(fieldId, readValue(buffer, header & 0x0f));
+            }
+            return struct;
+        }
+
+        private static Object readValue(final ByteBuffer buffer, final int type) {
+            switch (type) {
+                case 1:
+                    return true;
+                case 2:
+                    return false;
+                case 3:
+                    return (long) buffer.get();
+                case 5:
+                case 6:
+                    return readZigZag(buffer);
+                case 8:
+                    byte[] bytes = new byte[(int) readVarint(buffer)];
+                    buffer.get(bytes);
+                    return bytes;
+                case 9:
+                    int header = buffer.get() & 0xff;
+                    int size = header >>> 4 == 15 ? (int) readVarint(buffer) : header >>> 4;
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue(buffer, header & 0x0f));
+                    }
+                    return list;
+                case 12:
+                    return read(buffer);
+                default:
+                    throw new IllegalArgumentException("Unexpected thrift type " + type);
+            }
+        }
+
+        private static long readZigZag(final ByteBuffer buffer) {
+            long value = readVarint(buffer);
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        boolean has(final int id) {
+            return fields.containsKey(id);
+        }
+
+        long getLong(final int id) {
+            assertTrue(has(id), "Missing field " + id);
+            return (Long) fields.get(id);
+        }
+
+        boolean getBoolean(final int id) {
+            return (Boolean) fields.get(id);
+        }
+
+        String getString(final int id) {
+            return new String((byte[]) fields.get(id), StandardCharsets.UTF_8);
+        }
+
+        ThriftStruct getStruct(final int id) {
+            return (ThriftStruct) fields.get(id);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> getList(final int id) {
+            return (List<Object>) fields.get(id);
+        }
+
+        List<ThriftStruct> getStructs(final int id) {
+            List<ThriftStruct> structs = new ArrayList<>();
+            for (Object element : getList(id)) {
+                structs.add((ThriftStruct) element);
+            }
+            return structs;
+        }
+    }
+}
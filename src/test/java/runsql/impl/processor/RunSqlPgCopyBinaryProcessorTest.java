@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.impl.output.RunSqlOutputSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlPgCopyBinaryProcessorTest {
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private ResultSetMetaData resultSetMetaData;
+
+    /**
+     * Reads a PostgreSQL COPY binary stream.
+     *
+     * @return The rows, each holding the raw bytes of its fields or null for null fields.
+     */
+    public static List<byte[][]> readPgCopy(final byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte[] signature = new byte[11];
+        buffer.get(signature);
+        assertArrayEquals("PGCOPY\n\u00ff\r\n\u0000".getBytes(StandardCharsets.ISO_8859_1),
+                          signature);
+        assertEquals(0, buffer.getInt());
+        int headerExtensionLength = buffer.getInt();
+        buffer.position(buffer.position() + headerExtensionLength);
+        List<byte[][]> rows = new ArrayList<>();
+        short fieldCount;
+        while ((fieldCount = buffer.getShort()) != -1) {
+            byte[][] row = new byte[fieldCount][];
+            for (int i = 0; i < fieldCount; i++) {
+                int length = buffer.getInt();
+                if (length >= 0) {
+                    row[i] = new byte[length];
+                    buffer.get(row[i]);
+                }
+            }
+            rows.add(row);
+        }
+        assertEquals(bytes.length, buffer.position());
+        return rows;
+    }
+
+    static BigDecimal decodeNumeric(final byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int digits = buffer.getShort();
+        int weight = buffer.getShort();
+        int sign = buffer.getShort();
+        int scale = buffer.getShort();
+        BigDecimal value = BigDecimal.ZERO;
+        for (int i = 0; i < digits; i++) {
+            value = value.add(BigDecimal.valueOf(buffer.getShort()).scaleByPowerOfTen(
+                    4 * (weight - i)));
+        }
+        value = value.setScale(scale);
+        return sign == 0x4000 ? value.negate() : value;
+    }
+
+    @Test
+    public void testProcess() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(5);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        Mockito.when(resultSetMetaData.isSigned(1)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        Mockito.when(resultSetMetaData.getColumnType(3)).thenReturn(Types.NUMERIC);
+        Mockito.when(resultSetMetaData.getColumnType(4)).thenReturn(Types.DATE);
+        Mockito.when(resultSetMetaData.getColumnType(5)).thenReturn(Types.TIMESTAMP);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+        Mockito.when(resultSet.getInt(1)).thenReturn(7, 0);
+        Mockito.when(resultSet.wasNull()).thenReturn(false, true);
+        Mockito.when(resultSet.getString(2)).thenReturn("caf\u00e9 \ud83d\ude00", null);
+        Mockito.when(resultSet.getBigDecimal(3))
+               .thenReturn(new BigDecimal("-12345678.000123400"), new BigDecimal("0.00001"));
+        Mockito.when(resultSet.getDate(4)).thenReturn(Date.valueOf("2000-01-02"), null);
+        Mockito.when(resultSet.getTimestamp(5))
+               .thenReturn(Timestamp.valueOf("1999-12-31 23:59:59.000001"), null);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new RunSqlPgCopyBinaryProcessor.Builder()
+                .outputSink(new RunSqlOutputSink(byteArrayOutputStream, 32, StandardCharsets.UTF_8))
+                .build().process(resultSet);
+        List<byte[][]> rows = readPgCopy(byteArrayOutputStream.toByteArray());
+        assertEquals(2, rows.size());
+        byte[][] row = rows.get(0);
+        assertEquals(5, row.length);
+        assertEquals(7, ByteBuffer.wrap(row[0]).getInt());
+        assertEquals("caf\u00e9 \ud83d\ude00", new String(row[1], StandardCharsets.UTF_8));
+        assertEquals(new BigDecimal("-12345678.000123400"), decodeNumeric(row[2]));
+        assertEquals(1, ByteBuffer.wrap(row[3]).getInt());
+        assertEquals(-999999L, ByteBuffer.wrap(row[4]).getLong());
+        row = rows.get(1);
+        assertNull(row[0]);
+        assertNull(row[1]);
+        assertEquals(new BigDecimal("0.00001"), decodeNumeric(row[2]));
+        assertNull(row[3]);
+        assertNull(row[4]);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package runsql.impl.processor;
+
+import runsql.TestUtils;
+import runsql.util.QuoteMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RunSqlPgCopyProcessorTest {
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private ResultSetMetaData resultSetMetaData;
+
+    private RunSqlPgCopyProcessor.Builder createBuilder(
+            final ByteArrayOutputStream byteArrayOutputStream) {
+        RunSqlPgCopyProcessor.Builder builder = new RunSqlPgCopyProcessor.Builder();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator("\t");
+        builder.rowSeparator("\n");
+        builder.nullValue("\\N");
+        builder.quoteMode(QuoteMode.NEVER);
+        return builder;
+    }
+
+    @Test
+    public void testProcess() throws SQLException, ClassNotFoundException {
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        createBuilder(byteArrayOutputStream).build().process(resultSet);
+        assertEquals("1\tjoe\t123.34\tt\t2010-02-01\t12:00:00\t2010-05-20 10:09:00.0\n",
+                     byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testProcessEscapes() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(2);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.VARCHAR);
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.VARBINARY);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+        Mockito.when(resultSet.getString(1)).thenReturn("a\tb\\c\nd\re", null);
+        Mockito.when(resultSet.getBinaryStream(2))
+               .thenReturn(new ByteArrayInputStream(new byte[]{0, 10, -1}), null);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        createBuilder(byteArrayOutputStream).build().process(resultSet);
+        assertEquals("a\\tb\\\\c\\nd\\re\t\\\\x000aff\n\\N\t\\N\n",
+                     byteArrayOutputStream.toString());
+    }
+}
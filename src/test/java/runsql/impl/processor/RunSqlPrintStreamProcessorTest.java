@@ -21,21 +21,32 @@
 package runsql.impl.processor;
 
 import runsql.TestUtils;
+import runsql.impl.output.RunSqlOutputSink;
+import runsql.util.BinaryFormat;
+import runsql.util.DecimalNotation;
 import runsql.util.QuoteMode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Base64;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -78,6 +89,206 @@ public class RunSqlPrintStreamProcessorTest {
         }
     }
 
+    @Test
+    public void testProcessTypedColumns() throws SQLException, ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(3);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        Mockito.when(resultSetMetaData.isSigned(1)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.BIGINT);
+        Mockito.when(resultSetMetaData.isSigned(2)).thenReturn(true);
+        Mockito.when(resultSetMetaData.getColumnType(3)).thenReturn(Types.BOOLEAN);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+        Mockito.when(resultSet.getInt(1)).thenReturn(0).thenReturn(-42);
+        Mockito.when(resultSet.getLong(2)).thenReturn(9223372036854775806L).thenReturn(0L);
+        Mockito.when(resultSet.getBoolean(3)).thenReturn(false).thenReturn(false);
+        Mockito.when(resultSet.wasNull()).thenReturn(true, false, false, false, true, false);
+        RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator(",");
+        builder.escapeString("\\");
+        builder.quoteString("'");
+        builder.nullValue("null");
+        builder.quoteMode(QuoteMode.TEXT);
+        builder.rowSeparator("\n");
+        builder.trueValue("t");
+        builder.falseValue("f");
+        builder.build().process(resultSet);
+        assertEquals("null,9223372036854775806,'f'\n-42,null,'f'\n",
+                     byteArrayOutputStream.toString());
+        Mockito.verify(resultSet, Mockito.never()).getObject(Mockito.anyInt());
+    }
+
+    @Test
+    public void testProcessBinaryFormats() throws SQLException, ClassNotFoundException {
+        // Larger than one chunk so the value is encoded in several pieces.
+        byte[] large = new byte[20000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(1);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.VARBINARY);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        for (BinaryFormat binaryFormat : BinaryFormat.values()) {
+            Mockito.when(resultSet.next()).thenReturn(true, true, true, false);
+            Mockito.when(resultSet.getBinaryStream(1))
+                   .thenReturn(new ByteArrayInputStream(new byte[]{1, -2, 3}), null,
+                               new ByteArrayInputStream(large));
+            Mockito.when(resultSet.getBytes(1)).thenReturn(new byte[]{1, -2, 3}, null, large);
+            RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            builder.printStream(new PrintStream(byteArrayOutputStream));
+            builder.columnSeparator(",");
+            builder.quoteString("'");
+            builder.nullValue("null");
+            builder.quoteMode(QuoteMode.TEXT);
+            builder.rowSeparator("\n");
+            builder.binaryFormat(binaryFormat);
+            builder.build().process(resultSet);
+            String[] lines = byteArrayOutputStream.toString().split("\n");
+            assertEquals("null", lines[1]);
+            switch (binaryFormat) {
+                case ARRAY:
+                    assertEquals("'[1, -2, 3]'", lines[0]);
+                    assertEquals("'" + Arrays.toString(large) + "'", lines[2]);
+                    break;
+                case HEX:
+                    assertEquals("'01fe03'", lines[0]);
+                    StringBuilder hex = new StringBuilder();
+                    for (byte b : large) {
+                        hex.append(String.format("%02x", b));
+                    }
+                    assertEquals("'" + hex + "'", lines[2]);
+                    break;
+                case BASE64:
+                    assertEquals("'Af4D'", lines[0]);
+                    assertEquals("'" + Base64.getEncoder().encodeToString(large) + "'", lines[2]);
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testProcessTemporalAndDecimalFormats() throws SQLException,
+                                                             ClassNotFoundException {
+        RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator(",");
+        builder.escapeString("\\");
+        builder.quoteString("'");
+        builder.quoteMode(QuoteMode.TEXT);
+        builder.rowSeparator("\n");
+        builder.trueValue("true");
+        builder.falseValue("false");
+        builder.decimalNotation(DecimalNotation.SCIENTIFIC);
+        builder.dateFormat("dd/MM/yyyy");
+        builder.timeFormat("HH'h'mm");
+        builder.timestampFormat("yyyyMMddHHmmss.SSS");
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        builder.build().process(resultSet);
+        assertEquals("1,'joe',1.2334E+2,'true','01/02/2010','12h00','20100520100900.000'\n",
+                     byteArrayOutputStream.toString());
+        // A separator that appears in the formatted values makes them go through printString.
+        byteArrayOutputStream.reset();
+        builder.columnSeparator("0");
+        builder.quoteMode(QuoteMode.NECESSARY);
+        builder.decimalNotation(DecimalNotation.PLAIN);
+        builder.dateFormat(null);
+        builder.timeFormat(null);
+        builder.timestampFormat(null);
+        TestUtils.initResultSetMock(resultSet, resultSetMetaData);
+        builder.build().process(resultSet);
+        assertEquals("10joe0123.340true0'2010-02-01'0'12:00:00'0'2010-05-20 10:09:00.0'\n",
+                     byteArrayOutputStream.toString());
+    }
+
+    private String processLargeValue(final int sqlType, final String value,
+                                     final QuoteMode quoteMode) throws SQLException,
+                                                                       ClassNotFoundException {
+        Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(1);
+        Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(sqlType);
+        Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+        Mockito.when(resultSet.next()).thenReturn(true, false);
+        Mockito.when(resultSet.getString(1)).thenReturn(value);
+        Mockito.when(resultSet.getCharacterStream(1)).thenReturn(new StringReader(value));
+        RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.outputSink(new RunSqlOutputSink(byteArrayOutputStream, 1024,
+                                                StandardCharsets.UTF_8));
+        builder.columnSeparator("||");
+        builder.escapeString("\\");
+        builder.quoteString("''");
+        builder.nullValue("null");
+        builder.quoteMode(quoteMode);
+        builder.rowSeparator("\n");
+        builder.build().process(resultSet);
+        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testProcessCharacterStream() throws SQLException, ClassNotFoundException {
+        // Place separators, quotes and a surrogate pair across the 8192 character chunk
+        // boundaries.
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 30000) {
+            value.append("abc");
+        }
+        value.replace(8191, 8193, "||");
+        value.replace(16383, 16385, "''");
+        value.replace(24575, 24577, "\ud83d\ude00");
+        value.replace(16000, 16002, "||");
+        for (QuoteMode quoteMode : QuoteMode.values()) {
+            assertEquals(processLargeValue(Types.VARCHAR, value.toString(), quoteMode),
+                         processLargeValue(Types.CLOB, value.toString(), quoteMode));
+            assertEquals(processLargeValue(Types.VARCHAR, "a''b", quoteMode),
+                         processLargeValue(Types.CLOB, "a''b", quoteMode));
+        }
+    }
+
+    @Test
+    public void testProcessWithFormatThreads() throws SQLException, ClassNotFoundException {
+        final int rows = 2500;
+        String singleThreaded = null;
+        for (int formatThreads : new int[]{1, 3}) {
+            int[] rowNumber = {0};
+            Mockito.when(resultSetMetaData.getColumnCount()).thenReturn(2);
+            Mockito.when(resultSetMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+            Mockito.when(resultSetMetaData.isSigned(1)).thenReturn(true);
+            Mockito.when(resultSetMetaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+            Mockito.when(resultSetMetaData.getColumnName(1)).thenReturn("id");
+            Mockito.when(resultSetMetaData.getColumnName(2)).thenReturn("name");
+            Mockito.when(resultSet.getMetaData()).thenReturn(resultSetMetaData);
+            Mockito.when(resultSet.next()).thenAnswer(invocation -> ++rowNumber[0] <= rows);
+            Mockito.when(resultSet.getInt(1)).thenAnswer(invocation -> rowNumber[0]);
+            Mockito.when(resultSet.getString(2))
+                   .thenAnswer(invocation -> "name, " + rowNumber[0]);
+            Mockito.when(resultSet.wasNull()).thenReturn(false);
+            RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            builder.printStream(new PrintStream(byteArrayOutputStream));
+            builder.columnSeparator(",");
+            builder.escapeString("\\");
+            builder.quoteString("\"");
+            builder.quoteMode(QuoteMode.NECESSARY);
+            builder.rowSeparator("\n");
+            builder.nullValue("");
+            builder.outputColumnNames(true);
+            builder.formatThreads(formatThreads);
+            RunSqlPrintStreamProcessor runSqlPrintStreamProcessor = builder.build();
+            runSqlPrintStreamProcessor.process(resultSet);
+            assertEquals(rows, runSqlPrintStreamProcessor.currentRowNumber);
+            if (singleThreaded == null) {
+                singleThreaded = byteArrayOutputStream.toString();
+                assertTrue(singleThreaded.startsWith("id,name\n1,\"name, 1\"\n"));
+                assertTrue(singleThreaded.endsWith("\n2500,\"name, 2500\"\n"));
+            } else {
+                assertEquals(singleThreaded, byteArrayOutputStream.toString());
+            }
+        }
+    }
+
     @Test
     public void testPrintString() {
         RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
@@ -92,15 +303,19 @@ public class RunSqlPrintStreamProcessorTest {
             builder.quoteMode(QuoteMode.NEVER);
             runSqlPrintStreamProcessor = builder.build();
             runSqlPrintStreamProcessor.printString("abc");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("abc", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab,c");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("ab\\,c", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab'c");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("ab'c", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab',c,d");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("ab'\\,c\\,d", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
         }
@@ -108,15 +323,19 @@ public class RunSqlPrintStreamProcessorTest {
             builder.quoteMode(QuoteMode.NECESSARY);
             runSqlPrintStreamProcessor = builder.build();
             runSqlPrintStreamProcessor.printString("abc");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("abc", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab,c");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'ab,c'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab'c");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("ab\\'c", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("ab',c,d");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'ab\\',c,d'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
         }
@@ -124,15 +343,19 @@ public class RunSqlPrintStreamProcessorTest {
             builder.quoteMode(QuoteMode.ALWAYS);
             runSqlPrintStreamProcessor = builder.build();
             runSqlPrintStreamProcessor.printString("abc");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("abc'def");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc\\'def'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("123");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'123'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("abc'de,f");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc\\'de,f'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
         }
@@ -140,17 +363,70 @@ public class RunSqlPrintStreamProcessorTest {
             builder.quoteMode(QuoteMode.TEXT);
             runSqlPrintStreamProcessor = builder.build();
             runSqlPrintStreamProcessor.printString("abc");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("abc'def");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc\\'def'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("123");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("123", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
             runSqlPrintStreamProcessor.printString("abc'de,f");
+            runSqlPrintStreamProcessor.outputSink.flush();
             assertEquals("'abc\\'de,f'", byteArrayOutputStream.toString());
             byteArrayOutputStream.reset();
         }
     }
+
+    @Test
+    public void testPrintStringTextModeUsesSqlType() {
+        RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator(",");
+        builder.escapeString("\"");
+        builder.quoteString("\"");
+        builder.quoteMode(QuoteMode.TEXT);
+        RunSqlPrintStreamProcessor runSqlPrintStreamProcessor = builder.build();
+        runSqlPrintStreamProcessor.currentSqlType = Types.VARCHAR;
+        runSqlPrintStreamProcessor.printString("0001");
+        runSqlPrintStreamProcessor.currentSqlType = Types.DECIMAL;
+        runSqlPrintStreamProcessor.printString("1E+10");
+        runSqlPrintStreamProcessor.currentSqlType = Types.OTHER;
+        runSqlPrintStreamProcessor.printString("12.5");
+        runSqlPrintStreamProcessor.printString("a\"b");
+        runSqlPrintStreamProcessor.outputSink.flush();
+        assertEquals("\"0001\"1E+1012.5\"a\"\"b\"", byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void testPrintStringMultipleCharacterTokens() {
+        RunSqlPrintStreamProcessor.Builder builder = new RunSqlPrintStreamProcessor.Builder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        builder.printStream(new PrintStream(byteArrayOutputStream));
+        builder.columnSeparator("||");
+        builder.escapeString("\\");
+        builder.quoteString("<>");
+        RunSqlPrintStreamProcessor runSqlPrintStreamProcessor;
+        {
+            builder.quoteMode(QuoteMode.NEVER);
+            runSqlPrintStreamProcessor = builder.build();
+            runSqlPrintStreamProcessor.printString("a|b||c<>d|");
+            runSqlPrintStreamProcessor.outputSink.flush();
+            assertEquals("a|b\\||c<>d|", byteArrayOutputStream.toString());
+            byteArrayOutputStream.reset();
+        }
+        {
+            builder.quoteMode(QuoteMode.NECESSARY);
+            runSqlPrintStreamProcessor = builder.build();
+            runSqlPrintStreamProcessor.printString("a<>b|c");
+            runSqlPrintStreamProcessor.printString("a<>b||c");
+            runSqlPrintStreamProcessor.outputSink.flush();
+            assertEquals("a\\<>b|c<>a\\<>b||c<>", byteArrayOutputStream.toString());
+            byteArrayOutputStream.reset();
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import runsql.impl.RunSqlStatementExecutionHook;
+import runsql.util.TransactionMode;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Measures the concurrent import from one in memory HSQLDB table into another with 1, 2, 4, 8
+ * and 16 consumers. Not run by the test suite; run the main method from the test classpath.
+ */
+public class RunSqlProcessorImportConcurrentBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+    private static final String URL = "jdbc:hsqldb:mem:importbenchmark";
+    private static final String USER = "SA";
+    private static final String PASSWORD = "";
+    private static final int ROWS = 200000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ROUNDS = 3;
+
+    private static void createTables() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table source (id integer, name varchar(255), " +
+                                      "amount decimal(12, 2), created timestamp)");
+            statement.execute("create table target (id integer, name varchar(255), " +
+                                      "amount decimal(12, 2), created timestamp)");
+            try (PreparedStatement preparedStatement = connection
+                    .prepareStatement("insert into source values (?, ?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    preparedStatement.setInt(1, i);
+                    preparedStatement.setString(2, "name " + i);
+                    preparedStatement.setBigDecimal(3, BigDecimal.valueOf(i, 2));
+                    preparedStatement.setTimestamp(4, new Timestamp(i * 1000L));
+                    preparedStatement.addBatch();
+                    if (i % BATCH_SIZE == 0) {
+                        preparedStatement.executeBatch();
+                    }
+                }
+                preparedStatement.executeBatch();
+            }
+        }
+    }
+
+    private static long time(final int numberOfJobs) throws SQLException,
+                                                            ClassNotFoundException {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("truncate table target");
+            RunSqlProcessorImportConcurrent.Builder builder =
+                    new RunSqlProcessorImportConcurrent.Builder();
+            builder.setNumberOfJobs(numberOfJobs);
+            builder.setInsertTableName("target");
+            builder.setImportDriver(DRIVER);
+            builder.setImportUrl(URL);
+            builder.setImportUser(USER);
+            builder.setImportPassword(PASSWORD);
+            builder.setTransactionMode(TransactionMode.AUTO);
+            builder.setBatchSize(BATCH_SIZE);
+            builder.setSqlStatementExecutionHook(
+                    new RunSqlStatementExecutionHook(true, BATCH_SIZE, TransactionMode.AUTO,
+                                                     BATCH_SIZE));
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery("select * from source")) {
+                builder.build().process(resultSet);
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Class.forName(DRIVER);
+        createTables();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int numberOfJobs : new int[]{1, 2, 4, 8, 16}) {
+                long nanos = time(numberOfJobs);
+                System.out.printf("round %d, %2d consumers: %8.0f rows/s%n", round, numberOfJobs,
+                                  ROWS * 1e9 / nanos);
+            }
+        }
+    }
+}
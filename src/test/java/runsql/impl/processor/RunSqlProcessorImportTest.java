@@ -28,14 +28,19 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -43,6 +48,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.apache.commons.lang3.ArrayUtils.EMPTY_STRING_ARRAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RunSqlProcessorImportTest {
@@ -321,4 +328,176 @@ public class RunSqlProcessorImportTest {
         assertTrue(TestUtils.isFileEmpty(outputFilePath));
         file.delete();
     }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 7, 10})
+    public void testBasicImportRowsPerInsert(final int rowsPerInsert) throws Exception {
+        callRunSqlImport("--tablename", "person", "--batchsize", "2", "--rowsperinsert",
+                         String.valueOf(rowsPerInsert));
+        File file = File.createTempFile("basic-import", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 7, 10})
+    public void testBasicImportRowsPerInsertConcurrent(final int rowsPerInsert) throws Exception {
+        callRunSqlImport("--tablename", "person", "--batchsize", "2", "--rowsperinsert",
+                         String.valueOf(rowsPerInsert), "--numberofjobs", "3");
+        File file = File.createTempFile("basic-import", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @Test
+    public void testBasicImportRowsPerInsertMaxParameters() throws Exception {
+        callRunSqlImport("--tablename", "person", "--rowsperinsert", "5", "--importmaxparameters",
+                         "13", "--transactionmode", "2", "--batchsize", "1");
+        File file = File.createTempFile("basic-import", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @Test
+    public void testBasicImportRowsPerInsertRollback() throws Exception {
+        callRunSqlImport("--tablename", "person", "--batchsize", "5", "--rowsperinsert", "3",
+                         "--transactionmode", "rollback");
+        File file = File.createTempFile("basic-import", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.isFileEmpty(outputFilePath));
+        file.delete();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"268435456, f", "2000, f", "268435456, t", "2000, t"})
+    public void testImportConcurrentSeveralChunks(final String queueBytes,
+                                                  final String directBuffers) throws Exception {
+        final int rows = 3000;
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "insert into person values (?, ?, null, null, null, null)")) {
+            for (int i = 0; i < rows; i++) {
+                preparedStatement.setInt(1, 100 + i);
+                preparedStatement.setString(2, "first " + i);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+        PrintStream err = System.err;
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(byteArrayOutputStream, true));
+        try {
+            callRunSqlImport("--tablename", "person", "--batchsize", "7", "--rowsperinsert", "3",
+                             "--numberofjobs", "3", "--importqueuebytes", queueBytes,
+                             "--importstatistics", "t", "--importdirectbuffers", directBuffers);
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(byteArrayOutputStream.toString().startsWith("Import queued "));
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "select count(*), sum(person_id) from import_person")) {
+            resultSet.next();
+            assertEquals(rows + 7, resultSet.getInt(1));
+            assertEquals(rows * 100 + rows * (rows - 1) / 2 + 28, resultSet.getLong(2));
+        }
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "select count(*) from import_person where first_name = 'first ' || "
+                             + "cast(person_id - 100 as varchar(10))")) {
+            resultSet.next();
+            assertEquals(rows, resultSet.getInt(1));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"person_id, 3", "person_id, 20", "birth_date, 4", "last_login, 2"})
+    public void testImportPartitioned(final String splitColumn, final String partitions)
+            throws Exception {
+        callRunSqlImport("--tablename", "person", "--importpartitions", partitions,
+                         "--importsplitcolumn", splitColumn);
+        File file = File.createTempFile("partitioned-import-" + splitColumn + "-", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @Test
+    public void testImportPartitionedPrimaryKey() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("alter table person add primary key (person_id)");
+        }
+        callRunSqlImport("--tablename", "person", "--importpartitions", "3", "--numberofjobs",
+                         "2");
+        File file = File.createTempFile("partitioned-import-key-", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"3, 1", "3, 4", "2, 1", "1, 2"})
+    public void testImportConcurrentStatements(final String sourceJobs, final String numberOfJobs)
+            throws Exception {
+        callRunSqlImport("--sql", "select * from person where person_id < 3; "
+                                 + "select * from person where person_id between 3 and 5; "
+                                 + "select * from person where person_id > 5",
+                         "--importsourcejobs", sourceJobs, "--numberofjobs", numberOfJobs,
+                         "--rowsperinsert", "2", "--importqueuebytes", "100");
+        File file = File.createTempFile("concurrent-statements-import-", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @Test
+    public void testImportConcurrentPartitionsInTurn() throws Exception {
+        callRunSqlImport("--tablename", "person", "--importpartitions", "4",
+                         "--importsplitcolumn", "person_id", "--importsourcejobs", "2");
+        File file = File.createTempFile("concurrent-partitions-import-", "tmp");
+        String outputFilePath = file.getAbsolutePath();
+        printImportTable(outputFilePath);
+        assertTrue(TestUtils.doesFileMatchResourceFile(outputFilePath,
+                                                       "BasicImportExpectedResults.txt"));
+        file.delete();
+    }
+
+    @Test
+    public void testImportPartitionedWithoutSplitColumn() {
+        assertThrows(RunSqlParseException.class,
+                     () -> callRunSqlImport("--tablename", "person", "--importpartitions", "3"));
+    }
+
+    @Test
+    public void testGetChunkRows() {
+        assertEquals(1024, RunSqlProcessorImportConcurrent.getChunkRows(1, 1));
+        assertEquals(1050, RunSqlProcessorImportConcurrent.getChunkRows(3, 50));
+        assertEquals(5000, RunSqlProcessorImportConcurrent.getChunkRows(10, 500));
+    }
+
+    @Test
+    public void testGetRowsPerInsert() {
+        assertEquals(5, RunSqlMultiRowInsert.getRowsPerInsert(5, 2000, 6));
+        assertEquals(2, RunSqlMultiRowInsert.getRowsPerInsert(5, 13, 6));
+        assertEquals(1, RunSqlMultiRowInsert.getRowsPerInsert(5, 4, 6));
+    }
 }
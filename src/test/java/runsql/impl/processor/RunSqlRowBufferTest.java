@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlRowBufferTest {
+    private static final RunSqlParameterBinder[] BINDERS =
+            {RunSqlParameterBinder.LONG, RunSqlParameterBinder.STRING, RunSqlParameterBinder.BYTES,
+             RunSqlParameterBinder.DECIMAL, RunSqlParameterBinder.OBJECT};
+
+    @ParameterizedTest
+    @ValueSource(strings = {"f", "t"})
+    public void testSlabGrowsAndCopies(final String directBuffers) {
+        final boolean direct = "t".equals(directBuffers);
+        RunSqlRowBuffer buffer = new RunSqlRowBuffer(BINDERS, 100, direct);
+        // Enough data to grow the slab several times.
+        for (int row = 0; row < 100; row++) {
+            buffer.setLong(row, 0, row);
+            buffer.putString(row, 1, createString(row * 10));
+            buffer.putBytes(row, 2, createBytes(row * 20));
+            buffer.setNull(row, 3, row % 3 == 0);
+            buffer.setObject(row, 4, row % 2 == 0 ? null : Integer.valueOf(row));
+            buffer.rows++;
+        }
+        RunSqlRowBuffer copy = new RunSqlRowBuffer(BINDERS, 3, direct);
+        copy.putString(0, 1, "before");
+        for (int row = 0; row < 100; row++) {
+            assertEquals(row, buffer.getLong(row, 0));
+            assertEquals(createString(row * 10), buffer.getString(row, 1));
+            assertArrayEquals(createBytes(row * 20), buffer.getBytes(row, 2));
+            assertEquals(row % 3 == 0, buffer.isNull(row, 3));
+            buffer.copyRowTo(row, copy, 1);
+            assertEquals(row, copy.getLong(1, 0));
+            assertEquals(createString(row * 10), copy.getString(1, 1));
+            assertArrayEquals(createBytes(row * 20), copy.getBytes(1, 2));
+            assertEquals(row % 3 == 0, copy.isNull(1, 3));
+            assertEquals(buffer.getObject(row, 4), copy.getObject(1, 4));
+        }
+        assertEquals("before", copy.getString(0, 1));
+    }
+
+    @Test
+    public void testBytesAndClear() {
+        RunSqlRowBuffer buffer = new RunSqlRowBuffer(BINDERS, 2, false);
+        buffer.setLong(0, 0, 1);
+        buffer.putString(0, 1, "abcd");
+        buffer.putBytes(0, 2, new byte[10]);
+        buffer.setObject(0, 4, "xy");
+        buffer.setNull(0, 3, true);
+        buffer.rows = 1;
+        buffer.updateBytes();
+        long rowBytes = 3 * 8 + 8 + 4 + 8 + 8;
+        assertEquals(rowBytes + 8 + 10 + 56 + 4, buffer.bytes);
+        buffer.clear();
+        assertEquals(0, buffer.rows);
+        assertEquals(0, buffer.bytes);
+        assertFalse(buffer.isNull(0, 3));
+        assertNull(buffer.getObject(0, 4));
+        buffer.putString(0, 1, "e");
+        buffer.rows = 1;
+        buffer.updateBytes();
+        assertEquals(rowBytes + 2, buffer.bytes);
+    }
+
+    @Test
+    public void testDecimalLanes() throws SQLException {
+        BigDecimal large = new BigDecimal(BigInteger.TEN.pow(30), 2);
+        RunSqlRowBuffer buffer = new RunSqlRowBuffer(BINDERS, 3, false);
+        for (BigDecimal value : new BigDecimal[] {new BigDecimal("-1.05"), large,
+                                                  new BigDecimal("1E+5")}) {
+            ResultSet resultSet = Mockito.mock(ResultSet.class);
+            Mockito.when(resultSet.getBigDecimal(4)).thenReturn(value);
+            RunSqlParameterBinder.DECIMAL.read(resultSet, 4, buffer, buffer.rows);
+            assertTrue(value.compareTo((BigDecimal) RunSqlParameterBinder.DECIMAL
+                    .toObject(buffer, buffer.rows, 3)) == 0);
+            buffer.rows++;
+        }
+        assertNull(buffer.getObject(0, 3));
+        assertEquals(large, buffer.getObject(1, 3));
+        assertEquals(new BigDecimal("1E+5"), RunSqlParameterBinder.DECIMAL.toObject(buffer, 2, 3));
+    }
+
+    private static String createString(final int length) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append((char) ('a' + i % 26 + (i % 7 == 0 ? 0x100 : 0)));
+        }
+        return stringBuilder.toString();
+    }
+
+    private static byte[] createBytes(final int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
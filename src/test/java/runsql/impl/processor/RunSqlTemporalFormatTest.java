@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 William Bruschi - williambruschi.net
+ *
+ * This file is part of runsql.
+ *
+ * runsql is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * runsql is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with runsql.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package runsql.impl.processor;
+
+import runsql.impl.arguments.Parameter;
+import runsql.impl.exceptions.RunSqlParseException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunSqlTemporalFormatTest {
+    @Test
+    public void testBuiltInMatchesToString() {
+        RunSqlTemporalFormat dateFormat = RunSqlTemporalFormat.builtIn(Types.DATE);
+        RunSqlTemporalFormat timeFormat = RunSqlTemporalFormat.builtIn(Types.TIME);
+        RunSqlTemporalFormat timestampFormat = RunSqlTemporalFormat.builtIn(Types.TIMESTAMP);
+        Random random = new Random(42);
+        // From the Gregorian cutover in 1582 to the year 9999.
+        long minimum = -12219292800000L;
+        long maximum = 253402300799999L;
+        for (int i = 0; i < 100000; i++) {
+            long millis = minimum + (long) (random.nextDouble() * (maximum - minimum));
+            int nanos = (int) Math.floorMod(millis, 1000L) * 1000000;
+            if (i % 3 == 0) {
+                nanos += random.nextInt(1000000);
+            } else if (i % 3 == 1) {
+                nanos -= nanos % 100000000;
+            }
+            Timestamp timestamp = new Timestamp(millis);
+            timestamp.setNanos(nanos);
+            assertTrue(timestampFormat.canFormat(millis));
+            assertEquals(timestamp.toString(), timestampFormat.format(millis, nanos));
+            assertEquals(new Date(millis).toString(), dateFormat.format(millis, nanos));
+            assertEquals(new Time(millis).toString(), timeFormat.format(millis, nanos));
+        }
+        assertFalse(timestampFormat.canFormat(minimum - 1));
+    }
+
+    @Test
+    public void testPattern() {
+        long millis = Timestamp.valueOf("2009-03-07 08:05:09.012345678").getTime();
+        int nanos = 12345678;
+        assertEquals("07/03/09 8:5:9.0123",
+                     RunSqlTemporalFormat.compile("dd/MM/yy H:m:s.SSSS", Parameter.DATE_FORMAT)
+                                         .format(millis, nanos));
+        assertEquals("2009-3-7T08:05:09.012345678 o'clock",
+                     RunSqlTemporalFormat.compile("yyyy-M-d'T'HH:mm:ss.SSSSSSSSS 'o''clock'",
+                                                  Parameter.TIMESTAMP_FORMAT)
+                                         .format(millis, nanos));
+        assertEquals("20090307 '",
+                     RunSqlTemporalFormat.compile("yyyyMMdd ''", Parameter.DATE_FORMAT)
+                                         .format(millis, nanos));
+        RunSqlTemporalFormat format =
+                RunSqlTemporalFormat.compile("yyyy'Q'", Parameter.DATE_FORMAT);
+        assertEquals("0123456789-Q", format.getCharacters());
+        assertTrue(format.canFormat(Long.MIN_VALUE / 2));
+    }
+
+    @Test
+    public void testInvalidPattern() {
+        assertThrows(RunSqlParseException.class,
+                     () -> RunSqlTemporalFormat.compile("yyyy-MM-dd hh", Parameter.DATE_FORMAT));
+        assertThrows(RunSqlParseException.class,
+                     () -> RunSqlTemporalFormat.compile("ss.SSSSSSSSSS", Parameter.TIME_FORMAT));
+        assertThrows(RunSqlParseException.class,
+                     () -> RunSqlTemporalFormat.compile("yyyy 'at", Parameter.DATE_FORMAT));
+    }
+}
@@ -50,6 +50,17 @@ public class SqlCodeTest {
         assertEquals("insert into table (col1, col2) values (?, ?)", result);
     }
 
+    @Test
+    public void testMultipleRows() {
+        String result = SqlCode.createInsertSql("table", new String[]{"col1", "col2"}, 2, 3);
+        assertEquals("insert into table (col1, col2) values (?, ?), (?, ?), (?, ?)", result);
+    }
+
+    @Test
+    public void testBadNumberOfRows() {
+        assertThrows(AssertionError.class, () -> SqlCode.createInsertSql("table", null, 1, 0));
+    }
+
     @Test
     public void testBadTableName() {
         assertThrows(AssertionError.class, () -> SqlCode.createInsertSql(null, null, 1));